@@ -3,11 +3,13 @@ package edu.drexel.psal.jstylo.GUI;
 import edu.drexel.psal.jstylo.GUI.DocsTabDriver.ExtFilter;
 import edu.drexel.psal.jstylo.featureProcessing.Chunker;
 import edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.DataMapCache;
 import edu.drexel.psal.jstylo.featureProcessing.LocalParallelFeatureExtractionAPI;
 import edu.drexel.psal.jstylo.featureProcessing.ProblemSet;
 import edu.drexel.psal.jstylo.generics.Preferences;
 import edu.drexel.psal.jstylo.machineLearning.Analyzer;
 import edu.drexel.psal.jstylo.machineLearning.weka.InfoGain;
+import edu.drexel.psal.jstylo.machineLearning.weka.WekaAnalyzer;
 import edu.drexel.psal.jstylo.generics.DataMap;
 import edu.drexel.psal.jstylo.generics.ExperimentResults;
 import edu.drexel.psal.jstylo.generics.FullAPI;
@@ -20,6 +22,7 @@ import java.awt.event.ActionListener;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -719,128 +722,54 @@ public class AnalysisTabDriver {
 				main.lpfeAPI.setLoadDocContents(false);
 				
 				
-				// Extract the training information
-				content += getTimestamp() + " Extracting features from training corpus using sparse representation)...\n";
-				updateResultsView();
-				
-				if (main.lpfeAPI.isUsingCache())
-					main.lpfeAPI.validateCFDCache(main.cfd);
-				if (main.lpfeAPI.isChunkingDocs())
-				    Chunker.chunkAllTrainDocs(main.lpfeAPI.getProblemSet());
-				
-				List<List<EventSet>> eventList = null;
-				try {
-					eventList = main.lpfeAPI.extractEventsThreaded(main.cfd);
-				} catch (Exception e) {
-					LOG.error("Could not extract features from training corpus!", e);
-					
-
-					JOptionPane.showMessageDialog(main,
-							"Could not extract features from training corpus:\n" + e.getMessage() + "\n"
-									+ "Aborting analysis.", "Analysis Error", JOptionPane.ERROR_MESSAGE);
-					updateBeforeStop();
-					Thread.currentThread().stop();
-				}
-				content += getTimestamp() + " done!\n\n";
-				updateResultsView();
-				content += getTimestamp() + " Building relevant event set...";
-				updateResultsView();
-
-				// Cull the events
-				List<EventSet> relevantEvents = null;
-				try {
-					relevantEvents = main.lpfeAPI.getRelevantEvents(eventList,main.cfd);
-				} catch (Exception e1) {
-					LOG.error("Could not extract relevant events from training corpus!", e1);
-					e1.printStackTrace();
-
-					JOptionPane.showMessageDialog(main, "Could not extract relevant events from training corpus:\n"
-							+ e1.getMessage() + "\n" + "Aborting analysis.", "Analysis Error",
-							JOptionPane.ERROR_MESSAGE);
-					updateBeforeStop();
-					Thread.currentThread().stop();
-				}
-				content += getTimestamp() + " done!\n\n";
-				updateResultsView();
-				content += getTimestamp() + " Building attributes list...";
-				updateResultsView();
-
-				// build an attributes list from the events
-				List<String> features = null;
-				try {
-					features = main.lpfeAPI.getFeatureList(eventList,relevantEvents,main.cfd);
-				} catch (Exception e1) {
-					LOG.error("Could not create attributes from training corpus!", e1);
-
-					JOptionPane.showMessageDialog(main,
-							"Could not create attributes from training corpus:\n" + e1.getMessage() + "\n"
-									+ "Aborting analysis.", "Analysis Error", JOptionPane.ERROR_MESSAGE);
-					updateBeforeStop();
-					Thread.currentThread().stop();
+				// load the training and testing data from the DataMap cache, if it holds them
+				DataMapCache dataMapCache = null;
+				String cacheKey = null;
+				DataMapCache.Entry cached = null;
+				if (main.lpfeAPI.isCachingDataMaps()) {
+					String testingSettings = !classifyTestDocs ? "none"
+							: main.analysisClassTestKnownJRadioButton.isSelected() ? "known" : "unknown";
+					try {
+						cacheKey = DataMapCache.keyFor(main.lpfeAPI.getProblemSet(), main.cfd, main.lpfeAPI.isCachingByContent(),
+								"chunkDocs=" + main.lpfeAPI.isChunkingDocs() + ";testing=" + testingSettings);
+						dataMapCache = DataMapCache.forDriver(main.cfd);
+						cached = dataMapCache.read(cacheKey);
+					} catch (IOException e) {
+						LOG.warn("Failed to compute the DataMap cache key, not caching", e);
+					}
 				}
-				content += getTimestamp() + " done!\n\n";
-				updateResultsView();
-				content += getTimestamp() + " Creating training instances...";
-				updateResultsView();
-
-				// build the instances from the attributes
+				
 				DataMap training = null;
-				try {
-					training = main.lpfeAPI.createTrainingDataMapThreaded(eventList,relevantEvents,features,main.cfd);
-				} catch (Exception e) {
-					LOG.error("Could not create instances from training corpus!", e);
-					
-
-					JOptionPane.showMessageDialog(main,
-							"Could not create instances from training corpus:\n" + e.getMessage() + "\n"
-									+ "Aborting analysis.", "Analysis Error", JOptionPane.ERROR_MESSAGE);
-					updateBeforeStop();
-					Thread.currentThread().stop();
-				}
-
-				content += getTimestamp() + " done!\n\n";
-
-				// if we're to print out the feature vectors, do so
-				if (main.analysisOutputFeatureVectorJCheckBox.isSelected()) {
-					content += "Training corpus features:\n" + "================================\n"
-							+ training.toString() + "\n\n";
-					updateResultsView();
-				}
-
 				DataMap testing = null;
-				// if we're to extract testing data, do so
-				if (classifyTestDocs) {
-					LOG.info("Extracting features from test documents...");
-
-					content += getTimestamp() + " Extracting features from test documents (using sparse representation)...\n";
+				if (cached != null) {
+					content += getTimestamp() + " Loaded the training and testing data from the DataMap cache\n\n";
 					updateResultsView();
-
-					//if we're working with known authors, remove the "_Unknown_" author
-					if (main.analysisClassTestKnownJRadioButton.isSelected()) {
+					training = cached.getTraining();
+					testing = cached.getTesting();
+					if (classifyTestDocs && main.analysisClassTestKnownJRadioButton.isSelected()) {
 						main.lpfeAPI.getProblemSet().removeAuthor("_Unknown_");
 					}
-					
-					//create the instances
-					try {
-						testing = main.lpfeAPI.createTestingDataMapThreaded(eventList,relevantEvents,features,main.cfd);
-					} catch (Exception e) {
-						LOG.error("Could not create instances from test documents!", e);
-
-						JOptionPane.showMessageDialog(main,
-								"Could not create instances from test documents:\n" + e.getMessage() + "\n"
-										+ "Aborting analysis.", "Analysis Error", JOptionPane.ERROR_MESSAGE);
-						updateBeforeStop();
-						Thread.currentThread().stop();
-					}
 
-					//output the feature vectors if we're supposed to
-					content += getTimestamp() + " done!\n\n";
-					updateResultsView();
+					// if we're to print out the feature vectors, do so
 					if (main.analysisOutputFeatureVectorJCheckBox.isSelected()) {
-						content += "Test documents features:\n" + "===============================\n"
-								+ testing.toString() + "\n\n";
+						content += "Training corpus features:\n" + "================================\n"
+								+ training.toString() + "\n\n";
+						if (testing != null)
+							content += "Test documents features:\n" + "===============================\n"
+									+ testing.toString() + "\n\n";
 						updateResultsView();
 					}
+				} else {
+					DataMapCache.Entry extracted = extractDataMaps(classifyTestDocs);
+					training = extracted.getTraining();
+					testing = extracted.getTesting();
+					if (cacheKey != null) {
+						try {
+							dataMapCache.write(cacheKey, training, testing);
+						} catch (IOException e) {
+							LOG.warn("Failed to cache the DataMaps", e);
+						}
+					}
 				}
 
 				// running InfoGain
@@ -862,12 +791,12 @@ public class AnalysisTabDriver {
 					
 					try {
 						boolean apply = main.analysisApplyInfoGainJCheckBox.isSelected();
-						double[][] infoGain = InfoGain.calcInfoGain(training);
+						double[][] infoGain = InfoGain.calcInfoGain(training, main.lpfeAPI.getNumThreads());
 						
 						//if we're applying infoGain to cull the features, do so here
 						if (apply) {
 							InfoGain.applyInfoGain(infoGain,training,igValue);
-							infoGain = InfoGain.calcInfoGain(training);
+							infoGain = InfoGain.calcInfoGain(training, main.lpfeAPI.getNumThreads());
 						}
 						
 						//print out the remaining features and their infoGain values.
@@ -916,6 +845,8 @@ public class AnalysisTabDriver {
 								+ ClassTabDriver.getOptionsStr(a.getOptions()) + "\n\n";
 						
 						main.analysisDriver = a;
+						if (a instanceof WekaAnalyzer)
+							((WekaAnalyzer) a).setNumThreads(main.lpfeAPI.getNumThreads());
 						
 						content += getTimestamp() + " Starting classification...\n";
 						LOG.info("Starting classification...\n");
@@ -956,6 +887,8 @@ public class AnalysisTabDriver {
 								+ ClassTabDriver.getOptionsStr(a.getOptions()) + "\n\n";
 
 						main.analysisDriver = a;
+						if (a instanceof WekaAnalyzer)
+							((WekaAnalyzer) a).setNumThreads(main.lpfeAPI.getNumThreads());
 
 						content += getTimestamp() + " Starting cross validation...\n";
 						LOG.info("Starting cross validation...");
@@ -1043,6 +976,138 @@ public class AnalysisTabDriver {
 			LOG.info(">>> Run Analysis thread finished.");
 		}
 
+		/**
+		 * Extracts the training data from the training corpus, and the testing data from the test documents if they
+		 * are to be classified, reporting the progress in the results view.
+		 */
+		private DataMapCache.Entry extractDataMaps(boolean classifyTestDocs) {
+			// Extract the training information
+			content += getTimestamp() + " Extracting features from training corpus using sparse representation)...\n";
+			updateResultsView();
+			
+			if (main.lpfeAPI.isUsingCache())
+				main.lpfeAPI.validateCFDCache(main.cfd);
+			if (main.lpfeAPI.isChunkingDocs())
+			    Chunker.chunkAllTrainDocs(main.lpfeAPI.getProblemSet());
+			
+			List<List<EventSet>> eventList = null;
+			try {
+				eventList = main.lpfeAPI.extractEventsThreaded(main.cfd);
+			} catch (Exception e) {
+				LOG.error("Could not extract features from training corpus!", e);
+				
+
+				JOptionPane.showMessageDialog(main,
+						"Could not extract features from training corpus:\n" + e.getMessage() + "\n"
+								+ "Aborting analysis.", "Analysis Error", JOptionPane.ERROR_MESSAGE);
+				updateBeforeStop();
+				Thread.currentThread().stop();
+			}
+			content += getTimestamp() + " done!\n\n";
+			updateResultsView();
+			content += getTimestamp() + " Building relevant event set...";
+			updateResultsView();
+
+			// Cull the events
+			List<EventSet> relevantEvents = null;
+			try {
+				relevantEvents = main.lpfeAPI.getRelevantEvents(eventList,main.cfd);
+			} catch (Exception e1) {
+				LOG.error("Could not extract relevant events from training corpus!", e1);
+				e1.printStackTrace();
+
+				JOptionPane.showMessageDialog(main, "Could not extract relevant events from training corpus:\n"
+						+ e1.getMessage() + "\n" + "Aborting analysis.", "Analysis Error",
+						JOptionPane.ERROR_MESSAGE);
+				updateBeforeStop();
+				Thread.currentThread().stop();
+			}
+			content += getTimestamp() + " done!\n\n";
+			updateResultsView();
+			content += getTimestamp() + " Building attributes list...";
+			updateResultsView();
+
+			// build an attributes list from the events
+			List<String> features = null;
+			try {
+				features = main.lpfeAPI.getFeatureList(eventList,relevantEvents,main.cfd);
+			} catch (Exception e1) {
+				LOG.error("Could not create attributes from training corpus!", e1);
+
+				JOptionPane.showMessageDialog(main,
+						"Could not create attributes from training corpus:\n" + e1.getMessage() + "\n"
+								+ "Aborting analysis.", "Analysis Error", JOptionPane.ERROR_MESSAGE);
+				updateBeforeStop();
+				Thread.currentThread().stop();
+			}
+			content += getTimestamp() + " done!\n\n";
+			updateResultsView();
+			content += getTimestamp() + " Creating training instances...";
+			updateResultsView();
+
+			// build the instances from the attributes
+			DataMap training = null;
+			DataMap testing = null;
+			try {
+				training = main.lpfeAPI.createTrainingDataMapThreaded(eventList,relevantEvents,features,main.cfd);
+			} catch (Exception e) {
+				LOG.error("Could not create instances from training corpus!", e);
+				
+
+				JOptionPane.showMessageDialog(main,
+						"Could not create instances from training corpus:\n" + e.getMessage() + "\n"
+								+ "Aborting analysis.", "Analysis Error", JOptionPane.ERROR_MESSAGE);
+				updateBeforeStop();
+				Thread.currentThread().stop();
+			}
+
+			content += getTimestamp() + " done!\n\n";
+
+			// if we're to print out the feature vectors, do so
+			if (main.analysisOutputFeatureVectorJCheckBox.isSelected()) {
+				content += "Training corpus features:\n" + "================================\n"
+						+ training.toString() + "\n\n";
+				updateResultsView();
+			}
+
+			// if we're to extract testing data, do so
+			if (classifyTestDocs) {
+				LOG.info("Extracting features from test documents...");
+
+				content += getTimestamp() + " Extracting features from test documents (using sparse representation)...\n";
+				updateResultsView();
+
+				//if we're working with known authors, remove the "_Unknown_" author
+				if (main.analysisClassTestKnownJRadioButton.isSelected()) {
+					main.lpfeAPI.getProblemSet().removeAuthor("_Unknown_");
+				}
+				
+				//create the instances
+				try {
+					testing = main.lpfeAPI.createTestingDataMapThreaded(eventList,relevantEvents,features,main.cfd);
+				} catch (Exception e) {
+					LOG.error("Could not create instances from test documents!", e);
+
+					JOptionPane.showMessageDialog(main,
+							"Could not create instances from test documents:\n" + e.getMessage() + "\n"
+									+ "Aborting analysis.", "Analysis Error", JOptionPane.ERROR_MESSAGE);
+					updateBeforeStop();
+					Thread.currentThread().stop();
+				}
+
+				//output the feature vectors if we're supposed to
+				content += getTimestamp() + " done!\n\n";
+				updateResultsView();
+				if (main.analysisOutputFeatureVectorJCheckBox.isSelected()) {
+					content += "Test documents features:\n" + "===============================\n"
+							+ testing.toString() + "\n\n";
+					updateResultsView();
+				}
+			}
+
+			return new DataMapCache.Entry(training, testing);
+		}
+
 		public void updateBeforeStop() {
 			lockUnlock(main, false);
 		}
@@ -4,31 +4,175 @@ import java.util.*;
 
 import com.jgaap.generics.*;
 
-public abstract class FrequencyEventsExtended extends EventCuller implements Comparator<String> {
+/**
+ * Base class of the cullers that keep events by their number of appearances across all documents.<br>
+ *
+ * The events are counted in a single pass into mutable counters, the count of the Nth most or least common event is
+ * found with a bounded heap of N counts rather than by sorting every event, and the documents are then filtered with a
+ * single counter lookup per event.<br>
+ *
+ * As these cullers only look at the numbers of appearances, they can also cull those numbers directly, see
+ * {@link #cullCounts(Map)}, which lets the events be counted without keeping the event sets of all documents.
+ */
+public abstract class FrequencyEventsExtended extends EventCuller {
 
 	private static final long serialVersionUID = 1L;
-	protected Map<String,Integer> map;
-	
+
 	protected int N = 10;
-	
+
+	/**
+	 * Counts the appearances of every event across all documents, for the list event drivers.
+	 * @param eventSets the event sets of all documents
+	 * @return the number of appearances of every event
+	 */
 	public Map<String,Integer> getFrequency(List<EventSet> eventSets) {
-		Map<String,Integer> map = new HashMap<String,Integer>();
-		
+		Map<String,int[]> counts = countEvents(eventSets);
+		Map<String,Integer> map = new HashMap<String,Integer>(counts.size()*2);
+		for (Map.Entry<String,int[]> entry: counts.entrySet())
+			map.put(entry.getKey(), entry.getValue()[0]);
+
+		return map;
+	}
+
+	/**
+	 * The bounds on the number of appearances of the events to keep.
+	 * @param counts the number of appearances of every event across all documents
+	 * @return the smallest and largest number of appearances to keep, or null to keep the event sets as they are
+	 */
+	protected abstract int[] countBounds(Map<String,int[]> counts);
+
+	@Override
+	public List<EventSet> cull(List<EventSet> eventSets) {
+		Map<String,int[]> counts = countEvents(eventSets);
+		int[] bounds = countBounds(counts);
+		if (bounds == null)
+			return eventSets;
+		return retainEvents(eventSets, counts, bounds[0], bounds[1]);
+	}
+
+	/**
+	 * Culls the numbers of appearances of the events instead of the event sets. The events left are those that
+	 * {@link #cull(List)} keeps, with the same number of appearances as in the culled event sets.
+	 * @param counts the number of appearances of every event across all documents, from which the culled events are
+	 * removed
+	 */
+	public void cullCounts(Map<String,int[]> counts) {
+		int[] bounds = countBounds(counts);
+		if (bounds == null)
+			return;
+		Iterator<int[]> it = counts.values().iterator();
+		while (it.hasNext()) {
+			int count = it.next()[0];
+			if (count < bounds[0] || count > bounds[1])
+				it.remove();
+		}
+	}
+
+	/**
+	 * Counts the appearances of every event across all documents.
+	 * @param eventSets the event sets of all documents
+	 * @return the number of appearances of every event, as a single element array that is incremented in place
+	 */
+	protected static Map<String,int[]> countEvents(List<EventSet> eventSets) {
+		Map<String,int[]> counts = new HashMap<String,int[]>();
+		for (EventSet es: eventSets)
+			addCounts(counts, es);
+		return counts;
+	}
+
+	/**
+	 * Adds the appearances of the events of a single document to the numbers of appearances of every event.
+	 * @param counts the number of appearances of every event, as in {@link #countEvents(List)}
+	 * @param es the event set of the document
+	 */
+	public static void addCounts(Map<String,int[]> counts, EventSet es) {
+		for (Event e: es) {
+			String event = e.toString();
+			int[] count = counts.get(event);
+			if (count == null)
+				counts.put(event, new int[]{1});
+			else
+				count[0]++;
+		}
+	}
+
+	/**
+	 * Adds the numbers of appearances of the events over other documents to those of every event.
+	 * @param counts the number of appearances of every event, which is added to
+	 * @param other the number of appearances of every event over the other documents
+	 */
+	public static void mergeCounts(Map<String,int[]> counts, Map<String,int[]> other) {
+		for (Map.Entry<String,int[]> entry: other.entrySet()) {
+			int[] count = counts.get(entry.getKey());
+			if (count == null)
+				counts.put(entry.getKey(), new int[]{entry.getValue()[0]});
+			else
+				count[0] += entry.getValue()[0];
+		}
+	}
+
+	/**
+	 * Finds the number of appearances of the Nth most or least common event, keeping only the N most or least extreme
+	 * counts seen so far in a heap.
+	 * @param counts the number of appearances of every event
+	 * @param n the number of events, between 1 and the number of events
+	 * @param mostCommon whether to find the Nth most common event rather than the Nth least common one
+	 * @return the number of appearances of the Nth event
+	 */
+	protected static int nthCount(Map<String,int[]> counts, int n, boolean mostCommon) {
+		// a min-heap of the n largest counts, which are negated to find the n smallest ones
+		int[] heap = new int[n];
+		int size = 0;
+		for (int[] count: counts.values()) {
+			int value = mostCommon ? count[0] : -count[0];
+			if (size < n) {
+				int i = size++;
+				while (i > 0 && heap[(i-1)/2] > value) {
+					heap[i] = heap[(i-1)/2];
+					i = (i-1)/2;
+				}
+				heap[i] = value;
+			} else if (value > heap[0]) {
+				int i = 0;
+				while (2*i+1 < size) {
+					int child = 2*i+1;
+					if (child+1 < size && heap[child+1] < heap[child])
+						child++;
+					if (heap[child] >= value)
+						break;
+					heap[i] = heap[child];
+					i = child;
+				}
+				heap[i] = value;
+			}
+		}
+		return mostCommon ? heap[0] : -heap[0];
+	}
+
+	/**
+	 * Keeps only the events whose number of appearances is within the given bounds. The events of every document are
+	 * copied into a new event set with the same author, document name and ID, in their original order.
+	 * @param eventSets the event sets of all documents
+	 * @param counts the number of appearances of every event
+	 * @param min the smallest number of appearances to keep
+	 * @param max the largest number of appearances to keep
+	 * @return the culled event sets
+	 */
+	protected static List<EventSet> retainEvents(List<EventSet> eventSets, Map<String,int[]> counts, int min, int max) {
+		List<EventSet> culled = new ArrayList<EventSet>(eventSets.size());
 		for (EventSet es: eventSets) {
+			EventSet kept = new EventSet();
+			kept.setAuthor(es.getAuthor());
+			kept.setDocumentName(es.getDocumentName());
+			kept.setEventSetID(es.getEventSetID());
 			for (Event e: es) {
-				Integer curr = map.get(e.toString());
-				if (curr == null)
-					map.put(e.toString(), 1);
-				else
-					map.put(e.toString(), curr+1);
+				int count = counts.get(e.toString())[0];
+				if (count >= min && count <= max)
+					kept.addEvent(e);
 			}
+			culled.add(kept);
 		}
-		
-		return map;
-	}
-	
-	public int compare(String o1, String o2) {
-		return map.get(o1) - map.get(o2);
+		return culled;
 	}
 
 }
@@ -12,27 +12,15 @@ import com.jgaap.generics.*;
 public class MaxAppearances extends FrequencyEventsExtended {
 	private static final long serialVersionUID = 1L;
 	@Override
-	public List<EventSet> cull(List<EventSet> eventSets) {
+	protected int[] countBounds(Map<String,int[]> counts) {
 		
 		// get minimum number of appearances to consider
 		if(!getParameter("N").equals("")) {
 			N = Integer.parseInt(getParameter("N"));
 		}
 		
-		// calculate frequency of events across all documents
-		map = getFrequency(eventSets);
-
-		// remove irrelevant events
-		Event e;
-		for (EventSet es: eventSets) {
-			for (int i=es.size()-1; i >= 0; i--) {
-				e = es.eventAt(i); 
-				if (map.get(e.toString()) > N)
-					es.removeEvent(e);
-			}
-		}
-
-		return eventSets;
+		// keep the events whose frequency across all documents is within bounds
+		return new int[]{0, N};
 	}
 
 	@Override
@@ -7,45 +7,20 @@ import com.jgaap.generics.*;
 public class MostCommonEventsExtended extends FrequencyEventsExtended {
 	private static final long serialVersionUID = 1L;
 	@Override
-	public List<EventSet> cull(List<EventSet> eventSets) {
-		map = getFrequency(eventSets);
-
+	protected int[] countBounds(Map<String,int[]> counts) {
 		// get number of events
 		if(!getParameter("N").equals("")) {
 			N = Integer.parseInt(getParameter("N"));
 		}
 		
 		// if N is greater than the total number of unique events, return input
-		if (N > map.keySet().size())
-			return eventSets;
-		
-		// create list of event names, sorted in descending order by number of appearances
-		List<String> events = new ArrayList<String>(map.keySet().size());
-		for (String s: map.keySet())
-			events.add(s);
-		Collections.sort(events, this);
-		Collections.reverse(events); // ascending order
-				
-		// if one after last event has the same value, take it (although it exceeds N events)
-		int size = N;
-		while (size < events.size() && map.get(events.get(size-1)) - map.get((events.get(size))) == 0)
-			size++;
-		
-		// remove irrelevant events
-		for (int i=events.size()-1; i >= size; i--){
-			events.remove(i);
-		}
-		Event e;
-		for (EventSet es: eventSets) {
-			for (int i=es.size()-1; i >= 0; i--) {
-				e = es.eventAt(i); 
-				if (!events.contains(e.toString())){
-					es.removeEvent(e);
-				}
-			}
-		}
+		if (N > counts.size())
+			return null;
+		if (N < 1)
+			return new int[]{1, 0};
 		
-		return eventSets;
+		// take all events with the same number of appearances as the Nth most common one (although it exceeds N events)
+		return new int[]{nthCount(counts, N, true), Integer.MAX_VALUE};
 	}
 
 	@Override
@@ -38,34 +38,19 @@ public class FastTagPOSNGramsEventDriver extends EventDriver {
 		EventSet es = new EventSet(doc.getAuthor());
 		char[] text = doc.getProcessedText();
 		String stringText = new String(text);
-		Scanner scan = new Scanner(new StringReader(stringText));
 
 		if (tagger == null)
 			tagger = new FastTag();
 
-		String line;
-		List<String> words = new ArrayList<String>(), tags;
-		while (scan.hasNext()) {
-			line = scan.nextLine();
-			words.addAll(Tokenizer.wordsToList(line));
-		}
-		tags = tagger.tag(words);
+		List<String> tags = FastTagPOSTagsEventDriver.tagText(tagger, stringText);
 		
-		int i,j,n;
+		int n;
 		try {
 			n = Integer.parseInt(getParameter("N"));
 		} catch (NumberFormatException e) {
 			n = 2;
 		}
-		String curr;
-		for (i=0; i<tags.size()-n+1; i++) {
-			curr = "("+tags.get(i)+")";
-			for (j=1; j<n; j++) {
-				curr += "-("+tags.get(i+j)+")";
-			}
-			es.addEvent(new Event(curr));
-		}
-		scan.close();
+		POSAnnotations.addNGrams(es, tags, n);
 		return es;
 	}
 	
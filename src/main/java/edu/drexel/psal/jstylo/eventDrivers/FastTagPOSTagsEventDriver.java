@@ -38,21 +38,33 @@ public class FastTagPOSTagsEventDriver extends EventDriver {
 		EventSet es = new EventSet(doc.getAuthor());
 		char[] text = doc.getProcessedText();
 		String stringText = new String(text);
-		Scanner scan = new Scanner(new StringReader(stringText));
 		
 		if (tagger == null)
 			tagger = new FastTag();
 		
-		String line;
-		List<String> words = new ArrayList<String>(), tags;
-		while (scan.hasNext()) {
-			line = scan.nextLine();
-			words.addAll(Tokenizer.wordsToList(line));
-		}
-		tags = tagger.tag(words);
-		for (String tag: tags)
+		for (String tag: tagText(tagger, stringText))
 			es.addEvent(new Event(tag));
-		scan.close();
 		return es;
 	}
+	
+	/**
+	 * Tags a text, sharing the tags with the other FastTag drivers that tag the same text.
+	 * @param tagger the tagger
+	 * @param text the text to tag
+	 * @return the tag of every word of the text, in order
+	 */
+	static List<String> tagText(final FastTag tagger, String text) {
+		// FastTag's lexicon is static, so every instance tags the same way
+		return POSAnnotations.tags(FastTag.class, text, new POSAnnotations.Tagger() {
+			@Override
+			public List<String> tag(String text) {
+				Scanner scan = new Scanner(new StringReader(text));
+				List<String> words = new ArrayList<String>();
+				while (scan.hasNext())
+					words.addAll(Tokenizer.wordsToList(scan.nextLine()));
+				scan.close();
+				return tagger.tag(words);
+			}
+		});
+	}
 }
@@ -0,0 +1,92 @@
+package edu.drexel.psal.jstylo.eventDrivers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable set of words read from a lexicon file, one word per line.<br>
+ *
+ * Lexicons are kept in a process-wide registry keyed by the path of their file, so every driver on every thread that
+ * uses the same file shares a single set. A file is read again only when its last modified time changes. A path that
+ * is not a file is looked up in the resources instead, which are read once.
+ */
+public final class Lexicon {
+
+	private static final ConcurrentHashMap<String,Lexicon> REGISTRY = new ConcurrentHashMap<String,Lexicon>();
+
+	/**
+	 * A lexicon without any words
+	 */
+	public static final Lexicon EMPTY = new Lexicon(Collections.<String>emptySet(), 0);
+
+	private final Set<String> words;
+	private final long lastModified;
+
+	private Lexicon(Set<String> words, long lastModified) {
+		this.words = words;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Returns the lexicon of the given file, reading it only if it is not in the registry or the file has changed since.
+	 * Every line of the file, trimmed, is a word.
+	 * @param filename the path of the lexicon file, or of a resource
+	 * @return the lexicon
+	 * @throws IOException if neither the file nor the resource can be read
+	 */
+	public static Lexicon forFile(String filename) throws IOException {
+		File file = new File(filename);
+		long lastModified = file.isFile() ? file.lastModified() : 0;
+		Lexicon lexicon = REGISTRY.get(filename);
+		if (lexicon != null && lexicon.lastModified == lastModified)
+			return lexicon;
+
+		BufferedReader br;
+		if (file.isFile()) {
+			// look in file system
+			br = new BufferedReader(new FileReader(file));
+		} else {
+			// look in resources
+			InputStream in = Lexicon.class.getClassLoader().getResourceAsStream(filename);
+			if (in == null)
+				throw new FileNotFoundException(filename);
+			br = new BufferedReader(new InputStreamReader(in));
+		}
+		Set<String> words = new HashSet<String>();
+		try {
+			String word;
+			while ((word = br.readLine()) != null)
+				words.add(word.trim());
+		} finally {
+			br.close();
+		}
+
+		lexicon = new Lexicon(Collections.unmodifiableSet(words), lastModified);
+		REGISTRY.put(filename, lexicon);
+		return lexicon;
+	}
+
+	/**
+	 * @param word a word
+	 * @return whether the word is in the lexicon
+	 */
+	public boolean contains(String word) {
+		return words.contains(word);
+	}
+
+	/**
+	 * @return the number of distinct words of the lexicon
+	 */
+	public int size() {
+		return words.size();
+	}
+}
@@ -32,13 +32,12 @@ import edu.drexel.psal.jstylo.eventCullers.FrequencyEventsExtended;
  * 	<b>filename</b>: set to the file path of the lexicon to be used. Default is empty, in that case will return all events extracted with no filtering.
  * 	</li>
  * 	<li>
- * 	<b>sort</b>: set to <i>true</i> to have the extracted events sorted before lexicon lookup. Increases performance when have a large lexicon, as it reduces
- * 	the number of event list plus lexicon lookup to linear, but requires the lexicon file to be <b>sorted</b> and additional sorting time for the extracted event set.
+ * 	<b>sort</b>: set to <i>true</i> to have the extracted events sorted and grouped by event. The lexicon file does not need to be sorted.
  * 	Default is <i>false</i>.
  * 	</li>
  * 	<li>
- * 	<b>KeepLexiconInMem</b>: set to <i>true</i> to have the extracted lexicon kept in memory, instead of extracting it from the file for each document.
- * 	Can reduce running time for a large set of documents, but increases memory usage. 
+ * 	<b>KeepLexiconInMem</b>: set to <i>true</i> to keep a reference to the lexicon, instead of looking it up for each document.
+ * 	Lexicons are shared by all drivers through the {@link Lexicon} registry, and a lexicon file is only read again when it changes.
  * 	</li>
  * </ul>
  * 
@@ -78,13 +77,12 @@ public class ListEventDriver extends EventDriver {
 				"	<b>filename</b>: set to the file path of the lexicon to be used. Default is empty, in that case will return all events extracted with no filtering." +
 				"	</li>" +
 				"	<li>" +
-				"	<b>sort</b>: set to <i>true</i> to have the extracted events sorted before lexicon lookup. Increases performance when have a large lexicon, as it reduces" +
-				"	the number of event list plus lexicon lookup to linear, but requires the lexicon file to be <b>sorted</b> and additional sorting time for the extracted event set." +
+				"	<b>sort</b>: set to <i>true</i> to have the extracted events sorted and grouped by event. The lexicon file does not need to be sorted." +
 				"	Default is <i>false</i>." +
 				"	</li>" +
 				"	<li>" +
-				"	<b>KeepLexiconInMem</b>: set to <i>true</i> to have the extracted lexicon kept in memory, instead of extracting it from the file for each document." +
-				"	Can reduce running time for a large set of documents, but increases memory usage." + 
+				"	<b>KeepLexiconInMem</b>: set to <i>true</i> to keep a reference to the lexicon, instead of looking it up for each document." +
+				"	Lexicons are shared by all drivers, and a lexicon file is only read again when it changes." + 
 				"	</li>" +
 				"</ul>" +
 				"</html>";
@@ -106,7 +104,7 @@ public class ListEventDriver extends EventDriver {
 	
 	private boolean keepLexiconInMem;
 	
-	private List<String> lexicon;
+	private Lexicon lexicon;
 
 	@Override
 	public EventSet createEventSet(Document ds) throws EventGenerationException {
@@ -138,38 +136,14 @@ public class ListEventDriver extends EventDriver {
 				filename = null;
 			}
 
-			BufferedReader br = null;
-			lexicon = new ArrayList<String>();
-			String word;
-
+			// the lexicon is shared, so it is only read once per file
 			if (filename != null) {
 				try {
-					try {
-						// look in file system
-						br = new BufferedReader(new FileReader(filename));
-					} catch (IOException e) {
-						// look in resources
-						InputStream in = getClass().getClassLoader().getResourceAsStream(filename);
-						br = new BufferedReader(new InputStreamReader(in));
-					}
-
-					while ((word = br.readLine()) != null) {
-						lexicon.add(word.trim());
-					}
-
+					lexicon = Lexicon.forFile(filename);
 				} catch (IOException e) {
 					LOG.error("Error reading file "+filename,e);
-				} finally {
-					// if the file opened okay, make sure we close it
-					if (br != null) {
-						try {
-							br.close();
-						} catch (IOException ioe) {
-						}
-					}
+					lexicon = Lexicon.EMPTY;
 				}
-			} else {
-				lexicon = null;
 			}
 		}
 		
@@ -193,43 +167,9 @@ public class ListEventDriver extends EventDriver {
 				eventList.add(s);
 			Collections.sort(eventList);
 			
-			int i = 0, j = 0, c;
-			String e1, e2;
-			
-			// first handle all events < list[0]
-			for (; i<eventList.size() && j<lexicon.size() ;) {
-				
-				e1 = eventList.get(i);
-				e2 = lexicon.get(j);
-				c = e1.compareTo(e2);
-				
-				if (c < 0) {
-					// if blacklist, add events
-					if (!whiteList) {
-						for (int k=0; k<numEvents.get(e1); k++)
-							newEs.addEvent(new Event(e1));
-					}
-					// anyway advance index
-					i++;
-				} else if (c == 0) {
-					// if whitelist, add events
-					if (whiteList) {
-						for (int k=0; k<numEvents.get(e1); k++)
-							newEs.addEvent(new Event(e1));
-					}
-					// anyway advance index and lexicon
-					i++;
-					j++;
-				} else if (c > 0) {
-					// advance lexicon
-					j++;
-				}
-			}
-			
-			// if blacklist and have anything left, add them too
-			if (!whiteList) {
-				for (; i<eventList.size(); i++) {
-					e1 = eventList.get(i);
+			// add the events in the lexicon if whitelist, or the ones not in it if blacklist
+			for (String e1: eventList) {
+				if (lexicon.contains(e1) == whiteList) {
 					for (int k=0; k<numEvents.get(e1); k++)
 						newEs.addEvent(new Event(e1));
 				}
@@ -238,14 +178,9 @@ public class ListEventDriver extends EventDriver {
 		} else {
 			// unsorted
 			for (Event e : es) {
-				String s = e.toString();
-				if (lexicon.contains(s) && whiteList) {
-					// white-list
-					newEs.addEvent(e);
-				} else if (!lexicon.contains(s) && !whiteList) {
-					// black-list
+				// white-list keeps the events in the lexicon, black-list the ones that are not
+				if (lexicon.contains(e.toString()) == whiteList)
 					newEs.addEvent(e);
-				}
 			}
 		}
 		
@@ -262,6 +197,9 @@ public class ListEventDriver extends EventDriver {
 		public List<EventSet> cull(List<EventSet> arg0) {
 			return null;
 		}
+		protected int[] countBounds(Map<String,int[]> counts) {
+			return null;
+		}
 		public String displayName() {
 			return null;
 		}
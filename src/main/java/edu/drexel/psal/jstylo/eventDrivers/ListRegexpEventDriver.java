@@ -104,7 +104,7 @@ public class ListRegexpEventDriver extends EventDriver {
 	
 	private boolean keepLexiconInMem;
 	
-	private List<String> lexicon;
+	private RegexpLexicon lexicon;
 
 	@Override
 	public EventSet createEventSet(Document ds) {
@@ -125,32 +125,13 @@ public class ListRegexpEventDriver extends EventDriver {
 				filename = null;
 			}
 
-			BufferedReader br = null;
-			lexicon = new ArrayList<String>();
-			String word;
-
+			// the compiled lexicon is shared, so it is only read and compiled once per file
 			if (filename != null) {
 				try {
-					br = new BufferedReader(new FileReader(filename));
-
-					while ((word = br.readLine()) != null) {
-						lexicon.add(word.trim());
-					}
-
+					lexicon = RegexpLexicon.forFile(filename);
 				} catch (IOException e) {
 					LOG.error("Error reading file "+filename,e);
-					
-				} finally {
-					// if the file opened okay, make sure we close it
-					if (br != null) {
-						try {
-							br.close();
-						} catch (IOException ioe) {
-						}
-					}
 				}
-			} else {
-				lexicon = null;
 			}
 		}
 		
@@ -158,24 +139,12 @@ public class ListRegexpEventDriver extends EventDriver {
 		es.setAuthor(ds.getAuthor());
 		es.setNewEventSetID(ds.getAuthor());
 		
-		Map<String,Integer> appearances = new HashMap<String,Integer>();
-		
-		// extract events
+		// extract events, all entries of the lexicon in a single pass
 		String text = ds.stringify();
-		String match;
+		Map<String,Integer> appearances = lexicon == null ?
+				new HashMap<String,Integer>() : lexicon.countMatches(text);
 		Pattern pattern;
 		Matcher matcher;
-		for (String regexp: lexicon) {
-			pattern = Pattern.compile("\\s"+regexp+"\\s");
-		    matcher = pattern.matcher(text);
-		    while (matcher.find()) {
-		    	match = matcher.group();
-		    	if (appearances.get(match) == null)
-		    		appearances.put(match, 1);
-		    	else
-		    		appearances.put(match, appearances.get(match)+1);
-		    }
-		}
 		
 		int n;
 		if (whiteList) {
@@ -208,6 +177,9 @@ public class ListRegexpEventDriver extends EventDriver {
 		public List<EventSet> cull(List<EventSet> arg0) {
 			return null;
 		}
+		protected int[] countBounds(Map<String,int[]> counts) {
+			return null;
+		}
 		public String displayName() {
 			return null;
 		}
@@ -32,7 +32,6 @@ public class MaxentPOSNGramsEventDriver extends EventDriver implements StanfordD
 		return false;
 	}
 
-	private static MaxentTagger tagger = null;
 	protected static String taggerPath = "";
 	
 	public static String getTaggerPath() {
@@ -43,49 +42,31 @@ public class MaxentPOSNGramsEventDriver extends EventDriver implements StanfordD
 		MaxentPOSTagsEventDriver.taggerPath = taggerPath;
 	}
 	
-	@SuppressWarnings("static-access")
 	@Override
 	public EventSet createEventSet(Document doc) {
 		EventSet es = new EventSet(doc.getAuthor());
 		char[] text = doc.getProcessedText();
 		String stringText = new String(text);
 
-		// use MaxentPOSTagsEventDriver's tagger
+		// use MaxentPOSTagsEventDriver's tagger, so both drivers share the tags of a document
 		// initialize tagger and return empty event set if encountered a problem
-		if (tagger == null) {
-			tagger = MaxentPOSTagsEventDriver.initTagger();
-			if (tagger == null) return es;
-		}
-		
+		MaxentTagger tagger = MaxentPOSTagsEventDriver.sharedTagger();
+		if (tagger == null) return es;
 
-		List<List<HasWord>> sentences = tagger.tokenizeText(new BufferedReader(new StringReader(stringText)));
-		ArrayList<TaggedWord> tagged = new ArrayList<TaggedWord>();
-		for (List<HasWord> sentence : sentences)
-			tagged.addAll(tagger.tagSentence(sentence));
+		List<String> tagged = MaxentPOSTagsEventDriver.tagText(tagger, stringText);
 		
-		int i,j,n;
+		int n;
 		try {
 			n = Integer.parseInt(getParameter("N"));
 		} catch (NumberFormatException e) {
 			n = 2;
 		}
-		String curr;
-		for (i=0; i<tagged.size()-n+1; i++) {
-			curr = "("+tagged.get(i).tag()+")";
-			for (j=1; j<n; j++) {
-				curr += "-("+tagged.get(i+j).tag()+")";
-			}
-			es.addEvent(new Event(curr));
-		}
-		
-		sentences.clear();
-		sentences = null;
+		POSAnnotations.addNGrams(es, tagged, n);
 		return es;
 	}
 	
 	public void destroyTagger() { 
 		taggerPath = null;
-		tagger = null;
 	}
 
 }
@@ -43,7 +43,6 @@ public class MaxentPOSNGramsEventDriverGeneric extends EventDriver implements St
 		MaxentPOSTagsEventDriver.taggerPath = taggerPath;
 	}
 	
-	@SuppressWarnings("static-access")
 	@Override
 	public EventSet createEventSet(Document doc) {
 		EventSet es = new EventSet(doc.getAuthor());
@@ -58,30 +57,15 @@ public class MaxentPOSNGramsEventDriverGeneric extends EventDriver implements St
 		}
 		
 
-		List<List<HasWord>> sentences = tagger.tokenizeText(new BufferedReader(new StringReader(stringText)));
-		ArrayList<TaggedWord> tagged = new ArrayList<TaggedWord>();
-		for (List<HasWord> sentence : sentences)
-			tagged.addAll(tagger.tagSentence(sentence));
+		List<String> tagged = MaxentPOSTagsEventDriver.tagText(tagger, stringText);
 		
-		int i,j,n;
+		int n;
 		try {
 			n = Integer.parseInt(getParameter("N"));
 		} catch (NumberFormatException e) {
 			n = 2;
 		}
-		String curr;
-		for (i=0; i<tagged.size()-n+1; i++) {
-			
-			curr = "("+tagged.get(i).tag()+")";
-			for (j=1; j<n; j++) {
-				
-				curr += "-("+tagged.get(i+j).tag()+")";
-			}
-			es.addEvent(new Event(curr));
-		}
-		
-		sentences.clear();
-		sentences = null;
+		POSAnnotations.addNGrams(es, tagged, n);
 		return es;
 	}
 	/**
@@ -100,6 +84,9 @@ public class MaxentPOSNGramsEventDriverGeneric extends EventDriver implements St
 					taggerPath = currentTaggerPath;
 				
 			}
+			// share the unigram driver's tagger if it was loaded from the same model
+			if (MaxentPOSTagsEventDriverGeneric.tagger != null && taggerPath.equals(MaxentPOSTagsEventDriverGeneric.taggerPath))
+				return MaxentPOSTagsEventDriverGeneric.tagger;
 			t = new MaxentTagger(taggerPath);
 			
 		} catch (Exception e) {
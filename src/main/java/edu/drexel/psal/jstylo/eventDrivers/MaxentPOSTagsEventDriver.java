@@ -48,7 +48,6 @@ public class MaxentPOSTagsEventDriver extends EventDriver implements StanfordDri
 		MaxentPOSTagsEventDriver.taggerPath = taggerPath;
 	}
 
-	@SuppressWarnings("static-access")
 	@Override
 	public EventSet createEventSet(Document doc) {
 		EventSet es = new EventSet(doc.getAuthor());
@@ -56,32 +55,47 @@ public class MaxentPOSTagsEventDriver extends EventDriver implements StanfordDri
 		String stringText = new String(text);
 		
 		// initialize tagger and return empty event set if encountered a problem
-		if (tagger == null) {
-			tagger = initTagger();
-			if (tagger == null) return es;
-		}
+		MaxentTagger tagger = sharedTagger();
+		if (tagger == null) return es;
 
-		List<List<HasWord>> sentences = tagger.tokenizeText(new BufferedReader(new StringReader(stringText)));
-		for (List<HasWord> sentence : sentences) {
-			ArrayList<TaggedWord> tSentence = tagger.tagSentence(sentence);
-			for (TaggedWord tw: tSentence)
-				es.addEvent(new Event(tw.tag()));
-		}
-		
-		int n = sentences.size();
-		for (int i = 0; i<n; i++){
-			List<HasWord> sentence =sentences.remove(0);
-			int m = sentence.size();
-			for (int j = 0; j<m; j++){
-				sentence.remove(0);
-			}
-			sentence.clear();
-			sentence = null;
-		}
-		sentences = null;
+		for (String tag: tagText(tagger, stringText))
+			es.addEvent(new Event(tag));
 		return es;
 	}
 	
+	/**
+	 * Returns the tagger shared by the Maxent POS tags and n-grams drivers, loading it on first use. Drivers run on
+	 * several threads at once, so the tagger is loaded under a lock, once.
+	 * @return the tagger, or null if it could not be loaded
+	 */
+	static synchronized MaxentTagger sharedTagger() {
+		if (tagger == null)
+			tagger = initTagger();
+		return tagger;
+	}
+	
+	/**
+	 * Tags a text, sharing the tags with the other POS drivers that tag the same text with the same tagger.
+	 * @param tagger the tagger
+	 * @param text the text to tag
+	 * @return the tag of every word of the text, in order
+	 */
+	static List<String> tagText(final MaxentTagger tagger, String text) {
+		return POSAnnotations.tags(tagger, text, new POSAnnotations.Tagger() {
+			@SuppressWarnings("static-access")
+			@Override
+			public List<String> tag(String text) {
+				List<String> tags = new ArrayList<String>();
+				List<List<HasWord>> sentences = tagger.tokenizeText(new BufferedReader(new StringReader(text)));
+				for (List<HasWord> sentence : sentences) {
+					for (TaggedWord tw: tagger.tagSentence(sentence))
+						tags.add(tw.tag());
+				}
+				return tags;
+			}
+		});
+	}
+	
 	/**
 	 * Initialize the tagger.
 	 * @return
@@ -103,6 +117,8 @@ public class MaxentPOSTagsEventDriver extends EventDriver implements StanfordDri
 	
 	public void destroyTagger() {
 		setTaggerPath(null);
-		tagger = null;
+		synchronized (MaxentPOSTagsEventDriver.class) {
+			tagger = null;
+		}
 	}
 }
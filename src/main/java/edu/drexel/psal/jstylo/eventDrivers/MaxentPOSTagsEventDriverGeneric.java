@@ -44,7 +44,6 @@ public class MaxentPOSTagsEventDriverGeneric extends EventDriver implements Stan
 		MaxentPOSTagsEventDriverGeneric.taggerPath = taggerPath;
 	}
 
-	@SuppressWarnings("static-access")
 	@Override
 	public EventSet createEventSet(Document doc) {
 		EventSet es = new EventSet(doc.getAuthor());
@@ -60,15 +59,8 @@ public class MaxentPOSTagsEventDriverGeneric extends EventDriver implements Stan
 			if (tagger == null) return es;
 		}
 
-		List<List<HasWord>> sentences = tagger.tokenizeText(new BufferedReader(new StringReader(stringText)));
-		for (List<HasWord> sentence : sentences) {
-			ArrayList<TaggedWord> tSentence = tagger.tagSentence(sentence);
-			for (TaggedWord tw: tSentence)
-				es.addEvent(new Event(tw.tag()));
-		}
-		
-		sentences.clear();
-		sentences = null;
+		for (String tag: MaxentPOSTagsEventDriver.tagText(tagger, stringText))
+			es.addEvent(new Event(tag));
 		return es;
 	}
 
@@ -86,6 +78,9 @@ public class MaxentPOSTagsEventDriverGeneric extends EventDriver implements Stan
 				if(currentTaggerPath!=null||currentTaggerPath!="")
 					taggerPath = currentTaggerPath;
 			}
+			// share the n-gram driver's tagger if it was loaded from the same model
+			if (MaxentPOSNGramsEventDriverGeneric.tagger != null && taggerPath.equals(MaxentPOSNGramsEventDriverGeneric.taggerPath))
+				return MaxentPOSNGramsEventDriverGeneric.tagger;
 			t = new MaxentTagger(taggerPath);
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -0,0 +1,120 @@
+package edu.drexel.psal.jstylo.eventDrivers;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jgaap.generics.Event;
+import com.jgaap.generics.EventSet;
+
+/**
+ * The annotation layer shared by the POS event drivers: the tag stream of a text is computed once per tagger, and
+ * every POS unigram and n-gram driver that processes the same text with the same tagger reads the same stream, so the
+ * cost of tagging a document does not grow with the number of POS features.<br>
+ *
+ * The feature drivers of a document are run one after the other on a single thread, so the tag streams are kept per
+ * thread, for the last few texts only. {@link edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver}
+ * clears them once the event sets of a document are extracted.
+ */
+public final class POSAnnotations {
+
+	/**
+	 * The number of tag streams kept per thread
+	 */
+	private static final int CAPACITY = 8;
+
+	private static final ThreadLocal<Map<Key,List<String>>> ANNOTATIONS = new ThreadLocal<Map<Key,List<String>>>() {
+		@Override
+		protected Map<Key,List<String>> initialValue() {
+			return new LinkedHashMap<Key,List<String>>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Key,List<String>> eldest) {
+					return size() > CAPACITY;
+				}
+			};
+		}
+	};
+
+	/**
+	 * Tags a text.
+	 */
+	public interface Tagger {
+
+		/**
+		 * @param text the text to tag
+		 * @return the tag of every token of the text, in order
+		 */
+		List<String> tag(String text);
+	}
+
+	private POSAnnotations() {
+	}
+
+	/**
+	 * Returns the tag stream of the given text, tagging it only if it has not been tagged by the same tagger before.
+	 * @param model identifies the tagger and its model; streams are shared between callers with equal models
+	 * @param text the text to tag
+	 * @param tagger tags the text if its stream is not cached
+	 * @return the tag of every token of the text, in order, which must not be modified
+	 */
+	public static List<String> tags(Object model, String text, Tagger tagger) {
+		Map<Key,List<String>> annotations = ANNOTATIONS.get();
+		Key key = new Key(model, text);
+		List<String> tags = annotations.get(key);
+		if (tags == null) {
+			tags = Collections.unmodifiableList(tagger.tag(text));
+			annotations.put(key, tags);
+		}
+		return tags;
+	}
+
+	/**
+	 * Drops the tag streams of the current thread.
+	 */
+	public static void clear() {
+		ANNOTATIONS.get().clear();
+	}
+
+	/**
+	 * Adds the n-grams of the given tags to the event set, as "(tag1)-(tag2)-...".
+	 * @param es the event set to add to
+	 * @param tags the tag stream
+	 * @param n the length of the n-grams
+	 */
+	public static void addNGrams(EventSet es, List<String> tags, int n) {
+		StringBuilder curr = new StringBuilder();
+		for (int i=0; i<tags.size()-n+1; i++) {
+			curr.setLength(0);
+			curr.append('(').append(tags.get(i)).append(')');
+			for (int j=1; j<n; j++)
+				curr.append("-(").append(tags.get(i+j)).append(')');
+			es.addEvent(new Event(curr.toString()));
+		}
+	}
+
+	private static class Key {
+		private final Object model;
+		private final String text;
+
+		Key(Object model, String text) {
+			this.model = model;
+			this.text = text;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * model.hashCode() + text.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key other = (Key) o;
+			return model.equals(other.model) && text.equals(other.text);
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package edu.drexel.psal.jstylo.eventDrivers;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A lexicon of regular expressions, each compiled once into a pattern that matches the entry between two whitespace
+ * characters, which finds the matches of all of its entries in one pass over a text.<br>
+ *
+ * Every entry is counted as if its pattern alone was searched for in the text: the matches of different entries may
+ * overlap, so " a lot " is counted for both "a" and "a lot", and consecutive matches of the same entry do not, so in
+ * " the the " only the first "the" is counted, as the whitespace between them belongs to the first match. The entries
+ * are only tried at whitespace characters, and an entry that starts with a literal letter or digit only where the next
+ * character is that one. Entries with alternatives may match anywhere, so each of them is searched for on its own.<br>
+ *
+ * A lexicon is immutable and shared by every driver and thread that uses the same file. Lexicons are cached by the SHA-1
+ * of their content, so identical files share the compiled patterns, and every file is only read again when its last
+ * modified time or length changes.
+ */
+public final class RegexpLexicon {
+
+	private static final ConcurrentHashMap<String,RegexpLexicon> BY_CONTENT = new ConcurrentHashMap<String,RegexpLexicon>();
+	private static final ConcurrentHashMap<String,Stamped> BY_FILE = new ConcurrentHashMap<String,Stamped>();
+
+	/**
+	 * The pattern of every entry
+	 */
+	private final Pattern[] patterns;
+
+	/**
+	 * The entries that start with a given literal character, right after the leading whitespace
+	 */
+	private final Map<Character,int[]> byFirstChar = new HashMap<Character,int[]>();
+
+	/**
+	 * The entries that start with whitespace followed by any character
+	 */
+	private final int[] anyFirstChar;
+
+	/**
+	 * The entries with alternatives, which may not start with whitespace
+	 */
+	private final int[] alternatives;
+
+	private RegexpLexicon(List<String> entries) {
+		patterns = new Pattern[entries.size()];
+		Map<Character,List<Integer>> firstChars = new HashMap<Character,List<Integer>>();
+		List<Integer> any = new ArrayList<Integer>();
+		List<Integer> alternatives = new ArrayList<Integer>();
+		for (int i = 0; i < patterns.length; i++) {
+			String entry = entries.get(i);
+			patterns[i] = Pattern.compile("\\s" + entry + "\\s");
+			if (entry.indexOf('|') != -1) {
+				alternatives.add(i);
+			} else if (entry.isEmpty() || !Character.isLetterOrDigit(entry.charAt(0))
+					|| (entry.length() > 1 && "?*{".indexOf(entry.charAt(1)) != -1)) {
+				any.add(i);
+			} else {
+				List<Integer> indices = firstChars.get(entry.charAt(0));
+				if (indices == null)
+					firstChars.put(entry.charAt(0), indices = new ArrayList<Integer>());
+				indices.add(i);
+			}
+		}
+		for (Map.Entry<Character,List<Integer>> first : firstChars.entrySet())
+			byFirstChar.put(first.getKey(), toArray(first.getValue()));
+		anyFirstChar = toArray(any);
+		this.alternatives = toArray(alternatives);
+	}
+
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++)
+			array[i] = list.get(i);
+		return array;
+	}
+
+	/**
+	 * Returns the compiled lexicon of the given file, reading and compiling it only if it has not been compiled before.
+	 * Every line of the file, trimmed, is an entry.
+	 * @param filename the path of the lexicon file
+	 * @return the lexicon
+	 * @throws IOException if the file cannot be read
+	 */
+	public static RegexpLexicon forFile(String filename) throws IOException {
+		File file = new File(filename);
+		long lastModified = file.lastModified();
+		long length = file.length();
+		Stamped stamped = BY_FILE.get(filename);
+		if (stamped != null && stamped.lastModified == lastModified && stamped.length == length)
+			return stamped.lexicon;
+
+		byte[] bytes = Files.readAllBytes(file.toPath());
+		String sha = sha1(bytes);
+		RegexpLexicon lexicon = BY_CONTENT.get(sha);
+		if (lexicon == null) {
+			List<String> entries = new ArrayList<String>();
+			BufferedReader br = new BufferedReader(new StringReader(new String(bytes, Charset.defaultCharset())));
+			String word;
+			while ((word = br.readLine()) != null)
+				entries.add(word.trim());
+			lexicon = new RegexpLexicon(entries);
+			RegexpLexicon previous = BY_CONTENT.putIfAbsent(sha, lexicon);
+			if (previous != null)
+				lexicon = previous;
+		}
+		BY_FILE.put(filename, new Stamped(lexicon, lastModified, length));
+		return lexicon;
+	}
+
+	/**
+	 * Counts the matches of the lexicon's entries in the given text.
+	 * @param text the text
+	 * @return the number of appearances of every match, including its surrounding whitespace characters
+	 */
+	public Map<String,Integer> countMatches(String text) {
+		Map<String,Integer> appearances = new HashMap<String,Integer>();
+		for (int i : alternatives) {
+			Matcher matcher = patterns[i].matcher(text);
+			while (matcher.find())
+				count(matcher.group(), appearances);
+		}
+		if (byFirstChar.isEmpty() && anyFirstChar.length == 0)
+			return appearances;
+
+		Matcher[] matchers = new Matcher[patterns.length];
+		// where the next match of every entry may start, as the matches of an entry do not overlap
+		int[] nextStart = new int[patterns.length];
+		// a match takes at least two characters, its leading and trailing whitespace
+		for (int start = 0; start < text.length() - 1; start++) {
+			if (!isWhitespace(text.charAt(start)))
+				continue;
+			int[] literal = byFirstChar.get(text.charAt(start + 1));
+			if (literal != null)
+				match(text, start, literal, matchers, nextStart, appearances);
+			match(text, start, anyFirstChar, matchers, nextStart, appearances);
+		}
+		return appearances;
+	}
+
+	/**
+	 * Matches the given entries at the start position and counts their matches.
+	 */
+	private void match(String text, int start, int[] entries, Matcher[] matchers, int[] nextStart,
+			Map<String,Integer> appearances) {
+		for (int i : entries) {
+			if (start < nextStart[i])
+				continue;
+			Matcher matcher = matchers[i];
+			if (matcher == null) {
+				// match as if searching the whole text, so lookarounds and anchors see past the region
+				matcher = matchers[i] = patterns[i].matcher(text);
+				matcher.useTransparentBounds(true);
+				matcher.useAnchoringBounds(false);
+			}
+			matcher.region(start, text.length());
+			if (matcher.lookingAt()) {
+				count(matcher.group(), appearances);
+				nextStart[i] = matcher.end();
+			}
+		}
+	}
+
+	private static void count(String match, Map<String,Integer> appearances) {
+		Integer count = appearances.get(match);
+		appearances.put(match, count == null ? 1 : count+1);
+	}
+
+	/**
+	 * @return whether the character matches \s
+	 */
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * @return the number of entries of the lexicon
+	 */
+	public int size() {
+		return patterns.length;
+	}
+
+	private static String sha1(byte[] bytes) throws IOException {
+		MessageDigest digest = null;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		StringBuilder hex = new StringBuilder();
+		for (byte b : digest.digest(bytes))
+			hex.append(String.format("%02x", b));
+		return hex.toString();
+	}
+
+	/**
+	 * The lexicon of a file, with the last modified time and length of the file it was read at.
+	 */
+	private static class Stamped {
+		final RegexpLexicon lexicon;
+		final long lastModified;
+		final long length;
+
+		Stamped(RegexpLexicon lexicon, long lastModified, long length) {
+			this.lexicon = lexicon;
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+	}
+}
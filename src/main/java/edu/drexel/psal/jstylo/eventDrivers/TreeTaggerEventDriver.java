@@ -65,7 +65,7 @@ public class TreeTaggerEventDriver  extends EventDriver {
 
 	@Override
 	public EventSet createEventSet(Document doc) {
-		final EventSet es = new EventSet(doc.getAuthor());
+		EventSet es = new EventSet(doc.getAuthor());
 		char[] text = doc.getProcessedText();
 		String stringText = new String(text);
 		
@@ -75,31 +75,49 @@ public class TreeTaggerEventDriver  extends EventDriver {
 			tagger = initTagger();
 			if (tagger == null) return es;
 		}
-		try {
-			tagger.setModel(taggerPath);
-			tagger.setHandler(new TokenHandler<String>() {
-				public void token(String token, String pos, String lemma) {
-					// if(!pos.equals("SENT"))
-					es.addEvent(new Event(pos));
-				}
-			});
-
-			String[] temp = stringText.split("\\s");
-			List<String> testList = new ArrayList<String>();
-			for (String s : temp)
-				testList.add(s);
-			tagger.process(testList);
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (TreeTaggerException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		for (String pos: tagText(tagger, taggerPath, stringText))
+			es.addEvent(new Event(pos));
 
 		return es;
 	}
 	
+	/**
+	 * Tags a text, sharing the tags with the other TreeTagger drivers that tag the same text with the same model.
+	 * @param tagger the tagger
+	 * @param model the path of the parameter file
+	 * @param text the text to tag
+	 * @return the tag of every token of the text, in order, sentence ends included
+	 */
+	static List<String> tagText(final TreeTaggerWrapper<String> tagger, final String model, String text) {
+		return POSAnnotations.tags("TreeTagger:" + model, text, new POSAnnotations.Tagger() {
+			@Override
+			public List<String> tag(String text) {
+				final List<String> tags = new ArrayList<String>();
+				try {
+					tagger.setModel(model);
+					tagger.setHandler(new TokenHandler<String>() {
+						public void token(String token, String pos, String lemma) {
+							tags.add(pos);
+						}
+					});
+
+					String[] temp = text.split("\\s");
+					List<String> testList = new ArrayList<String>();
+					for (String s : temp)
+						testList.add(s);
+					tagger.process(testList);
+				} catch (IOException e) {
+					// TODO Auto-generated catch block
+					e.printStackTrace();
+				} catch (TreeTaggerException e) {
+					// TODO Auto-generated catch block
+					e.printStackTrace();
+				}
+				return tags;
+			}
+		});
+	}
+	
 	/**
 	 * Initialize the tagger.
 	 * @return
@@ -61,45 +61,20 @@ public class TreeTaggerNGramsEventDriver  extends EventDriver {
 		}
 		
 
-		final ArrayList<String> tagged = new ArrayList<String>();
-		try {
-
-			taggerPath = getParameter("taggerPath");
-			tagger.setModel(taggerPath);
-			tagger.setHandler(new TokenHandler<String>() {
-				public void token(String token, String pos, String lemma) {
-					if (!pos.equals("SENT"))
-						tagged.add(pos);
-				}
-			});
-
-			String[] temp = stringText.split("\\s");
-			List<String> testList = new ArrayList<String>();
-			for (String s : temp)
-				testList.add(s);
-			tagger.process(testList);
-
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (TreeTaggerException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
-		int i, j, n;
+		// sentence ends are not part of the n-grams
+		taggerPath = getParameter("taggerPath");
+		List<String> tagged = new ArrayList<String>();
+		for (String pos: TreeTaggerEventDriver.tagText(tagger, taggerPath, stringText))
+			if (!pos.equals("SENT"))
+				tagged.add(pos);
+		
+		int n;
 		try {
 			n = Integer.parseInt(getParameter("N"));
 		} catch (NumberFormatException e) {
 			n = 2;
 		}
-		String curr;
-		for (i=0; i<tagged.size()-n+1; i++) {
-			curr = "("+tagged.get(i)+")";
-			for (j=1; j<n; j++) {
-				curr += "-("+tagged.get(i+j)+")";
-			}
-			es.addEvent(new Event(curr));
-		}
+		POSAnnotations.addNGrams(es, tagged, n);
 		
 		return es;
 	}
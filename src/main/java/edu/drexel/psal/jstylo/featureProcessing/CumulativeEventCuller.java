@@ -1,8 +1,18 @@
 package edu.drexel.psal.jstylo.featureProcessing;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.jgaap.generics.*;
 
+import edu.drexel.psal.jstylo.eventCullers.FrequencyEventsExtended;
+
 /**
  * The cumulative event culler class applies JGAAP event cullers defined in the given cumulative feature driver instance
  * on the given list of lists of event sets, that should be generated by the given cumulative feature driver.
@@ -12,11 +22,14 @@ import com.jgaap.generics.*;
  */
 public class CumulativeEventCuller {
 	
+	private static final Logger LOG = LoggerFactory.getLogger(CumulativeEventCuller.class);
+	
 	/**
 	 * Given a list of lists of event sets and a cumulative feature driver, where each sub-list contains the
 	 * event sets that correspond to the underlying event drivers in the cumulative feature driver, it returns the list
 	 * of lists of event sets after applying the corresponding event cullers as configured per event driver
-	 * in the given cumulative feature driver. 
+	 * in the given cumulative feature driver. The feature drivers are culled one after the other, on the calling
+	 * thread; see {@link #cull(List, CumulativeFeatureDriver, int)} to cull them concurrently.
 	 * @param eventSets
 	 * 		The list of lists of event sets on which to apply the event cullers.
 	 * @param ced
@@ -26,15 +39,33 @@ public class CumulativeEventCuller {
 	 * 		A new list of lists of event sets after the corresponding event cullers were applied.
 	 * @throws EventCullingException 
 	 */
-	// FIXME make sure that non-histogram features are handled correctly
 	public static List<List<EventSet>> cull(List<List<EventSet>> eventSets, CumulativeFeatureDriver ced) throws EventCullingException {
+		return cull(eventSets, ced, 1);
+	}
+	
+	/**
+	 * Same as {@link #cull(List, CumulativeFeatureDriver)}, culling the event sets of different feature drivers at the
+	 * same time on the given number of threads.
+	 * @param eventSets
+	 * 		The list of lists of event sets on which to apply the event cullers.
+	 * @param ced
+	 * 		The cumulative feature driver that created the given list of lists of event sets, and holds
+	 * 		the configuration for the event cullers to apply on the event sets.
+	 * @param numThreads
+	 * 		The number of feature drivers whose event sets are culled at the same time.
+	 * @return
+	 * 		A new list of lists of event sets after the corresponding event cullers were applied.
+	 * @throws EventCullingException 
+	 */
+	// FIXME make sure that non-histogram features are handled correctly
+	public static List<List<EventSet>> cull(List<List<EventSet>> eventSets, CumulativeFeatureDriver ced, int numThreads) throws EventCullingException {
 		int totalSetLists = eventSets.size();
 		List<List<EventSet>> res = new ArrayList<List<EventSet>>(totalSetLists);
 		for (int i=0; i<totalSetLists; i++)
 			res.add(i, new ArrayList<EventSet>());
 		int size = ced.numOfFeatureDrivers();
 		List<EventSet> tmpEventSets;
-		List<EventCuller> cullers;
+		long start = System.currentTimeMillis();
 		
 		// save eventSet details for after culling
 		List<String> authorNames = new ArrayList<String>(totalSetLists);
@@ -46,23 +77,26 @@ public class CumulativeEventCuller {
 			esIds.add(i,eventSets.get(i).get(0).getEventSetID());
 		}
 		
+		List<List<EventSet>> features = new ArrayList<List<EventSet>>(size);
 		for (int i=0; i<size; i++) {
 			// get all event sets at position i (generated by the ith event driver in the given cumulative event driver)
 			tmpEventSets = new ArrayList<EventSet>();
 			for (int j=0; j<totalSetLists; j++){
 				tmpEventSets.add(eventSets.get(j).get(i));
 			}
-			
-			// get all cullers for the ith feature driver in the given cumulative feature driver and apply
-			cullers = ced.featureDriverAt(i).getCullers();
-			if (cullers == null) {
+			features.add(tmpEventSets);
+		}
+		
+		// apply the cullers of every feature driver in the given cumulative feature driver
+		features = cullFeatures(features, ced, numThreads);
+		
+		for (int i=0; i<size; i++) {
+			tmpEventSets = features.get(i);
+			if (!hasCullers(ced.featureDriverAt(i))) {
 				for (int j=0; j<totalSetLists; j++)
 					res.get(j).add(i,tmpEventSets.get(j));
 				continue;
 			}
-			for (EventCuller ec: cullers) {
-				tmpEventSets = ec.cull(tmpEventSets);
-			}
 			for (int j=0; j<totalSetLists; j++) {
 				tmpEventSets.get(j).setAuthor(authorNames.get(j));
 				tmpEventSets.get(j).setDocumentName(docNames.get(j));
@@ -70,10 +104,139 @@ public class CumulativeEventCuller {
 				res.get(j).add(i,tmpEventSets.get(j));
 			}
 		}
+		LOG.info("Culled " + size + " feature sets in " + (System.currentTimeMillis() - start) + " ms");
 				
 		return res;
 	}
 	
+	/**
+	 * Applies the event cullers of every feature driver on the event sets it generated, culling the event sets of
+	 * different feature drivers at the same time. The event sets of a single feature driver are culled by one thread,
+	 * with its cullers applied in order.
+	 * The author, document name and ID of the culled event sets are not restored.
+	 * @param features
+	 * 		The event sets of every feature driver, one per document, or null for a feature driver to leave out.
+	 * @param cfd
+	 * 		The cumulative feature driver that created the given event sets.
+	 * @param numThreads
+	 * 		The number of feature drivers whose event sets are culled at the same time.
+	 * @return
+	 * 		The event sets of every feature driver after its event cullers were applied, in the same order. Those of
+	 * 		feature drivers without cullers are returned as they are.
+	 * @throws EventCullingException
+	 */
+	public static List<List<EventSet>> cullFeatures(List<List<EventSet>> features, CumulativeFeatureDriver cfd, int numThreads) throws EventCullingException {
+		List<List<EventSet>> res = new ArrayList<List<EventSet>>(features);
+		List<Integer> culled = new ArrayList<Integer>();
+		for (int i=0; i<features.size(); i++) {
+			if (features.get(i) != null && hasCullers(cfd.featureDriverAt(i)))
+				culled.add(i);
+		}
+		
+		int poolSize = Math.min(numThreads, culled.size());
+		if (poolSize <= 1) {
+			for (int i: culled)
+				res.set(i, cullFeature(features.get(i), cfd.featureDriverAt(i)));
+			return res;
+		}
+		
+		ForkJoinPool pool = new ForkJoinPool(poolSize);
+		try {
+			List<Future<List<EventSet>>> futures = new ArrayList<Future<List<EventSet>>>(culled.size());
+			for (int i: culled) {
+				final List<EventSet> eventSets = features.get(i);
+				final FeatureDriver fd = cfd.featureDriverAt(i);
+				futures.add(pool.submit(new Callable<List<EventSet>>() {
+					@Override
+					public List<EventSet> call() throws EventCullingException {
+						return cullFeature(eventSets, fd);
+					}
+				}));
+			}
+			for (int k=0; k<culled.size(); k++)
+				res.set(culled.get(k), futures.get(k).get());
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof EventCullingException)
+				throw (EventCullingException) e.getCause();
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException("Failed to cull events", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new EventCullingException("Interrupted while culling events");
+		} finally {
+			pool.shutdownNow();
+		}
+		return res;
+	}
+	
+	/**
+	 * @param fd a feature driver
+	 * @return whether any event cullers are configured for the given feature driver
+	 */
+	public static boolean hasCullers(FeatureDriver fd) {
+		return fd.getCullers() != null && !fd.getCullers().isEmpty();
+	}
+	
+	/**
+	 * @param fd a feature driver
+	 * @return whether the given feature driver has a histogram and only event cullers that keep events by their
+	 * number of appearances, so that its event sets can be culled through {@link #cullCounts(Map, FeatureDriver)}
+	 */
+	public static boolean cullsByCount(FeatureDriver fd) {
+		if (!hasCullers(fd) || !fd.isCalcHist())
+			return false;
+		for (EventCuller ec: fd.getCullers()) {
+			if (!(ec instanceof FrequencyEventsExtended))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Applies the event cullers of a single feature driver on the numbers of appearances of its events across all
+	 * documents rather than on its event sets, logging the time taken by every culler. The events left are those that
+	 * remain in the event sets culled by {@link #cullFeature(List, FeatureDriver)}.
+	 * @param counts
+	 * 		The number of appearances of every event of the feature driver across all documents, see
+	 * 		{@link FrequencyEventsExtended#addCounts(Map, EventSet)}. The culled events are removed from it.
+	 * @param fd
+	 * 		The feature driver, for which {@link #cullsByCount(FeatureDriver)} holds.
+	 */
+	public static void cullCounts(Map<String,int[]> counts, FeatureDriver fd) {
+		for (EventCuller ec: fd.getCullers()) {
+			long start = System.currentTimeMillis();
+			((FrequencyEventsExtended) ec).cullCounts(counts);
+			LOG.info("Culled " + fd.getName() + " with " + ec.getClass().getSimpleName() + " in "
+					+ (System.currentTimeMillis() - start) + " ms");
+		}
+	}
+	
+	/**
+	 * Applies the event cullers of a single feature driver on the event sets it generated for every document, logging
+	 * the time taken by every culler.
+	 * The author, document name and ID of the culled event sets are not restored.
+	 * @param eventSets
+	 * 		The event sets of the feature driver, one per document.
+	 * @param fd
+	 * 		The feature driver that created the given event sets.
+	 * @return
+	 * 		The event sets after the feature driver's event cullers were applied, one per document.
+	 * @throws EventCullingException
+	 */
+	public static List<EventSet> cullFeature(List<EventSet> eventSets, FeatureDriver fd) throws EventCullingException {
+		List<EventCuller> cullers = fd.getCullers();
+		if (cullers == null)
+			return eventSets;
+		for (EventCuller ec: cullers) {
+			long start = System.currentTimeMillis();
+			eventSets = ec.cull(eventSets);
+			LOG.info("Culled " + fd.getName() + " with " + ec.getClass().getSimpleName() + " in "
+					+ (System.currentTimeMillis() - start) + " ms");
+		}
+		return eventSets;
+	}
+	
 	
 	/**
 	 * Given a list of lists of event sets of the known documents AFTER all event cullers have been applied,
@@ -9,6 +9,7 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,6 +17,7 @@ import org.slf4j.LoggerFactory;
 import com.jgaap.generics.*;
 
 import edu.drexel.psal.JSANConstants;
+import edu.drexel.psal.jstylo.eventDrivers.POSAnnotations;
 import edu.drexel.psal.jstylo.eventDrivers.StanfordDriver;
 
 
@@ -71,23 +73,18 @@ public class CumulativeFeatureDriver implements Serializable {
 	}
 	
 	/**
-	 * Copy constructor.
+	 * Copy constructor. Copies every feature driver in memory, with new instances of its event driver,
+	 * canonicizers and cullers (see {@link FeatureDriver#FeatureDriver(FeatureDriver)}), so that each thread
+	 * can extract features with its own copy. Safe to call from any number of threads at once.
 	 * @param other to copy.
 	 */
 	public CumulativeFeatureDriver(CumulativeFeatureDriver other) throws Exception
 	{
-		String path = "tmp.xml";
-		File xml = new File(path);
-		PrintWriter pw = new PrintWriter(xml);
-		pw.print(other.toXMLString());
-		pw.flush();
-		pw.close();
-		XMLParser parser = new XMLParser(path);
-		CumulativeFeatureDriver generated = parser.cfd;
-		this.name = generated.name;
-		this.description = generated.description;
-		this.features = generated.features;
-		xml.delete();
+		this.name = other.name;
+		this.description = other.description;
+		this.features = new ArrayList<FeatureDriver>(other.features.size());
+		for (FeatureDriver fd : other.features)
+			this.features.add(new FeatureDriver(fd));
 	}
 
 	/**
@@ -114,6 +111,19 @@ public class CumulativeFeatureDriver implements Serializable {
 		this.features = generated.features;
 	}
 	
+	/**
+	 * Creates a cumulative feature driver from its XML, as produced by {@link #toXMLString()}.
+	 * @param xml
+	 * 		The XML of the feature set.
+	 * @return
+	 * 		The cumulative feature driver.
+	 * @throws Exception
+	 */
+	public static CumulativeFeatureDriver fromXMLString(String xml) throws Exception {
+		XMLParser parser = new CumulativeFeatureDriver().new XMLParser(new InputSource(new StringReader(xml)));
+		return parser.cfd;
+	}
+	
 	/* ==========
 	 * operations
 	 * ==========
@@ -121,95 +131,118 @@ public class CumulativeFeatureDriver implements Serializable {
 	
 	/**
 	 * Returns a list of all event sets extracted per each feature driver.
-	 * Does not make use of cache.
+	 * Does not make use of cache.<br>
+	 * The document is loaded once, and each distinct canonicizer chain is applied to it once and shared by all
+	 * of the feature drivers using that chain.
 	 * @param doc
 	 * 		Input document.
 	 * @param usingCache
-	 * 		Whether or not to cache the results to file.
+	 * 		Ignored. Caching is done by FeatureExtractionAPI.extractEventSets, see {@link FeatureCache}.
 	 * @return
 	 * 		List of all event sets extracted per each event driver.
 	 * @throws Exception 
 	 */
+	@Deprecated
 	public List<EventSet> createEventSets(Document doc, boolean loadDocContents, boolean usingCache) throws Exception {
+		return createEventSets(doc, loadDocContents);
+	}
+	
+	/**
+	 * Returns a list of all event sets extracted per each feature driver.
+	 * Does not make use of cache.<br>
+	 * The document is loaded once, and each distinct canonicizer chain is applied to it once and shared by all
+	 * of the feature drivers using that chain.
+	 * @param doc
+	 * 		Input document.
+	 * @param loadDocContents
+	 * 		Whether or not the document's text is already loaded.
+	 * @return
+	 * 		List of all event sets extracted per each event driver.
+	 * @throws Exception 
+	 */
+	public List<EventSet> createEventSets(Document doc, boolean loadDocContents) throws Exception {
+		int[] featureIndices = new int[features.size()];
+		for (int i=0; i<featureIndices.length; i++)
+			featureIndices[i] = i;
+		return createEventSets(doc, loadDocContents, featureIndices);
+	}
+	
+	/**
+	 * Returns the event sets extracted by the feature drivers at the given indices, in the given order.
+	 * Does not make use of cache.<br>
+	 * Used to extract only the feature sets that are missing from the cache of a document.
+	 * @param doc
+	 * 		Input document.
+	 * @param loadDocContents
+	 * 		Whether or not the document's text is already loaded.
+	 * @param featureIndices
+	 * 		The indices of the feature drivers to extract event sets with.
+	 * @return
+	 * 		List of the event sets extracted per each of the given feature drivers.
+	 * @throws Exception 
+	 */
+	public List<EventSet> createEventSets(Document doc, boolean loadDocContents, int[] featureIndices) throws Exception {
 		
-		List<EventSet> esl = new ArrayList<EventSet>();
-		
-		File docCache = null;
-		File docOriginal = null;
-		BufferedWriter writer = null;
+		List<EventSet> esl = new ArrayList<EventSet>(featureIndices.length);
 		
-		if (usingCache) {
-			File cacheDir = new File(JSANConstants.JSAN_CACHE + "_" + getName() + "/");
-			File authorDir = null;
-			if (doc.getAuthor().equals(JSANConstants.DUMMY_NAME)) {
-				authorDir = new File(cacheDir, "you");
+		// load the text only once, no matter how many features are extracted from it
+		String rawText = null;
+		if (!(doc instanceof StringDocument)) {
+			if (loadDocContents) {
+				rawText = String.copyValueOf(doc.getProcessedText());
 			} else {
-				authorDir = new File(cacheDir, "_" + doc.getAuthor());
-			}
-
-			if (!authorDir.exists()) {
-				authorDir.mkdirs();
+				try {
+					Document loaded = new Document(doc.getFilePath(),doc.getAuthor(),doc.getTitle());
+					loaded.load();
+					rawText = String.copyValueOf(loaded.getProcessedText());
+				} catch (Exception e) {
+					LOG.error("Failed to load document!",e);
+					throw new Exception();
+				}
 			}
-
-			// We will start making the cache file in this method. The metadata
-			// will be appended
-			// in the Engine's extractEventSets() method..
-
-			docCache = new File(authorDir, doc.getTitle() + ".cache");
-			docOriginal = new File(doc.getFilePath());
-
-			writer = new BufferedWriter(new FileWriter(docCache));
-			writer.write(docOriginal.getCanonicalPath() + '\n');
-			writer.write(Long.toString(docOriginal.lastModified()) + '\n');
 		}
 		
-		for (int i=0; i<features.size(); i++) {
+		// features sharing a canonicizer chain share the canonicized document,
+		// so each distinct chain is applied only once
+		Map<String,Document> canonicizedDocs = new HashMap<String,Document>();
+		
+		for (int i: featureIndices) {
 			EventDriver ed = features.get(i).getUnderlyingEventDriver();
-			Document currDoc = doc instanceof StringDocument ?
-					new StringDocument((StringDocument) doc) :
-					new Document(doc.getFilePath(),doc.getAuthor(),doc.getTitle());
-			
-			if (loadDocContents)
-				currDoc.readStringText(String.copyValueOf(doc.getProcessedText()));
-					
-			// apply canonicizers
-			try {
-				for (Canonicizer c: features.get(i).getCanonicizers())
-					currDoc.addCanonicizer(c);
-			} catch (NullPointerException e) {
-				// no canonicizers
-				LOG.error("No canoncizers!",e);
-			}
+			String chainKey = features.get(i).canonicizerChainKey();
+			Document currDoc = canonicizedDocs.get(chainKey);
 			
-			if (!loadDocContents) {
+			if (currDoc == null) {
+				currDoc = doc instanceof StringDocument ?
+						new StringDocument((StringDocument) doc) :
+						new Document(doc.getFilePath(),doc.getAuthor(),doc.getTitle());
+				if (rawText != null)
+					currDoc.readStringText(rawText);
+				
+				// apply canonicizers
 				try {
-					currDoc.load();
-				} catch (Exception e) {
-					LOG.error("Failed to load document!",e);
-					if (usingCache)
-						writer.close();
+					for (Canonicizer c: features.get(i).getCanonicizers())
+						currDoc.addCanonicizer(c);
+				} catch (NullPointerException e) {
+					// no canonicizers
+					LOG.error("No canoncizers!",e);
+				}
+				
+				try {
+					currDoc.processCanonicizers();
+				} catch (LanguageParsingException | CanonicizationException e1) {
+					LOG.error("Failed to canonicize document",e1);
 					throw new Exception();
 				}
-			}
-			
-			try {
-				currDoc.processCanonicizers();
-			} catch (LanguageParsingException | CanonicizationException e1) {
-				LOG.error("Failed to canonicize document",e1);
-				if (usingCache)
-					writer.close();
-				throw new Exception();
+				canonicizedDocs.put(chainKey, currDoc);
 			}
 			
 			// extract event set
-			String prefix = features.get(i).displayName().replace(" ", "-");
+			String prefix = features.get(i).eventPrefix();
 			EventSet tmpEs = null;
 			try {
 				tmpEs = ed.createEventSet(currDoc);
 			} catch (EventGenerationException e1) {
 				LOG.error("Failed to create event set!",e1);
-				if (usingCache)
-					writer.close();
 				throw new Exception();
 			}
 			tmpEs.setEventSetID(features.get(i).getName());
@@ -217,32 +250,18 @@ public class CumulativeFeatureDriver implements Serializable {
 			es.setAuthor(doc.getAuthor());
 			es.setDocumentName(doc.getTitle());
 			es.setEventSetID(tmpEs.getEventSetID());
-			if (usingCache) {
-				writer.write(es.getEventSetID() + "\n");
-			}
-			
-			// TODO: I tried to use a hash map to compress the output cache file. 
-			//		This hash map did not work. It caused inconsistencies between cached features
-			//		and extracted features. Not sure why, but I wrote tests for it in CacheTests.
-			//		Any further optimizations / compressions must pass those tests.
 			
 			for (Event e: tmpEs){
 				String event = e.getEvent();
 
 				es.addEvent(new Event(prefix+"{"+event+"}"));
-				if (usingCache) {
-					writer.write(prefix+"{"+event+"}\n");
-				}
-			}
-			
-			if (usingCache) {
-					writer.write(",\n");
 			}
 
 			esl.add(es);
 		}
-		if (usingCache)
-			writer.close();
+		
+		// the tag streams shared by the POS drivers are only needed for this document
+		POSAnnotations.clear();
 		return esl;
 	}
 	
@@ -589,15 +608,19 @@ public class CumulativeFeatureDriver implements Serializable {
 		 * ======
 		 */
 		private CumulativeFeatureDriver cfd;
-		private String filename;
+		private InputSource source;
 		
 		/* ============
 		 * constructors
 		 * ============
 		 */
 		public XMLParser(String filename) throws Exception {
+			this(new InputSource(filename));
+		}
+		
+		public XMLParser(InputSource source) throws Exception {
 			cfd = new CumulativeFeatureDriver();
-			this.filename = filename;
+			this.source = source;
 			parse();
 		}
 		
@@ -616,7 +639,7 @@ public class CumulativeFeatureDriver implements Serializable {
 			//intialize the parser, parse the document, and build the tree
 			DocumentBuilderFactory builder = DocumentBuilderFactory.newInstance();
 			DocumentBuilder dom = builder.newDocumentBuilder();
-			org.w3c.dom.Document xmlDoc = dom.parse(filename);	
+			org.w3c.dom.Document xmlDoc = dom.parse(source);	
 			xmlDoc.getDocumentElement().normalize();
 			
 			//create the feature set and intialize the cfd's name
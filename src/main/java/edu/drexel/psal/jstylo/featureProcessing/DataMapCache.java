@@ -0,0 +1,225 @@
+package edu.drexel.psal.jstylo.featureProcessing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jgaap.generics.Document;
+
+import edu.drexel.psal.jstylo.generics.DataMap;
+import edu.drexel.psal.jstylo.generics.DataMapFile;
+
+/**
+ * Cache of the finished training and testing DataMaps of a problem set, so an experiment that only changes the
+ * classifier or the number of folds skips the feature extraction, culling and DataMap construction altogether.<br>
+ *
+ * Entries are keyed on a SHA-1 fingerprint (see {@link #keyFor}) of everything the DataMaps depend on: every training
+ * and test document with its author, title and identity (see {@link FeatureCache#keyFor}), the whole cumulative
+ * feature driver including its cullers and normalization, and the caller's other settings such as chunking and
+ * InfoGain. Any change to one of them is a cache miss, so entries are never invalidated, only evicted: the cache keeps
+ * the {@value #MAX_ENTRIES} most recently used entries.<br>
+ *
+ * Every entry is kept as &lt;key&gt;.training and, if there is testing data, &lt;key&gt;.testing in the datamaps
+ * directory of the cumulative feature driver's cache directory, in the {@link DataMapFile} format. The training file
+ * is written last, so an entry is complete once its training file exists.
+ */
+public class DataMapCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DataMapCache.class);
+
+    /**
+     * Bump whenever the way the DataMaps are built changes, which orphans the existing entries
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The number of entries kept
+     */
+    public static final int MAX_ENTRIES = 16;
+
+    private static final String TRAINING = ".training";
+    private static final String TESTING = ".testing";
+
+    /**
+     * The cached DataMaps of a problem set
+     */
+    public static final class Entry {
+
+        private final DataMap training;
+        private final DataMap testing;
+
+        /**
+         * @param training the training DataMap
+         * @param testing the testing DataMap, or null if there is none
+         */
+        public Entry(DataMap training, DataMap testing) {
+            this.training = training;
+            this.testing = testing;
+        }
+
+        public DataMap getTraining() {
+            return training;
+        }
+
+        /**
+         * @return the testing DataMap, or null if none was cached
+         */
+        public DataMap getTesting() {
+            return testing;
+        }
+    }
+
+    private final File cacheDir;
+
+    /**
+     * @param cacheDir the directory holding the entries
+     */
+    public DataMapCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @param cfd the cumulative feature driver
+     * @return the DataMap cache in the cache directory of the given driver, see {@link FeatureCache#cacheDirFor}
+     */
+    public static DataMapCache forDriver(CumulativeFeatureDriver cfd) {
+        return new DataMapCache(new File(FeatureCache.cacheDirFor(cfd), "datamaps"));
+    }
+
+    /**
+     * Computes the key of the DataMaps of a problem set. Must be computed before the problem set is chunked.
+     * @param ps the problem set
+     * @param cfd the cumulative feature driver
+     * @param byContent whether to identify documents by their content rather than by their location and last
+     *      modified time
+     * @param settings every other setting the DataMaps depend on, such as chunking and InfoGain, in any stable form
+     * @return the key
+     * @throws IOException if one of the documents cannot be read
+     */
+    public static String keyFor(ProblemSet ps, CumulativeFeatureDriver cfd, boolean byContent, String settings)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(VERSION);
+        out.writeInt(DataMapFile.VERSION);
+        writeString(out, cfd.toXMLString());
+        writeString(out, settings);
+        writeDocuments(out, ps.getTrainDocsSnapshot(), byContent);
+        writeDocuments(out, ps.getTestDocsSnapshot(), byContent);
+        out.flush();
+
+        MessageDigest digest = null;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest(bytes.toByteArray()))
+            hex.append(String.format("%02x", b));
+        return hex.toString();
+    }
+
+    /**
+     * Loads the DataMaps cached under the given key.
+     * @param key the key, see {@link #keyFor}
+     * @return the cached DataMaps, or null if there are none or they cannot be read
+     */
+    public Entry read(String key) {
+        File trainingFile = new File(cacheDir, key + TRAINING);
+        File testingFile = new File(cacheDir, key + TESTING);
+        if (!trainingFile.isFile())
+            return null;
+
+        try {
+            DataMap training = DataMapFile.read(trainingFile);
+            DataMap testing = testingFile.isFile() ? DataMapFile.read(testingFile) : null;
+            // mark the entry as recently used
+            trainingFile.setLastModified(System.currentTimeMillis());
+            return new Entry(training, testing);
+        } catch (IOException e) {
+            LOG.warn("Unable to read DataMap cache entry " + key + ", removing it", e);
+            trainingFile.delete();
+            testingFile.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Caches the DataMaps under the given key, replacing the previous entry and evicting the least recently used
+     * entries if there are too many.
+     * @param key the key, see {@link #keyFor}
+     * @param training the training DataMap
+     * @param testing the testing DataMap, or null if there is none
+     * @throws IOException if the entry could not be written
+     */
+    public void write(String key, DataMap training, DataMap testing) throws IOException {
+        File trainingFile = new File(cacheDir, key + TRAINING);
+        File testingFile = new File(cacheDir, key + TESTING);
+        trainingFile.delete();
+        if (testing != null)
+            DataMapFile.write(testing, testingFile);
+        else
+            testingFile.delete();
+        DataMapFile.write(training, trainingFile);
+        evict();
+    }
+
+    /**
+     * Removes the least recently used entries beyond {@link #MAX_ENTRIES}.
+     */
+    private void evict() {
+        File[] entries = cacheDir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(TRAINING);
+            }
+        });
+        if (entries == null || entries.length <= MAX_ENTRIES)
+            return;
+        Arrays.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(b.lastModified(), a.lastModified());
+            }
+        });
+        for (int i = MAX_ENTRIES; i < entries.length; i++) {
+            String name = entries[i].getName();
+            entries[i].delete();
+            new File(cacheDir, name.substring(0, name.length() - TRAINING.length()) + TESTING).delete();
+        }
+    }
+
+    /**
+     * Writes the author, title and identity of every document, in order.
+     */
+    private static void writeDocuments(DataOutputStream out, List<Document> documents, boolean byContent)
+            throws IOException {
+        out.writeInt(documents.size());
+        for (Document document : documents) {
+            writeString(out, document.getAuthor());
+            writeString(out, document.getTitle());
+            // in-memory documents have no location to identify them by
+            FeatureCache.Key key = FeatureCache.keyFor(document, byContent || document instanceof StringDocument);
+            writeString(out, key.source);
+            out.writeLong(key.stamp);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = String.valueOf(s).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,119 @@
+package edu.drexel.psal.jstylo.featureProcessing;
+
+import java.text.BreakIterator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.jgaap.generics.Event;
+import com.jgaap.generics.EventSet;
+
+/**
+ * The "&lt;DOCUMENT METADATA&gt;" event set appended to the end of every document's list of event sets.<br>
+ *
+ * Its events are the document's author (index 0) and title (index 1). The normalization baselines (sentence, word,
+ * character and letter counts) are kept as typed ints rather than events, and are computed together from the
+ * document's text by {@link #fromText(String, String, char[])}.
+ */
+public class DocumentMetadata extends EventSet {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The event set ID of the metadata event set
+     */
+    public static final String ID = "<DOCUMENT METADATA>";
+
+    private final int sentences;
+    private final int words;
+    private final int chars;
+    private final int letters;
+
+    /**
+     * Creates the metadata with already known normalization baselines.
+     */
+    public DocumentMetadata(String author, String title, int sentences, int words, int chars, int letters){
+        setEventSetID(ID);
+        setAuthor(author);
+        setDocumentName(title);
+        addEvent(new Event(author));
+        addEvent(new Event(title));
+        this.sentences = sentences;
+        this.words = words;
+        this.chars = chars;
+        this.letters = letters;
+    }
+
+    /**
+     * Computes the normalization baselines of the given text.<br>
+     * Characters, letters ([A-Za-z]) and words are counted in a single pass over the text, with words counted
+     * exactly like the naive word driver's split on "\\s+". Sentences are counted by walking the same sentence
+     * BreakIterator the sentence driver uses, without building any sentence events.
+     * @param author the author of the document
+     * @param title the title of the document
+     * @param text the loaded, uncanonicized text of the document
+     * @return the document's metadata
+     */
+    public static DocumentMetadata fromText(String author, String title, char[] text){
+        int words = 0;
+        int letters = 0;
+        boolean inWord = false;
+        for (char c : text){
+            if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z'))
+                letters++;
+            boolean whitespace = isWhitespace(c);
+            if (!whitespace && !inWord)
+                words++;
+            inWord = !whitespace;
+        }
+        // String.split keeps a leading empty token, and returns the whole (empty) string when there is no match
+        if (text.length == 0)
+            words = 1;
+        else if (words > 0 && isWhitespace(text[0]))
+            words++;
+
+        BreakIterator boundary = BreakIterator.getSentenceInstance(Locale.US);
+        boundary.setText(new String(text));
+        int sentences = 0;
+        boundary.first();
+        while (boundary.next() != BreakIterator.DONE)
+            sentences++;
+
+        return new DocumentMetadata(author, title, sentences, words, text.length, letters);
+    }
+
+    /**
+     * @return true iff c matches the regex class \\s
+     */
+    private static boolean isWhitespace(char c){
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    public int getSentences(){
+        return sentences;
+    }
+
+    public int getWords(){
+        return words;
+    }
+
+    public int getChars(){
+        return chars;
+    }
+
+    public int getLetters(){
+        return letters;
+    }
+
+    /**
+     * @return the normalization baselines, keyed on the titles of the NormBaselineEnum values
+     */
+    public Map<String,Integer> getNormalizations(){
+        Map<String,Integer> norms = new HashMap<String,Integer>();
+        norms.put(NormBaselineEnum.SENTENCES_IN_DOC.getTitle(), sentences);
+        norms.put(NormBaselineEnum.WORDS_IN_DOC.getTitle(), words);
+        norms.put(NormBaselineEnum.CHARS_IN_DOC.getTitle(), chars);
+        norms.put(NormBaselineEnum.LETTERS_IN_DOC.getTitle(), letters);
+        return norms;
+    }
+}
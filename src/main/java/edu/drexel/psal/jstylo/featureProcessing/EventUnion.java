@@ -0,0 +1,159 @@
+package edu.drexel.psal.jstylo.featureProcessing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.jgaap.generics.Event;
+import com.jgaap.generics.EventSet;
+
+/**
+ * The union of the events of a single feature set over a number of documents, in order of first occurrence.<br>
+ *
+ * Membership is checked by hashing the event strings, so adding a document is linear in its number of events.
+ * Unions built over consecutive ranges of documents can be merged, in document order, into the union of the whole
+ * range, which lets the relevant events be collected in parallel.<br>
+ *
+ * For histogram features the union holds the first Event seen for every distinct event string. For single numeric
+ * value features it only holds the "{-}" placeholders taken from the first document.
+ */
+public class EventUnion {
+
+    private final String eventSetID;
+    private final boolean calcHist;
+    private final Map<String,Event> events = new LinkedHashMap<String,Event>();
+
+    /**
+     * Whether no document was added yet
+     */
+    private boolean empty = true;
+
+    /**
+     * The number of placeholder events of a single numeric value feature
+     */
+    private int placeholders;
+
+    /**
+     * @param eventSetID the ID of the feature set
+     * @param calcHist whether the feature set is a histogram, see {@link FeatureDriver#isCalcHist()}
+     */
+    public EventUnion(String eventSetID, boolean calcHist) {
+        this.eventSetID = eventSetID;
+        this.calcHist = calcHist;
+    }
+
+    /**
+     * Adds the events of a document's event set to the union.
+     * @param es the document's event set of this feature
+     */
+    public void add(EventSet es) {
+        if (calcHist) {
+            for (Event e : es) {
+                if (!events.containsKey(e.getEvent()))
+                    events.put(e.getEvent(), e);
+            }
+        } else if (empty) {
+            // a placeholder for every event that is not already one
+            for (Event e : es) {
+                if (placeholders == 0 || !e.getEvent().equals("{-}"))
+                    placeholders++;
+            }
+        }
+        empty = false;
+    }
+
+    /**
+     * Merges the union of documents that come after the documents of this union.
+     * @param later the union of the following documents
+     */
+    public void merge(EventUnion later) {
+        if (calcHist) {
+            for (Map.Entry<String,Event> entry : later.events.entrySet()) {
+                if (!events.containsKey(entry.getKey()))
+                    events.put(entry.getKey(), entry.getValue());
+            }
+        } else if (empty) {
+            placeholders = later.placeholders;
+        }
+        empty &= later.empty;
+    }
+
+    /**
+     * @return the ID of the feature set
+     */
+    public String getEventSetID() {
+        return eventSetID;
+    }
+
+    /**
+     * Removes the events of a histogram feature that are not among the given ones, keeping the order of the rest.
+     * Has no effect on single numeric value features.
+     * @param kept the event strings to keep
+     */
+    public void retainEvents(Set<String> kept) {
+        if (calcHist)
+            events.keySet().retainAll(kept);
+    }
+
+    /**
+     * @return the union as an event set, with the ID of the feature set
+     */
+    public EventSet toEventSet() {
+        EventSet es = new EventSet(calcHist ? events.size() : placeholders);
+        es.setEventSetID(eventSetID);
+        if (calcHist) {
+            for (Event e : events.values())
+                es.addEvent(e);
+        } else {
+            for (int i = 0; i < placeholders; i++)
+                es.addEvent(new Event("{-}"));
+        }
+        return es;
+    }
+
+    /**
+     * Builds the unions of every feature set over a range of documents.
+     * @param eventSets the event sets of the documents, without their metadata
+     * @param from the index of the first document, inclusive
+     * @param to the index of the last document, exclusive
+     * @param cfd the driver the event sets were extracted with
+     * @return the union of every feature set, in the order of the feature drivers
+     */
+    public static List<EventUnion> unionOf(List<List<EventSet>> eventSets, int from, int to, CumulativeFeatureDriver cfd) {
+        List<EventUnion> unions = new ArrayList<EventUnion>(cfd.numOfFeatureDrivers());
+        for (int doc = from; doc < to; doc++)
+            addTo(unions, eventSets.get(doc), cfd);
+        return unions;
+    }
+
+    /**
+     * Adds the event sets of a single document to the unions of every feature set, creating the unions of the
+     * feature sets that were not seen yet.
+     * @param unions the unions of the documents before this one
+     * @param eventSets the event sets of the document, without its metadata
+     * @param cfd the driver the event sets were extracted with
+     */
+    public static void addTo(List<EventUnion> unions, List<EventSet> eventSets, CumulativeFeatureDriver cfd) {
+        for (int featureIndex = 0; featureIndex < eventSets.size(); featureIndex++) {
+            if (featureIndex == unions.size())
+                unions.add(new EventUnion(eventSets.get(featureIndex).getEventSetID(), cfd.featureDriverAt(featureIndex).isCalcHist()));
+            unions.get(featureIndex).add(eventSets.get(featureIndex));
+        }
+    }
+
+    /**
+     * Merges the unions of a following range of documents into the unions of a range, feature set by feature set.
+     * @param unions the unions of a range of documents, which are merged into
+     * @param later the unions of the documents right after that range
+     */
+    public static void mergeInto(List<EventUnion> unions, List<EventUnion> later) {
+        for (int featureIndex = 0; featureIndex < later.size(); featureIndex++) {
+            if (featureIndex == unions.size())
+                unions.add(later.get(featureIndex));
+            else
+                unions.get(featureIndex).merge(later.get(featureIndex));
+        }
+    }
+}
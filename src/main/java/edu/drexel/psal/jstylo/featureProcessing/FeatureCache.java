@@ -0,0 +1,434 @@
+package edu.drexel.psal.jstylo.featureProcessing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.jgaap.generics.Document;
+import com.jgaap.generics.Event;
+import com.jgaap.generics.EventSet;
+
+import edu.drexel.psal.JSANConstants;
+
+/**
+ * Cache of the extracted (unculled) event sets of documents, one cache per cumulative feature driver.<br>
+ *
+ * Every document is cached as a single binary record (see {@link Record}):
+ * <ul>
+ * <li>a header: magic number, format version, and the identity of the source document (see {@link Key})</li>
+ * <li>the document's normalization baselines</li>
+ * <li>a table of every distinct event string in the document, without the feature prefixes</li>
+ * <li>for every feature set, the hash of the feature driver that extracted it (see {@link FeatureDriver#cacheHash()})
+ * and a histogram of (string table index, count) pairs, in order of first occurrence</li>
+ * </ul>
+ * A record whose header does not match the document or the current format is treated as a cache miss. Feature sets
+ * are validated one feature driver at a time, so adding or changing a feature driver only requires extracting that
+ * driver's feature set; the others are still loaded from the record. When a record is written, the feature sets of
+ * drivers that are no longer in use are dropped, so records do not grow as the feature drivers are changed.<br>
+ *
+ * Records are keyed either on the document's location (author directory and title, validated against the canonical
+ * path and last modified time of the file) or on the content of the document (a SHA-1 of its raw bytes, validated
+ * against that digest and the length), see {@link #keyFor}. Content keys let identical documents share cached features
+ * regardless of their path, author or machine.<br>
+ *
+ * Where the records are kept is up to the implementation: {@link FileFeatureCache} keeps one file per document,
+ * {@link MappedFeatureCache} appends all of them to a single memory-mapped segment file.
+ */
+public abstract class FeatureCache {
+
+    private static final int MAGIC = 0x4A534643; // "JSFC"
+
+    /**
+     * Bump whenever the layout of the cache records changes
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Identifies the cache record of a document: where the record is stored, and the source identity and stamp it is
+     * validated against.
+     */
+    public static final class Key {
+
+        final String storageKey;
+        final String source;
+        final long stamp;
+
+        Key(String storageKey, String source, long stamp) {
+            this.storageKey = storageKey;
+            this.source = source;
+            this.stamp = stamp;
+        }
+
+        @Override
+        public String toString() {
+            return storageKey;
+        }
+    }
+
+    /**
+     * The cached features of a single document: its normalization baselines and its feature sets by the hash of the
+     * feature driver that extracted them. Event strings are kept once per document, without the prefix of their
+     * feature, so a renamed feature driver still matches its cached feature set.<br>
+     * Not thread safe; every extraction works on its own record.
+     */
+    public static final class Record {
+
+        private final int sentences;
+        private final int words;
+        private final int chars;
+        private final int letters;
+
+        private final List<String> strings;
+        private Map<String,Integer> stringIndices;
+
+        /**
+         * driver hash -> {string table indices, counts}
+         */
+        private final Map<Long,int[][]> sets = new LinkedHashMap<Long,int[][]>();
+
+        /**
+         * Creates an empty record for a document.
+         * @param metadata the document's metadata
+         */
+        public Record(DocumentMetadata metadata) {
+            this(metadata.getSentences(), metadata.getWords(), metadata.getChars(), metadata.getLetters(), new ArrayList<String>());
+        }
+
+        private Record(int sentences, int words, int chars, int letters, List<String> strings) {
+            this.sentences = sentences;
+            this.words = words;
+            this.chars = chars;
+            this.letters = letters;
+            this.strings = strings;
+        }
+
+        /**
+         * @param driverHash the hash of a feature driver, see {@link FeatureDriver#cacheHash()}
+         * @return whether the record holds the feature set of the given driver
+         */
+        public boolean contains(long driverHash) {
+            return sets.containsKey(driverHash);
+        }
+
+        /**
+         * @param document the document the record belongs to
+         * @return the document's metadata
+         */
+        public DocumentMetadata getMetadata(Document document) {
+            return new DocumentMetadata(document.getAuthor(), document.getTitle(), sentences, words, chars, letters);
+        }
+
+        /**
+         * Rebuilds the event set extracted by the given feature driver. Every occurrence of an event shares the same
+         * Event, and the events are in order of their first occurrence in the document.
+         * @param driverHash the hash of the feature driver
+         * @param fd the feature driver, which names the event set and prefixes its events
+         * @param document the document the record belongs to
+         * @return the event set, or null if the record does not hold it
+         */
+        public EventSet getEventSet(long driverHash, FeatureDriver fd, Document document) {
+            int[][] histogram = sets.get(driverHash);
+            if (histogram == null)
+                return null;
+
+            int total = 0;
+            for (int count : histogram[1])
+                total += count;
+            String prefix = fd.eventPrefix();
+            EventSet es = new EventSet(total);
+            es.setAuthor(document.getAuthor());
+            es.setDocumentName(document.getTitle());
+            es.setEventSetID(fd.getName());
+            for (int i = 0; i < histogram[0].length; i++) {
+                Event e = new Event(prefix + "{" + strings.get(histogram[0][i]) + "}");
+                for (int c = 0; c < histogram[1][i]; c++)
+                    es.addEvent(e);
+            }
+            return es;
+        }
+
+        /**
+         * Adds the event set extracted by the given feature driver, replacing any it already holds.
+         * @param driverHash the hash of the feature driver
+         * @param fd the feature driver, whose prefix is stripped off of the events
+         * @param es the event set, as created by {@link CumulativeFeatureDriver#createEventSets}
+         */
+        public void putEventSet(long driverHash, FeatureDriver fd, EventSet es) {
+            if (stringIndices == null) {
+                stringIndices = new HashMap<String,Integer>(strings.size() * 2);
+                for (int i = 0; i < strings.size(); i++)
+                    stringIndices.put(strings.get(i), i);
+            }
+
+            // count the set's events, keeping first occurrence order
+            int prefixLength = fd.eventPrefix().length() + 1;
+            Map<Integer,int[]> histogram = new LinkedHashMap<Integer,int[]>();
+            for (Event e : es) {
+                String event = e.getEvent();
+                event = event.substring(prefixLength, event.length() - 1);
+                Integer index = stringIndices.get(event);
+                if (index == null) {
+                    index = strings.size();
+                    stringIndices.put(event, index);
+                    strings.add(event);
+                }
+                int[] count = histogram.get(index);
+                if (count == null)
+                    histogram.put(index, new int[]{1});
+                else
+                    count[0]++;
+            }
+
+            int[][] packed = new int[2][histogram.size()];
+            int i = 0;
+            for (Map.Entry<Integer,int[]> entry : histogram.entrySet()) {
+                packed[0][i] = entry.getKey();
+                packed[1][i] = entry.getValue()[0];
+                i++;
+            }
+            sets.put(driverHash, packed);
+        }
+
+        /**
+         * Drops the feature sets of every feature driver but the given ones, and the strings only those sets used.
+         * @param driverHashes the hashes of the feature drivers whose feature sets to keep
+         */
+        public void retainEventSets(long[] driverHashes) {
+            Set<Long> retained = new HashSet<Long>(driverHashes.length * 2);
+            for (long hash : driverHashes)
+                retained.add(hash);
+            if (retained.containsAll(sets.keySet()))
+                return;
+            sets.keySet().retainAll(retained);
+
+            // renumber the strings of the remaining sets
+            List<String> used = new ArrayList<String>();
+            int[] newIndices = new int[strings.size()];
+            Arrays.fill(newIndices, -1);
+            for (int[][] histogram : sets.values()) {
+                for (int i = 0; i < histogram[0].length; i++) {
+                    int index = histogram[0][i];
+                    if (newIndices[index] == -1) {
+                        newIndices[index] = used.size();
+                        used.add(strings.get(index));
+                    }
+                    histogram[0][i] = newIndices[index];
+                }
+            }
+            strings.clear();
+            strings.addAll(used);
+            stringIndices = null;
+        }
+    }
+
+    /**
+     * Reads the cached features of the given document.
+     * @param document the document whose features are cached
+     * @param key the document's key, see {@link #keyFor}
+     * @return the document's record, or null if there is no valid cache for it
+     */
+    public abstract Record read(Document document, Key key);
+
+    /**
+     * Caches the features of the given document, replacing its previous record. A reader never sees a partially
+     * written record.
+     * @param key the document's key, computed before the events were extracted, see {@link #keyFor}
+     * @param record the document's record
+     * @throws IOException if the cache could not be written
+     */
+    public abstract void write(Key key, Record record) throws IOException;
+
+    /**
+     * Computes the cache key of a document.
+     * @param document the document
+     * @param byContent whether to key on the content of the document rather than on its location
+     * @return the document's key
+     * @throws IOException if the document cannot be read
+     */
+    public static Key keyFor(Document document, boolean byContent) throws IOException {
+        if (!byContent) {
+            File docOriginal = new File(document.getFilePath());
+            return new Key(documentKey(document), docOriginal.getCanonicalPath(), docOriginal.lastModified());
+        }
+
+        MessageDigest digest = null;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        long length = 0;
+        if (document instanceof StringDocument) {
+            byte[] bytes = new String(document.getProcessedText()).getBytes(StandardCharsets.UTF_8);
+            digest.update(bytes);
+            length = bytes.length;
+        } else {
+            try (InputStream in = new FileInputStream(document.getFilePath())) {
+                byte[] buffer = new byte[65536];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                    length += read;
+                }
+            }
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+            hex.append(String.format("%02x", b));
+        String sha = hex.toString();
+        // fan out into subdirectories so no single directory holds the whole corpus
+        return new Key("content/" + sha.substring(0, 2) + "/" + sha + ".cache", "sha1:" + sha, length);
+    }
+
+    /**
+     * @param cfd the cumulative feature driver
+     * @param mapped whether to use the single-file memory-mapped store rather than one file per document
+     * @return the cache of the given driver
+     */
+    public static FeatureCache forDriver(CumulativeFeatureDriver cfd, boolean mapped) {
+        if (mapped)
+            return MappedFeatureCache.open(cacheDirFor(cfd));
+        return new FileFeatureCache(cacheDirFor(cfd));
+    }
+
+    /**
+     * @param cfd the cumulative feature driver
+     * @return the cache hash of each of the driver's feature drivers, see {@link FeatureDriver#cacheHash()}
+     */
+    public static long[] driverHashes(CumulativeFeatureDriver cfd) {
+        long[] hashes = new long[cfd.numOfFeatureDrivers()];
+        for (int i = 0; i < hashes.length; i++)
+            hashes[i] = cfd.featureDriverAt(i).cacheHash();
+        return hashes;
+    }
+
+    /**
+     * @param cfd the cumulative feature driver
+     * @return the directory holding the cache of the given driver
+     */
+    public static File cacheDirFor(CumulativeFeatureDriver cfd) {
+        return new File(JSANConstants.JSAN_CACHE + "_" + cfd.getName());
+    }
+
+    /**
+     * @param document a document
+     * @return the location-based storage key of the document, relative to the cache directory
+     */
+    private static String documentKey(Document document) {
+        String authorDir = null;
+        if (document.getAuthor().equals(JSANConstants.DUMMY_NAME)) {
+            authorDir = "you";
+        } else {
+            authorDir = "_" + document.getAuthor();
+        }
+        return authorDir + "/" + document.getTitle() + ".cache";
+    }
+
+    /**
+     * Serializes a document's record.
+     */
+    protected static byte[] encode(Key key, Record record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeString(out, key.source);
+        out.writeLong(key.stamp);
+
+        out.writeInt(record.sentences);
+        out.writeInt(record.words);
+        out.writeInt(record.chars);
+        out.writeInt(record.letters);
+
+        out.writeInt(record.strings.size());
+        for (String str : record.strings)
+            writeString(out, str);
+
+        out.writeInt(record.sets.size());
+        for (Map.Entry<Long,int[][]> set : record.sets.entrySet()) {
+            int[][] histogram = set.getValue();
+            out.writeLong(set.getKey());
+            out.writeInt(histogram[0].length);
+            for (int i = 0; i < histogram[0].length; i++) {
+                out.writeInt(histogram[0][i]);
+                out.writeInt(histogram[1][i]);
+            }
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a cache record, starting at the buffer's position.
+     * @return the document's record, or null if the record is stale or of another format
+     * @throws java.nio.BufferUnderflowException if the record is truncated
+     */
+    protected static Record decode(ByteBuffer in, Key key) {
+        if (in.getInt() != MAGIC || in.getInt() != VERSION)
+            return null;
+
+        // the source is the canonical path or content digest of the document that was cached,
+        // and the stamp its last modified time or length
+        String cachedSource = readString(in);
+        long cachedStamp = in.getLong();
+
+        if (!key.source.equals(cachedSource) || key.stamp != cachedStamp)
+            return null;
+
+        int sentences = in.getInt();
+        int words = in.getInt();
+        int chars = in.getInt();
+        int letters = in.getInt();
+
+        int numStrings = in.getInt();
+        List<String> strings = new ArrayList<String>(numStrings);
+        for (int i = 0; i < numStrings; i++)
+            strings.add(readString(in));
+        Record record = new Record(sentences, words, chars, letters, strings);
+
+        int numSets = in.getInt();
+        for (int s = 0; s < numSets; s++) {
+            long driverHash = in.getLong();
+            int[][] histogram = new int[2][in.getInt()];
+            for (int i = 0; i < histogram[0].length; i++) {
+                histogram[0][i] = in.getInt();
+                histogram[1][i] = in.getInt();
+            }
+            record.sets.put(driverHash, histogram);
+        }
+        return record;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (in.hasArray()) {
+            String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return s;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
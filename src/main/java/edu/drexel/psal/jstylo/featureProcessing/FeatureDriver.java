@@ -153,7 +153,49 @@ public class FeatureDriver implements Serializable{
 		this(name,calcHist,underlyEventDriver,canonicizers,cullers);
 		this.norm = normalization;
 	}
-		
+
+	/**
+	 * Copy constructor. Creates new instances of the event driver, canonicizers and event cullers of the
+	 * given feature driver, with the same parameters, so the copy can be used by another thread.<br>
+	 * Only reads the given feature driver, so any number of threads can copy it at once.
+	 * @param other
+	 * 		The feature driver to copy.
+	 * @throws Exception
+	 * 		If any of the components cannot be instantiated.
+	 */
+	public FeatureDriver(FeatureDriver other) throws Exception {
+		this();
+		name = other.name;
+		description = other.description;
+		calcHist = other.calcHist;
+		underlyingEventDriver = newInstanceOf(other.underlyingEventDriver);
+		if (other.canonicizers != null)
+			for (Canonicizer c : other.canonicizers)
+				canonicizers.add(newInstanceOf(c));
+		if (other.cullers != null)
+			for (EventCuller ec : other.cullers)
+				cullers.add(newInstanceOf(ec));
+		if (other.norm != null)
+			norm = new Pair<NormBaselineEnum,Double>(other.norm.getFirst(), other.norm.getSecond());
+	}
+
+	/**
+	 * Creates a new instance of the class of the given component, with the same values of the parameters
+	 * listed by {@link #getClassParams(String)}.
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends Parameterizable> T newInstanceOf(T original) throws Exception {
+		if (original == null)
+			return null;
+		T copy = (T) original.getClass().getDeclaredConstructor().newInstance();
+		for (Pair<String,ParamTag> param : getClassParams(original.getClass().getName())) {
+			String value = original.getParameter(param.getFirst());
+			if (value != null && !value.isEmpty())
+				copy.setParameter(param.getFirst(), value);
+		}
+		return copy;
+	}
+
 	
 	/* ==================
 	 * adders and setters
@@ -385,7 +427,55 @@ public class FeatureDriver implements Serializable{
 	public Pair<NormBaselineEnum, Double> getNormalization() {
 		return norm;
 	}
-	
+
+	/**
+	 * Returns a key identifying the canonicizer chain of the feature driver: the class name and parameter
+	 * values of each of its canonicizers, in order. Feature drivers with equal keys canonicize documents identically.
+	 * @return
+	 * 		The key of the canonicizer chain.
+	 */
+	public String canonicizerChainKey() {
+		StringBuilder key = new StringBuilder();
+		if (canonicizers != null) {
+			for (Canonicizer c : canonicizers) {
+				key.append(c.getClass().getName()).append('(');
+				for (Pair<String,ParamTag> param : getClassParams(c.getClass().getName()))
+					key.append(param.getFirst()).append('=').append(c.getParameter(param.getFirst())).append(';');
+				key.append(");");
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Returns a hash of everything in the feature driver that affects the events it extracts: the class and
+	 * parameters of the underlying event driver and the canonicizer chain. The name, cullers and normalization
+	 * are not included, as they are applied after the events are extracted.
+	 * @return
+	 * 		The 64-bit FNV-1a hash of the feature driver's extraction configuration.
+	 */
+	public long cacheHash() {
+		StringBuilder key = new StringBuilder();
+		key.append(underlyingEventDriver.getClass().getName()).append('(');
+		for (Pair<String,ParamTag> param : getClassParams(underlyingEventDriver.getClass().getName()))
+			key.append(param.getFirst()).append('=').append(underlyingEventDriver.getParameter(param.getFirst())).append(';');
+		key.append(")|").append(canonicizerChainKey());
+
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < key.length(); i++) {
+			hash ^= key.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	/**
+	 * Returns the prefix of the features extracted by the feature driver, which are of the form prefix{event}.
+	 */
+	String eventPrefix() {
+		return displayName().replace(" ", "-");
+	}
+
 	/**
 	 * Returns the list of parameters of a given JGAAP EventDriver class.
 	 * This method should correspond to GUI.FeatureWizardDriver.getConfigPanel() 
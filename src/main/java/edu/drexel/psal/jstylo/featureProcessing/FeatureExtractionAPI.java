@@ -1,29 +1,19 @@
 package edu.drexel.psal.jstylo.featureProcessing;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.jgaap.generics.Document;
 import com.jgaap.generics.Event;
-import com.jgaap.generics.EventHistogram;
 import com.jgaap.generics.EventSet;
 
 import edu.drexel.psal.JSANConstants;
-import edu.drexel.psal.jstylo.eventDrivers.CharCounterEventDriver;
-import edu.drexel.psal.jstylo.eventDrivers.LetterCounterEventDriver;
-import edu.drexel.psal.jstylo.eventDrivers.SentenceCounterEventDriver;
-import edu.drexel.psal.jstylo.eventDrivers.SingleNumericEventDriver;
-import edu.drexel.psal.jstylo.eventDrivers.WordCounterEventDriver;
 import edu.drexel.psal.jstylo.generics.DocumentData;
 import edu.drexel.psal.jstylo.generics.FeatureData;
 
@@ -49,139 +39,148 @@ public class FeatureExtractionAPI {
 	 */ 
 	public List<EventSet> extractEventSets(Document document,
 			CumulativeFeatureDriver cumulativeFeatureDriver, boolean loadDocContents, boolean isUsingCache) throws Exception {
+		long[] driverHashes = isUsingCache ? FeatureCache.driverHashes(cumulativeFeatureDriver) : null;
+		return extractEventSets(document, cumulativeFeatureDriver, loadDocContents, isUsingCache, driverHashes);
+	}
+	
+	/**
+	 * Extracts the List of EventSets from a document using the provided CumulativeFeatureDriver.<br>
+	 * Same as {@link #extractEventSets(Document, CumulativeFeatureDriver, boolean, boolean)}, but takes the cache
+	 * hashes of the driver's feature drivers (see {@link FeatureCache#driverHashes}) so they are not recomputed for
+	 * every document.<br>
+	 * When using the cache, only the feature sets missing from the document's cache record are extracted, and the
+	 * record is then updated with them.
+	 * @param document the document to have features extracted and made into event sets
+	 * @param cumulativeFeatureDriver the driver containing the features to be extracted and the functionality to do so
+	 * @param loadDocContents whether or not the document contents are already loaded into the object
+	 * @param isUsingCache whether or not to read and write the feature cache
+	 * @param driverHashes the cache hashes of the feature drivers of cumulativeFeatureDriver, in order
+	 * @return the List of EventSets for the document
+	 */
+	public List<EventSet> extractEventSets(Document document,
+			CumulativeFeatureDriver cumulativeFeatureDriver, boolean loadDocContents, boolean isUsingCache, long[] driverHashes) throws Exception {
 
-	    List<EventSet> generatedEvents = new ArrayList<EventSet>();
+	    int numFeatures = cumulativeFeatureDriver.numOfFeatureDrivers();
+	    FeatureCache cache = null;
+	    FeatureCache.Key cacheKey = null;
+	    FeatureCache.Record record = null;
 	    
         if (isUsingCache) {
-            File cacheDir = new File(JSANConstants.JSAN_CACHE + "_" + cumulativeFeatureDriver.getName() + "/");
-
-            File authorDir = null;
-            if (document.getAuthor().equals(JSANConstants.DUMMY_NAME)) {
-                authorDir = new File(cacheDir, "you");
-            } else {
-                authorDir = new File(cacheDir, "_" + document.getAuthor());
-            }
-
-            File documentFile = new File(authorDir, document.getTitle() + ".cache");
-            generatedEvents = getCachedFeatures(document, documentFile);
-            if (generatedEvents == null) {
-                // delete the cache for this document! It is invalid
-                documentFile.delete();
-                // program will continue as normal, extracting events
-            } else {
-                // return the cached features
-                return generatedEvents;
+            cache = getFeatureCache(cumulativeFeatureDriver);
+            try {
+                cacheKey = FeatureCache.keyFor(document, isCachingByContent());
+                record = cache.read(document, cacheKey);
+            } catch (IOException e) {
+                LOG.warn("Failed to compute the cache key of document " + document.getTitle(), e);
             }
+            // program will continue as normal, extracting the events that are not cached
+        }
+        
+        // find the feature sets that have to be extracted
+        int[] missing = new int[numFeatures];
+        int numMissing = 0;
+        for (int i = 0; i < numFeatures; i++) {
+            if (record == null || !record.contains(driverHashes[i]))
+                missing[numMissing++] = i;
+        }
+        
+        List<EventSet> generatedEvents = new ArrayList<EventSet>(numFeatures + 1);
+        if (numMissing == 0) {
+            // return the cached features
+            for (int i = 0; i < numFeatures; i++)
+                generatedEvents.add(record.getEventSet(driverHashes[i], cumulativeFeatureDriver.featureDriverAt(i), document));
+            generatedEvents.add(record.getMetadata(document));
+            return generatedEvents;
         }
 		
+		// load the document once; feature extraction and the metadata both work off of the loaded text
+		Document loaded = document;
+		if (!loadDocContents && !(document instanceof StringDocument)) {
+			try {
+				loaded = new Document(document.getFilePath(),document.getAuthor(),document.getTitle());
+				loaded.load();
+			} catch (Exception e) {
+				LOG.error("Failed to load document!",e);
+				throw e;
+			}
+		}
+		
 		// Extract the Events from the documents
+		List<EventSet> extracted = null;
 		try {
-			generatedEvents = cumulativeFeatureDriver.createEventSets(document, loadDocContents,isUsingCache);
+			extracted = cumulativeFeatureDriver.createEventSets(loaded, true, Arrays.copyOf(missing, numMissing));
 		} catch (Exception e) {
 			LOG.error("Failed to extract events from a document!",e);
 			throw e;
 		}
-		// create metadata event to store document information
-		EventSet documentInfo = new EventSet();
-		documentInfo.setEventSetID("<DOCUMENT METADATA>");
-
+		
 		/*
 		 * Metadata Event format:
 		 * 
 		 * EventSetID: "<DOCUMENT METADATA>" Event at Index: 
 		 * 0 : author 
 		 * 1 : title 
-		 * 2 : Sentences in document 
-		 * 3 : Words in document 
-		 * 4 : Characters in document 
-		 * 5 : Letters in document
+		 * 
+		 * The normalization baselines (sentences, words, characters and letters in the document)
+		 * are computed in one pass over the loaded text and stored as ints on the DocumentMetadata
 		 */
-
-		// Extract document title and author
-		Event authorEvent = new Event(document.getAuthor());
-		// Event titleEvent = new Event(document.getFilePath());
-		Event titleEvent = new Event(document.getTitle());
-		documentInfo.addEvent(authorEvent);
-		documentInfo.addEvent(titleEvent);
-
-		// Extract normalization baselines
-		// Sentences in doc
-		{
-			Document doc = null;
-			SingleNumericEventDriver counter = new SentenceCounterEventDriver();
-			doc = document;
-			Event tempEvent = null;
-
-            try {
-                if (!loadDocContents)
-                    doc.load();
-                tempEvent = new Event("" + (int) counter.getValue(doc));
-            } catch (Exception e) {
-                LOG.error("Failed to extract num sentences from document", e);
-                throw e;
-            }
-
-			documentInfo.addEvent(tempEvent);
-		}
-
-		// Words in doc
-		{
-			Document doc = null;
-			SingleNumericEventDriver counter = new WordCounterEventDriver();
-			doc = document;
-			Event tempEvent = null;
-			try {
-				if (!loadDocContents)
-					doc.load();
-				tempEvent = new Event("" + (int) counter.getValue(doc));
-			} catch (Exception e) {
-			    LOG.error("Failed to extract num words from document",e);
-				throw e;
-			}
-			documentInfo.addEvent(tempEvent);
-		}
-
-		// Characters in doc
-		{
-			Document doc = null;
-			SingleNumericEventDriver counter = new CharCounterEventDriver();
-			doc = document;
-			Event tempEvent = null;
-			try {
-				if (!loadDocContents)
-					doc.load();
-				tempEvent = new Event("" + (int) counter.getValue(doc));
-			} catch (Exception e) {
-			    LOG.error("Failed to extract num characters from document",e);
-				throw e;
+		DocumentMetadata documentInfo = record != null ? record.getMetadata(document) :
+				DocumentMetadata.fromText(document.getAuthor(), document.getTitle(), loaded.getProcessedText());
+		
+		// merge the cached and extracted feature sets, in the order of the feature drivers
+		if (cacheKey != null && record == null)
+			record = new FeatureCache.Record(documentInfo);
+		for (int i = 0, m = 0; i < numFeatures; i++) {
+			if (m < numMissing && missing[m] == i) {
+				EventSet es = extracted.get(m++);
+				if (cacheKey != null)
+					record.putEventSet(driverHashes[i], cumulativeFeatureDriver.featureDriverAt(i), es);
+				generatedEvents.add(es);
+			} else {
+				generatedEvents.add(record.getEventSet(driverHashes[i], cumulativeFeatureDriver.featureDriverAt(i), document));
 			}
-			documentInfo.addEvent(tempEvent);
 		}
 
-		// Letters in doc
-		{
-			Document doc = null;
-			SingleNumericEventDriver counter = new LetterCounterEventDriver();
-			doc = document;
-			Event tempEvent = null;
+		// add the metadata EventSet to the List<EventSet>
+		generatedEvents.add(documentInfo);
+		
+		if (cacheKey != null) {
+			// drop the feature sets of drivers that have since been changed or removed
+			record.retainEventSets(driverHashes);
 			try {
-				if (!loadDocContents)
-					doc.load();
-				tempEvent = new Event("" + (int) counter.getValue(doc));
-			} catch (Exception e) {
-			    LOG.error("Failed to extract num letters from document",e);
-				throw e;
+				cache.write(cacheKey, record);
+			} catch (IOException e) {
+				LOG.warn("Failed to cache features for document " + document.getTitle(), e);
 			}
-			documentInfo.addEvent(tempEvent);
 		}
 
-		// add the metadata EventSet to the List<EventSet>
-		generatedEvents.add(documentInfo);
-
 		// return the List<EventSet>
 		return generatedEvents;
 	}
 
+	/**
+	 * Returns the cache that extractEventSets reads cached features from and writes extracted features to.
+	 * @param cumulativeFeatureDriver the driver the features are extracted with
+	 * @return a per-document file cache of the driver's features
+	 */
+	protected FeatureCache getFeatureCache(CumulativeFeatureDriver cumulativeFeatureDriver) {
+		return FeatureCache.forDriver(cumulativeFeatureDriver, false);
+	}
+	
+	/**
+	 * @return whether documents are cached under a hash of their content rather than under their location
+	 */
+	protected boolean isCachingByContent() {
+		return false;
+	}
+
+	/**
+	 * @return the number of feature drivers whose event sets are culled at the same time
+	 */
+	protected int getCullingThreads() {
+		return 1;
+	}
+
 	/**
 	 * Determines which EventSets to use for the given documents based on the chosen cullers.<br>
 	 * @param eventSets A List which contains Lists of EventSets (represents a list of documents' EventSets
@@ -207,7 +206,7 @@ public class FeatureExtractionAPI {
 		
 		//cull the events
 		List<List<EventSet>> culledEventSets = CumulativeEventCuller.cull(
-				eventSets, cumulativeFeatureDriver);
+				eventSets, cumulativeFeatureDriver, getCullingThreads());
 
 		//add the metadata back in
 		int index = 0;
@@ -247,78 +246,11 @@ public class FeatureExtractionAPI {
 			docMetaData.add(les.remove(les.size()-1));
 		}
 		
-		//initialize the EventSet list
-		List<EventSet> relevantEvents = new LinkedList<EventSet>();
-
-		// iterate over the List of Lists
-		for (List<EventSet> l : culledEventSets) {
-			// iterate over each inner list's eventSets
-			int featureIndex = 0;
-			for (EventSet esToAdd : l) {
-				// whether or not to add the event set to the list (if false, it
-				// is already on the list)
-				boolean add = true;;
-
-				for (EventSet esl : relevantEvents) {
-					// this should compare the category/name of the event set
-					if (esToAdd.getEventSetID().equals(esl.getEventSetID())) {
-						add = false;
-						break;
-					}
-				}
-
-				// this event set isn't on the list at all, just add it (which
-				// also adds its internal events) to the list
-				if (add) {
-					EventSet temp = new EventSet();
-					temp.setEventSetID(esToAdd.getEventSetID());
-
-					//for all of the events
-					for (Event e : esToAdd) {
-						boolean absent = true;
-						//check to see if it's been added yet or not
-						for (Event ae : temp) {
-							if (ae.getEvent().equals(e.getEvent())) {
-								absent = false;
-								break;
-							}
-						}
-						//if it has not been added, add it
-						if (absent) {
-							if (!cumulativeFeatureDriver.featureDriverAt(
-									featureIndex).isCalcHist())
-								temp.addEvent(new Event("{-}"));
-							else
-								temp.addEvent(e);
-						}
-					}
-
-					relevantEvents.add(temp);
-				} else {
-					// go through this eventSet and add any events to the
-					// relevant EventSet if they aren't already there.
-					if (cumulativeFeatureDriver.featureDriverAt(featureIndex)
-							.isCalcHist()) {
-						for (Event e : esToAdd) {
-							boolean toAdd = true;
-							//for all events in the relecant list
-							for (Event re : relevantEvents.get(featureIndex)) {
-								//if it's already there, don't add it
-								if (e.getEvent().equals(re.getEvent())) {
-									toAdd = false;
-									break;
-								}
-							}
-							//add it if it isn't there
-							if (toAdd) {
-								relevantEvents.get(featureIndex).addEvent(e);
-							}
-						}
-					}
-				}
-				featureIndex++;
-			}
-		}
+		//union the events of every feature set over all documents, keeping first occurrence order
+		List<EventUnion> unions = unionEventSets(culledEventSets, cumulativeFeatureDriver);
+		List<EventSet> relevantEvents = new ArrayList<EventSet>(unions.size());
+		for (EventUnion union : unions)
+			relevantEvents.add(union.toEventSet());
 		
 		//add the metadata back in
 		int index = 0;
@@ -331,7 +263,20 @@ public class FeatureExtractionAPI {
 	}
 
 	/**
-	 * Extracts a list of all features to be used for analysis.
+	 * Unions the events of every feature set over all of the documents, see {@link EventUnion}.
+	 * @param culledEventSets the culled List of Lists of EventSets, without their metadata
+	 * @param cumulativeFeatureDriver the driver used to extract the EventSets
+	 * @return the union of every feature set, in the order of the feature drivers
+	 * @throws Exception
+	 */
+	protected List<EventUnion> unionEventSets(List<List<EventSet>> culledEventSets,
+			CumulativeFeatureDriver cumulativeFeatureDriver) throws Exception {
+		return EventUnion.unionOf(culledEventSets, 0, culledEventSets.size(), cumulativeFeatureDriver);
+	}
+
+	/**
+	 * Extracts a list of all features to be used for analysis.<br>
+	 * The order of the list is the column order of the {@link FeatureVocabulary} built from the same relevant events.
 	 * @param culledEventSets
 	 * @param relevantEvents
 	 * @param cumulativeFeatureDriver
@@ -339,89 +284,13 @@ public class FeatureExtractionAPI {
 	 * @throws Exception
 	 */
 	public List<String> getFeatureList(List<List<EventSet>> culledEventSets,List<EventSet> relevantEvents,CumulativeFeatureDriver cumulativeFeatureDriver) throws Exception{
-	    
-        //remove the metdata prior to generating attribute list
-        ArrayList<EventSet> docMetaData = new ArrayList<EventSet>();
-        for (List<EventSet> les : culledEventSets){
-            docMetaData.add(les.remove(les.size()-1));
-        }
-        
-        //initialize useful things
-        int numOfFeatureClasses = relevantEvents.size();
-        List<EventSet> list;
-        
-        List<String> features = new ArrayList<String>(numOfFeatureClasses);
-
-        // initialize list of sets of events, which will eventually become the
-        // attributes
-        List<EventSet> allEvents = new ArrayList<EventSet>(numOfFeatureClasses);
-        
-        //Neither the doc title nor the author is in the List<List<EventSet>>, so this should work fine
-        for (int currEventSet = 0; currEventSet < numOfFeatureClasses; currEventSet++){
-            // initialize relevant list of event sets and histograms
-            list = new ArrayList<EventSet>();
-            for (int i = 0; i < numOfFeatureClasses; i++)
-                list.add(relevantEvents.get(i));
-            
-            //initialize eventSet
-            EventSet events = new EventSet();
-            events.setEventSetID(relevantEvents.get(currEventSet)
-                    .getEventSetID());
-
-            if (cumulativeFeatureDriver.featureDriverAt(currEventSet)
-                    .isCalcHist()) { //histogram feature
-
-                // generate event histograms and unique event list
-                EventSet eventSet = list.get(currEventSet);
-                for (Event event : eventSet) {
-                    events.addEvent(event);
-                }
-                allEvents.add(events);
-
-            } else { // one unique numeric event
-
-                // generate sole event (give placeholder value)
-                Event event = new Event("{-}");
-                events.addEvent(event);
-                allEvents.add(events);
-            }
-        }
-        
-        // Adds all of the events to the fast vector
-        int featureIndex = 0;
-        for (EventSet es : allEvents) {
-            Iterator<Event> iterator = es.iterator();
-            if (cumulativeFeatureDriver.featureDriverAt(featureIndex)
-                    .isCalcHist()) {
-                if (iterator.hasNext()){
-                    //grab first event; there should be at least one
-                    Event nextEvent = (Event) iterator.next();
-                    //get and add all middle events if they exist
-                    while (iterator.hasNext()) {
-                        features.add(nextEvent.getEvent());
-                        nextEvent = (Event) iterator.next();
-                    }
-                    //add the last event
-                    features.add(nextEvent.getEvent());
-                }
-            } else {
-                features.add(es.getEventSetID());
-            }
-            featureIndex++;
-        }
-        
-        //add the metadata back in
-        int index = 0;
-        for (List<EventSet> les : culledEventSets){
-            les.add(docMetaData.get(index));
-            index++;
-        }
-        
-        return features;
+	    return new ArrayList<String>(new FeatureVocabulary(relevantEvents,cumulativeFeatureDriver).getFeatureList());
 	}
 
 	/**
-	 * Converts the extracted document information into a JStylo DataMap
+	 * Converts the extracted document information into a JStylo DataMap.<br>
+	 * Builds a throwaway vocabulary; when converting more than one document, build the {@link FeatureVocabulary} once and use
+	 * {@link #createDocMap(FeatureVocabulary, CumulativeFeatureDriver, List)} instead.
 	 * @param features
 	 * @param relevantEvents
 	 * @param cumulativeFeatureDriver
@@ -432,161 +301,163 @@ public class FeatureExtractionAPI {
 	        List<EventSet> relevantEvents,
             CumulativeFeatureDriver cumulativeFeatureDriver,
             List<EventSet> documentData){
-	    
-        // generate training instances
-        ConcurrentHashMap<Integer,FeatureData> documentMap = new ConcurrentHashMap<Integer,FeatureData>();
-        
-        //remove metadata event
-        EventSet metadata = documentData.remove(documentData.size()-1);
-        
-        //go through all eventSets in the document
-        for (EventSet es: documentData){
-            
-            //initialize relevant information
-            ArrayList<Integer> indices = new ArrayList<Integer>();
-            ArrayList<Event> events = new ArrayList<Event>();
-            EventHistogram currHistogram = new EventHistogram();
-            
-            //whether or not we actually need this eventSet
-            boolean eventSetIsRelevant = false;
-            
-            //find out if it is a histogram or not
-            if (cumulativeFeatureDriver.featureDriverAt(
-                    documentData.indexOf(es)).isCalcHist()) {
-                
-                //find the event set in the list of relevant events
-                for (EventSet res : relevantEvents) {
-                    if (es.getEventSetID().equals(res.getEventSetID())) {
-                        eventSetIsRelevant = true;
-                        break;
-                    }
-                }
-                
-                //if it is relevant
-                if (eventSetIsRelevant) {
-
-                    // find the indices of the events
-                    // and count all of the events
-                    for (Event e : es) {
-                        int currIndex=0;
-                        boolean hasInner = false;
-
-                        //for the events n the set
-                        for (EventSet res : relevantEvents) {
-                            boolean found = false;
-                            for (Event re : res) {
-                                hasInner = true;
-                                
-                                //if they are the same event
-                                if (e.getEvent().equals(re.getEvent())) {
-                                    boolean inList = false;
-                                    for (Event el : events) {
-                                        if (el.getEvent().equals(e.getEvent())) {
-                                            inList = true;
-                                            break;
-                                        }
-                                    }
-                                    
-                                    if (!inList) {
-                                        indices.add(currIndex);
-                                        events.add(e);
-                                    }
-                                    //Old location revert if change breaks
-                                    currHistogram.add(e);
-                                    found = true;
-                                }
-                                if (found){
-                                    break;
-                                }
-                                currIndex++;
-                            }
-                            if (found){
-                                break;
-                            }
-                            
-                            //if there's no inner, it was a non-hist feature.
-                            //increment by one
-                            if (!hasInner){
-                                currIndex++;
-                            }
-                        }
-                    }
-                    //calculate/add the histograms
-                    int index = 0;
-                    for (Integer i: indices){
-                        documentMap.put(i, new FeatureData(
-                                cumulativeFeatureDriver.featureDriverAt(documentData.indexOf(es)).getName(),
-                                cumulativeFeatureDriver.featureDriverAt(documentData.indexOf(es)).getNormBaseline().getTitle(),
-                                currHistogram.getAbsoluteFrequency(events.get(index))));
-                        index++;
-                    }
-                    
-                }
-            } else { //non histogram feature
-                
-                //initialize the index
-                int nonHistIndex = 0;
-                
-                //find the indices of the events
-                //and count all of the events
-                for (EventSet res : relevantEvents) {
-                    
-                    if (es.getEventSetID().equals(res.getEventSetID())){
-                        break;
-                    }
-                    
-                    //count to find the index
-                    boolean hasInner = false;
-                    for (@SuppressWarnings("unused") Event re : res) {
-                        hasInner = true;
-                        nonHistIndex++;
-                    }
-                    
-                    //if ther's no inner feature, increment by one; we just passed a non-histogram
-                    if (!hasInner)
-                        nonHistIndex++;
-                }
+	    return createDocMap(new FeatureVocabulary(relevantEvents,cumulativeFeatureDriver),cumulativeFeatureDriver,documentData);
+	}
+
+	/**
+	 * Converts the extracted document information into a JStylo DataMap
+	 * @param vocabulary the feature vocabulary of the training data
+	 * @param cumulativeFeatureDriver
+	 * @param documentData the document's event sets, with the metadata event set last
+	 * @return map of column index to the feature data of that column
+	 */
+	public ConcurrentHashMap<Integer,FeatureData> createDocMap(FeatureVocabulary vocabulary,
+	        CumulativeFeatureDriver cumulativeFeatureDriver,
+	        List<EventSet> documentData){
+
+	    ConcurrentHashMap<Integer,FeatureData> documentMap = new ConcurrentHashMap<Integer,FeatureData>();
+
+	    //the last event set is the metadata, which has no columns
+	    int numEventSets = documentData.size()-1;
+	    for (int i = 0; i < numEventSets; i++){
+	        EventSet es = documentData.get(i);
+	        FeatureDriver fd = cumulativeFeatureDriver.featureDriverAt(i);
+
+	        if (fd.isCalcHist()){
+	            //count the occurrences of every event in the vocabulary
+	            Map<Integer,Integer> counts = new HashMap<Integer,Integer>();
+	            for (Event e : es){
+	                int index = vocabulary.getIndex(es.getEventSetID(), e.getEvent());
+	                if (index != -1){
+	                    Integer count = counts.get(index);
+	                    counts.put(index, count == null ? 1 : count+1);
+	                }
+	            }
+	            for (Map.Entry<Integer,Integer> entry : counts.entrySet()){
+	                documentMap.put(entry.getKey(), new FeatureData(fd.getName(),
+	                        fd.getNormBaseline().getTitle(), entry.getValue()));
+	            }
+	        } else { //non histogram feature
+	            int index = vocabulary.getNumericIndex(es.getEventSetID());
+	            if (index == -1)
+	                continue;
+
+	            //Extract and add the event
+	            String eventString = es.eventAt(0).getEvent();
+	            int startIndex = eventString.indexOf("{");
+	            int endIndex = eventString.indexOf("}");
+	            eventString = eventString.substring(startIndex+1,endIndex);
+
+	            documentMap.put(index, new FeatureData(fd.getName(), fd.getNormBaseline().getTitle(),
+	                    Math.round((float)Double.parseDouble(eventString))));
+	        }
+	    }
 
-                //Extract and add the event             
-                String eventString = es.eventAt(0).getEvent();
-                int startIndex = eventString.indexOf("{");
-                int endIndex = eventString.indexOf("}");
-                eventString = eventString.substring(startIndex+1,endIndex);
-
-                FeatureData fd = new FeatureData(
-                        cumulativeFeatureDriver.featureDriverAt(documentData.indexOf(es)).getName(),
-                        cumulativeFeatureDriver.featureDriverAt(documentData.indexOf(es)).getNormBaseline().getTitle(),
-                        Math.round((float)Double.parseDouble(eventString)));
-                documentMap.put(nonHistIndex, fd);
-            }
-        }
-        //add metadata back. Not sure if necessary
-        documentData.add(metadata);
-        
 	    return documentMap;
 	}
 
 	/**
-	 * Normalizes all of the extracted feature data for a specific document.
-	 * @param cfd
-	 * @param docmap
-	 * @param documentData
-	 * @param features
+	 * Converts the extracted document information into compact DocumentData, to be normalized with
+	 * {@link #normDocData(DocumentData)}.<br>
+	 * The columns of the document's histogram events are gathered into an array, one per occurrence, and sorted, so
+	 * that the occurrences of a column are adjacent and are counted in one pass without a map.
+	 * @param vocabulary the feature vocabulary of the training data
+	 * @param cumulativeFeatureDriver
+	 * @param documentData the document's event sets, with the metadata event set last
+	 * @return the document's data, sharing the column metadata of the vocabulary
 	 */
-	public void normDocData(DocumentData docdata){
-	    for (Integer index : docdata.getDataValues().keySet()){
-	        if (!docdata.getDataValues().get(index).getNormalizationType().equals(NormBaselineEnum.NONE.getTitle())) {
-	            docdata.getDataValues().get(index).setValue(0.0+
-	                docdata.getDataValues().get(index).getCount()
-	                *docdata.getNormalizationValues().get(docdata.getDataValues().get(index).getNormalizationType()));
+	public DocumentData createDocumentData(FeatureVocabulary vocabulary,
+	        CumulativeFeatureDriver cumulativeFeatureDriver,
+	        List<EventSet> documentData){
+
+	    int[] occurrences = new int[256];
+	    int numOccurrences = 0;
+	    int[] numericIndices = new int[4];
+	    int[] numericCounts = new int[4];
+	    int numNumeric = 0;
+
+	    //the last event set is the metadata, which has no columns
+	    int numEventSets = documentData.size()-1;
+	    for (int i = 0; i < numEventSets; i++){
+	        EventSet es = documentData.get(i);
+	        FeatureDriver fd = cumulativeFeatureDriver.featureDriverAt(i);
+
+	        if (fd.isCalcHist()){
+	            String id = es.getEventSetID();
+	            for (Event e : es){
+	                int index = vocabulary.getIndex(id, e.getEvent());
+	                if (index != -1){
+	                    if (numOccurrences == occurrences.length)
+	                        occurrences = Arrays.copyOf(occurrences, numOccurrences*2);
+	                    occurrences[numOccurrences++] = index;
+	                }
+	            }
+	        } else { //non histogram feature
+	            int index = vocabulary.getNumericIndex(es.getEventSetID());
+	            if (index == -1)
+	                continue;
+
+	            //Extract and add the event
+	            String eventString = es.eventAt(0).getEvent();
+	            int startIndex = eventString.indexOf("{");
+	            int endIndex = eventString.indexOf("}");
+	            eventString = eventString.substring(startIndex+1,endIndex);
+
+	            if (numNumeric == numericIndices.length){
+	                numericIndices = Arrays.copyOf(numericIndices, numNumeric*2);
+	                numericCounts = Arrays.copyOf(numericCounts, numNumeric*2);
+	            }
+	            //keep the numeric columns sorted, there are only a few of them
+	            int position = numNumeric++;
+	            while (position > 0 && numericIndices[position-1] > index){
+	                numericIndices[position] = numericIndices[position-1];
+	                numericCounts[position] = numericCounts[position-1];
+	                position--;
+	            }
+	            numericIndices[position] = index;
+	            numericCounts[position] = Math.round((float)Double.parseDouble(eventString));
+	        }
+	    }
+
+	    Arrays.sort(occurrences, 0, numOccurrences);
+
+	    //count the runs of equal histogram columns, merging in the numeric columns
+	    int[] indices = new int[numOccurrences+numNumeric];
+	    int[] counts = new int[numOccurrences+numNumeric];
+	    int size = 0;
+	    int next = 0; //the next numeric column
+	    int i = 0;
+	    while (i < numOccurrences || next < numNumeric){
+	        if (i == numOccurrences || (next < numNumeric && numericIndices[next] < occurrences[i])){
+	            indices[size] = numericIndices[next];
+	            counts[size++] = numericCounts[next++];
 	        } else {
-	            docdata.getDataValues().get(index).setValue(0.0+docdata.getDataValues().get(index).getCount());
+	            int run = i;
+	            while (run < numOccurrences && occurrences[run] == occurrences[i])
+	                run++;
+	            indices[size] = occurrences[i];
+	            counts[size++] = run-i;
+	            i = run;
 	        }
 	    }
+
+	    return new DocumentData(((DocumentMetadata) documentData.get(numEventSets)).getNormalizations(), vocabulary.getColumns(),
+	            Arrays.copyOf(indices, size), Arrays.copyOf(counts, size));
+	}
+
+	/**
+	 * Normalizes all of the extracted feature data for a specific document.
+	 * @param docdata the document's data
+	 * @see DocumentData#normalize()
+	 */
+	public void normDocData(DocumentData docdata){
+	    docdata.normalize();
 	}
 	
 	/**
 	 * Culls the test set using the relevant Events extracted from the training data.<br>
+	 * Builds a throwaway vocabulary; when culling more than one document, build the {@link FeatureVocabulary} once and use
+	 * {@link #cullWithRespectToTraining(FeatureVocabulary, List, CumulativeFeatureDriver)} instead.
 	 * @param relevantEvents the features from the EventSets which are going to be evaluated
 	 * @param eventSetsToCull The test documents to be culled
 	 * @return the culled test documents
@@ -595,164 +466,54 @@ public class FeatureExtractionAPI {
 	public List<EventSet> cullWithRespectToTraining(
 			List<EventSet> relevantEvents, List<EventSet> eventSetsToCull,
 			CumulativeFeatureDriver cfd) throws Exception {
-		List<EventSet> relevant = relevantEvents;
-		int numOfFeatureClasses = eventSetsToCull.size()-1; //-1 to compensate for removing metadata
-		int i;
-		List<EventSet> culledUnknownEventSets = new LinkedList<EventSet>();
+		return cullWithRespectToTraining(new FeatureVocabulary(relevantEvents,cfd),eventSetsToCull,cfd);
+	}
+
+	/**
+	 * Culls the test set using the feature vocabulary of the training data.<br>
+	 * @param vocabulary the feature vocabulary of the training data
+	 * @param eventSetsToCull The test document to be culled, with the metadata event set last
+	 * @return the culled test document
+	 * @throws Exception
+	 */
+	public List<EventSet> cullWithRespectToTraining(
+			FeatureVocabulary vocabulary, List<EventSet> eventSetsToCull,
+			CumulativeFeatureDriver cfd) throws Exception {
+		int numOfFeatureClasses = eventSetsToCull.size()-1; //-1 to compensate for the metadata
+		List<EventSet> culledUnknownEventSets = new ArrayList<EventSet>(eventSetsToCull.size());
 
-		//remove the metadata prior to culling
-		EventSet metadata = eventSetsToCull.remove(eventSetsToCull.size()-1);
-		
 		// make sure all unknown sets would have only events that appear in the
 		// known sets
 		// UNLESS the event set contains a sole numeric value event - in that
 		// case take it anyway
-		for (i = 0; i < numOfFeatureClasses; i++) {
+		for (int i = 0; i < numOfFeatureClasses; i++) {
+			EventSet unknown = eventSetsToCull.get(i);
 			if (cfd.featureDriverAt(i).isCalcHist()) {
-				// initialize set of relevant events
-				EventSet es = relevant.get(i);
-				Set<String> relevantEventsString = new HashSet<String>(
-						es.size());
-				for (Event e : es)
-					relevantEventsString.add(e.getEvent());
-
-				// remove all non-relevant events from unknown event sets
-				EventSet unknown;
-				Event e;
-				unknown = eventSetsToCull.get(i);
-				Iterator<Event> iterator = unknown.iterator();
-				Event next = null;
-
-				// the test doc may not contain a given feature (ie it might not
-				// have any semi-colons)
-				if (iterator.hasNext())
-					next = (Event) iterator.next();
-				
-				//while it has more of a feature
-				while (iterator.hasNext()) {
-					//copy the feature
-					e = next;
-					boolean remove = true;
-
-					//check to see if the feature is relevant
-					for (int l = 0; l < unknown.size(); l++) {
-						try {
-							if (e.equals(relevantEvents.get(i).eventAt(l))) {
-								remove = false; //if it is, break 
-								break;
-							}
-						} catch (IndexOutOfBoundsException iobe) {
-							remove = true; //it is not relevant if we reach this point.
-							break;
-						}
-					}
-
-					//remove the feature if it isn't relevant
-					if (remove) {
-						iterator.remove();
-					}
-					
-					//grab the next feature
-					next = iterator.next();
+				// keep only the relevant events
+				EventSet culled = new EventSet();
+				culled.setAuthor(unknown.getAuthor());
+				culled.setDocumentName(unknown.getDocumentName());
+				culled.setEventSetID(unknown.getEventSetID());
+				for (Event e : unknown) {
+					if (vocabulary.contains(unknown.getEventSetID(), e.getEvent()))
+						culled.addEvent(e);
 				}
-				
-				//add the culled event set
-				culledUnknownEventSets.add(unknown);
+				culledUnknownEventSets.add(culled);
 
 			} else { // one unique numeric event
-				// add non-histogram if it is in the relevantEventSets list
-				boolean isRelevant = false;
-				
-				for (EventSet res: relevantEvents){
-					if (res.getEventSetID().equals(
-							eventSetsToCull.get(i).getEventSetID())) {
-						isRelevant = true;
-						break;
-					}
-				}
-				
-				if (isRelevant)
-					culledUnknownEventSets.add(eventSetsToCull.get(i));
+				// add non-histogram if it is in the vocabulary
+				if (vocabulary.containsNumeric(unknown.getEventSetID()))
+					culledUnknownEventSets.add(unknown);
 			}
 		}
-		eventSetsToCull.add(metadata);
-		culledUnknownEventSets.add(metadata);
+		culledUnknownEventSets.add(eventSetsToCull.get(numOfFeatureClasses));
 		
 		return culledUnknownEventSets;
 	}
 
 	/**
-     * Loads the cached features for a given document
-     * @param document
-     * @param documentFile  The cache file for the document.
-     * @return the cached features if possible. Null if a cache doesn't exist or it fails to get them.
-     * @throws Exception 
-     */
-    private List<EventSet> getCachedFeatures(Document document, File documentFile) {
-        List<EventSet> generatedEvents = null;
-        BufferedReader reader = null;
-        
-        if (documentFile.exists() && !documentFile.isDirectory() && documentFile.canRead()) {
-            try {
-                reader = new BufferedReader(new FileReader(documentFile));
-            } catch (FileNotFoundException e) {
-                // shouldn't ever get here.. just put this here so I can keep track
-                // of exceptions below.
-                e.printStackTrace();
-            }
-        } else {
-            return null;
-        }
-        
-        try {
-            // cachedPath is the path to the document that was used when the cache for that
-            // document was created. cachedLastModified is the last modified time stamp on the
-            // document that was cached.
-            String cachedPath = reader.readLine();
-            long cachedLastModified = Long.parseLong(reader.readLine());
-
-            String path = document.getFilePath();
-            File currDoc = new File(path);
-            long lastModified = currDoc.lastModified();
-
-            if (!(currDoc.getCanonicalPath().equals(cachedPath) && lastModified == cachedLastModified)) {
-                // cache is invalid
-                reader.close();
-                return null;
-            }
-            String line = null;
-            generatedEvents = new ArrayList<EventSet>();
-            while ((line = reader.readLine()) != null) {
-                if (line.isEmpty())
-                    continue;
-                EventSet es = new EventSet();
-                es.setAuthor(document.getAuthor());
-                es.setDocumentName(document.getTitle());
-                es.setEventSetID(line);
-                
-                String event = null;
-                while ((event = reader.readLine()) != null) {
-                    if (line.isEmpty())
-                        continue;
-                    if (event.equals(",")) //delimiter for event sets
-                        break;
-                    es.addEvent(new Event(event));
-                }
-                
-                generatedEvents.add(es);
-            }
-            reader.close();
-        } catch (IOException e) {
-            e.printStackTrace();
-            return null;
-        }
-        
-        return generatedEvents;
-    }
-    
-    /**
      * Recursively delete contents of a directory (if f is a directory),
-     * then delete f.
+     * then delete f. Feature cache segments under f are closed first.
      * @param dir   the file/directory to delete
      * @return true if f was successfully deleted, false otherwise
      */
@@ -760,6 +521,7 @@ public class FeatureExtractionAPI {
         File cacheDir = new File(JSANConstants.JSAN_CACHE);
         try {
             if (f.getCanonicalPath().startsWith(cacheDir.getCanonicalPath())) {
+                MappedFeatureCache.close(f);
                 return deleteRecursiveUnsafe(f);
             }
         } catch (IOException e) {
@@ -0,0 +1,151 @@
+package edu.drexel.psal.jstylo.featureProcessing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jgaap.generics.Event;
+import com.jgaap.generics.EventSet;
+
+import edu.drexel.psal.jstylo.generics.FeatureColumns;
+
+/**
+ * An immutable index of every feature (column) that will appear in a DataMap.<br>
+ *
+ * Built once from the relevant events of the training documents and then shared, read-only, by all of the
+ * threads converting documents into DocumentData. Each histogram event is keyed on its event set ID and event string,
+ * and each non-histogram feature on its event set ID, so finding a document's column is a pair of hash lookups
+ * rather than a scan of the whole vocabulary.<br>
+ *
+ * Column order is identical to the order of {@link FeatureExtractionAPI#getFeatureList}.
+ */
+public class FeatureVocabulary {
+
+    /**
+     * Histogram features: event set ID -> event string -> column index
+     */
+    private final Map<String,Map<String,Integer>> histogramColumns;
+
+    /**
+     * Non-histogram (single numeric value) features: event set ID -> column index
+     */
+    private final Map<String,Integer> numericColumns;
+
+    /**
+     * The feature names, in column order
+     */
+    private final List<String> features;
+
+    /**
+     * The feature driver name and normalization type of every column
+     */
+    private final FeatureColumns columns;
+
+    /**
+     * Builds the vocabulary from the relevant events of the training data.
+     * @param relevantEvents the relevant events, as produced by getRelevantEvents
+     * @param cfd the driver used to extract the events
+     */
+    public FeatureVocabulary(List<EventSet> relevantEvents, CumulativeFeatureDriver cfd){
+        histogramColumns = new HashMap<String,Map<String,Integer>>(relevantEvents.size()*2);
+        numericColumns = new HashMap<String,Integer>();
+        List<String> featureList = new ArrayList<String>();
+        List<String> names = new ArrayList<String>();
+        List<String> normalizationTypes = new ArrayList<String>();
+
+        int featureIndex = 0;
+        for (EventSet es : relevantEvents){
+            String id = es.getEventSetID();
+            FeatureDriver fd = cfd.featureDriverAt(featureIndex);
+            int first = featureList.size();
+            if (fd.isCalcHist()){
+                Map<String,Integer> columns = histogramColumns.get(id);
+                if (columns == null){
+                    columns = new HashMap<String,Integer>(es.size()*2);
+                    histogramColumns.put(id, columns);
+                }
+                for (Event e : es){
+                    //the first occurrence wins, same as the old linear search
+                    if (!columns.containsKey(e.getEvent()))
+                        columns.put(e.getEvent(), featureList.size());
+                    featureList.add(e.getEvent());
+                }
+            } else {
+                if (!numericColumns.containsKey(id))
+                    numericColumns.put(id, featureList.size());
+                featureList.add(id);
+            }
+            for (int i = first; i < featureList.size(); i++){
+                names.add(fd.getName());
+                normalizationTypes.add(fd.getNormBaseline().getTitle());
+            }
+            featureIndex++;
+        }
+
+        features = Collections.unmodifiableList(featureList);
+        columns = new FeatureColumns(names.toArray(new String[names.size()]),
+                normalizationTypes.toArray(new String[normalizationTypes.size()]));
+    }
+
+    /**
+     * @param eventSetID the ID of the event set the event belongs to
+     * @param event the event string
+     * @return the column of the histogram event, or -1 if it is not part of the vocabulary
+     */
+    public int getIndex(String eventSetID, String event){
+        Map<String,Integer> columns = histogramColumns.get(eventSetID);
+        if (columns == null)
+            return -1;
+        Integer index = columns.get(event);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param eventSetID the ID of the non-histogram event set
+     * @return the column of the numeric feature, or -1 if it is not part of the vocabulary
+     */
+    public int getNumericIndex(String eventSetID){
+        Integer index = numericColumns.get(eventSetID);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param eventSetID the ID of the event set the event belongs to
+     * @param event the event string
+     * @return true iff the histogram event is part of the vocabulary
+     */
+    public boolean contains(String eventSetID, String event){
+        return getIndex(eventSetID,event) != -1;
+    }
+
+    /**
+     * @param eventSetID the ID of an event set
+     * @return true iff the event set is a non-histogram feature of the vocabulary
+     */
+    public boolean containsNumeric(String eventSetID){
+        return numericColumns.containsKey(eventSetID);
+    }
+
+    /**
+     * @return the read-only list of feature names, in column order
+     */
+    public List<String> getFeatureList(){
+        return features;
+    }
+
+    /**
+     * @return the feature driver name and normalization type of every column, shared by the compact DocumentData
+     */
+    public FeatureColumns getColumns(){
+        return columns;
+    }
+
+    /**
+     * @return the number of columns in the vocabulary
+     */
+    public int size(){
+        return features.size();
+    }
+}
@@ -0,0 +1,75 @@
+package edu.drexel.psal.jstylo.featureProcessing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jgaap.generics.Document;
+
+/**
+ * The default feature cache: one file per document, at _&lt;cfd&gt;/_&lt;author&gt;/&lt;title&gt;.cache under the
+ * cache directory, or at _&lt;cfd&gt;/content/.../&lt;digest&gt;.cache when keyed on content.<br>
+ * Files are written to a temporary file first and then moved into place. Invalid files are deleted when read.
+ */
+public class FileFeatureCache extends FeatureCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileFeatureCache.class);
+
+    private final File cacheDir;
+
+    /**
+     * @param cacheDir the cache directory of the cumulative feature driver
+     */
+    public FileFeatureCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    @Override
+    public Record read(Document document, Key key) {
+        File cacheFile = new File(cacheDir, key.storageKey);
+        if (!cacheFile.exists() || cacheFile.isDirectory() || !cacheFile.canRead())
+            return null;
+
+        Record record = null;
+        try {
+            record = decode(ByteBuffer.wrap(Files.readAllBytes(cacheFile.toPath())), key);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Unable to read feature cache " + cacheFile.getPath(), e);
+        }
+        if (record == null) {
+            // delete the cache for this document! It is invalid
+            cacheFile.delete();
+        }
+        return record;
+    }
+
+    @Override
+    public void write(Key key, Record record) throws IOException {
+        byte[] bytes = encode(key, record);
+
+        File cacheFile = new File(cacheDir, key.storageKey);
+        File dir = cacheFile.getParentFile();
+        if (!dir.exists())
+            dir.mkdirs();
+        File tmp = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(bytes);
+            }
+            try {
+                Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+}
@@ -1,18 +1,18 @@
 package edu.drexel.psal.jstylo.featureProcessing;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.EnumSet;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,12 +21,10 @@ import com.jgaap.generics.Document;
 import com.jgaap.generics.Event;
 import com.jgaap.generics.EventSet;
 
-import edu.drexel.psal.JSANConstants;
-import edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver.FeatureSetElement;
+import edu.drexel.psal.jstylo.eventCullers.FrequencyEventsExtended;
 import edu.drexel.psal.jstylo.generics.DataMap;
 import edu.drexel.psal.jstylo.generics.DocResult;
 import edu.drexel.psal.jstylo.generics.DocumentData;
-import edu.drexel.psal.jstylo.generics.FeatureData;
 import edu.drexel.psal.jstylo.generics.Preferences;
 
 /**
@@ -41,14 +39,15 @@ public class LocalParallelFeatureExtractionAPI extends FeatureExtractionAPI {
 	// throughout the entire process
 	private Preferences preferences;
 	private boolean isCacheValid;
+	private long[] driverHashes; //cache hashes of the cfd's feature drivers, computed when the cache is validated
+	private FeatureCache featureCache; //the cache of the cfd, opened when the cache is validated
 	
 	// Persistent data stored as we create it
 	private ProblemSet ps;	//the documents
 	
-	// ThreadArrays so that we can stop them if the user cancels something mid process
-	private FeatureExtractionThread[] featThreads;
-	private CreateTrainDataMapThread[] trainThreads;
-	private CreateTestDataMapThread[] testThreads;
+	// The pool the extraction stages run their per-document tasks on, created on demand with the
+	// configured number of threads. Shut down to cancel the running stage, see killThreads()
+	private ForkJoinPool pool;
 	
 	/**
 	 * Builder for the InstancesBuilder class.<br>
@@ -162,81 +161,97 @@ public class LocalParallelFeatureExtractionAPI extends FeatureExtractionAPI {
 	}
 
 	//////////////////////////////////////////// Methods
-	
+
 	/**
 	 * Extracts the List\<EventSet\> from each document using a user-defined number of threads.
-	 * Culls the eventSets as well.
+	 * Every document is a separate task, so threads that are done early take over the remaining documents
+	 * instead of idling while others work through a few long ones.
+	 * Culls the eventSets as well.<br>
+	 * The event sets are in the order of the training documents. Documents that fail to extract are left out.
 	 * @throws Exception
+	 * @throws CancellationException if the extraction was cancelled by {@link #killThreads()}
 	 */
 	public List<List<EventSet>> extractEventsThreaded(CumulativeFeatureDriver cfd) throws Exception {
 
 		//pull in documents and find out how many there are
-		List<Document> knownDocs = ps.getAllTrainDocs();
-		int knownDocsSize = knownDocs.size();
+		final List<Document> knownDocs = ps.getTrainDocsSnapshot();
+		final DriverCopies cfds = new DriverCopies(cfd);
 
-		// initalize empty List<List<EventSet>>
-		List<List<EventSet>> eventList = new ArrayList<List<EventSet>>(knownDocsSize);
-		
-		// if the num of threads is bigger then the number of docs, set it to
-		// the max number of docs (extract each document's features in its own
-		// thread
-		int numThreads = getNumThreads();
-		int threadsToUse = numThreads;
-		
-		//if we have more threads than documents, that's a bit silly.
-		if (numThreads > knownDocsSize) {
-			threadsToUse = knownDocsSize;
-		}
-		
-		//if some documents are leftover after divvying them up, increment the div by 1 to ensure that they're all captured
-		int div = knownDocsSize / threadsToUse;
-		if (div % threadsToUse != 0)
-			div++;
-		
 		LOG.info("Beginning Feature Extraction");
-		
+
 		//Parallelized feature extraction
-		featThreads = new FeatureExtractionThread[threadsToUse];
-		for (int thread = 0; thread < threadsToUse; thread++) //create the threads
-			featThreads[thread] = new FeatureExtractionThread(div, thread,
-					knownDocsSize, knownDocs, new CumulativeFeatureDriver(cfd));
-		for (int thread = 0; thread < threadsToUse; thread++) //start them
-			featThreads[thread].start();
-		for (int thread = 0; thread < threadsToUse; thread++) //join them
-			featThreads[thread].join();
-		for (int thread = 0; thread < threadsToUse; thread++) //combine List<List<EventSet>>
-			eventList.addAll(featThreads[thread].list);
-		for (int thread = 0; thread < threadsToUse; thread++) //destroy threads
-			featThreads[thread] = null;
-		
-		featThreads = null;
-		
+		List<List<EventSet>> extracted = runTasks(knownDocs.size(), new IndexedTask<List<EventSet>>() {
+			@Override
+			public List<EventSet> run(int i) {
+				CumulativeFeatureDriver cfd = null;
+				try {
+					cfd = cfds.borrow();
+					//try to extract the events
+					LOG.info("Extracting features from document " + i);
+					return extractEventSets(knownDocs.get(i),cfd,loadingDocContents(),isCacheValid,driverHashes);
+				} catch (Exception e) {
+					LOG.error("Error extracting features for document " + i + " from "+knownDocs.get(i).getFilePath(),e);
+					return null;
+				} finally {
+					if (cfd != null)
+						cfds.release(cfd);
+				}
+			}
+		});
+
+		//combine List<List<EventSet>>, skipping the documents that failed
+		List<List<EventSet>> eventList = new ArrayList<List<EventSet>>(extracted.size());
+		for (List<EventSet> events : extracted)
+			if (events != null)
+				eventList.add(events);
+
 		//return it now
 		return cull(eventList,cfd);
 	}
 
 	/**
-	 * Threaded creation of training datamap from gathered data
+	 * Unions the events of every feature set over the documents using a user-defined number of threads.
+	 * The documents are split into a few consecutive ranges per thread, and the unions of the ranges are
+	 * then merged in document order, so the result is the same as that of a single thread.
 	 * @throws Exception
 	 */
-	public DataMap createTrainingDataMapThreaded(List<List<EventSet>> eventList,List<EventSet> relevantEvents,List<String> features, CumulativeFeatureDriver cfd) throws Exception {
-
-	    DataMap trainingDataMap = new DataMap("Training",features);
-	    
-		//initialize/fetch data
-		int numThreads = getNumThreads();
-		int threadsToUse = numThreads;
-		int numInstances = eventList.size();
-		
-		//if there are more threads than instances, that's just silly
-		if (numThreads > numInstances) {
-			threadsToUse = numInstances;
-		}
+	@Override
+	protected List<EventUnion> unionEventSets(final List<List<EventSet>> culledEventSets, final CumulativeFeatureDriver cfd) throws Exception {
 
-		//initialize the div and make sure it captures everything
-		int div = numInstances / threadsToUse;
-		if (div % threadsToUse != 0)
-			div++;
+		final int numDocs = culledEventSets.size();
+		int numRanges = Math.min(numDocs, 4 * getNumThreads());
+		if (numRanges <= 1)
+			return super.unionEventSets(culledEventSets, cfd);
+
+		//round up so that every document is in some range
+		final int div = (numDocs + numRanges - 1) / numRanges;
+
+		List<List<EventUnion>> ranges = runTasks(numRanges, new IndexedTask<List<EventUnion>>() {
+			@Override
+			public List<EventUnion> run(int range) {
+				return EventUnion.unionOf(culledEventSets, Math.min(numDocs, div * range),
+						Math.min(numDocs, div * (range + 1)), cfd);
+			}
+		});
+
+		//merge the ranges in order
+		List<EventUnion> unions = ranges.get(0);
+		for (int range = 1; range < ranges.size(); range++)
+			EventUnion.mergeInto(unions, ranges.get(range));
+		return unions;
+	}
+
+	/**
+	 * Threaded creation of training datamap from gathered data.<br>
+	 * The documents' data are computed in parallel and added to the datamap in document order.
+	 * @throws Exception
+	 * @throws CancellationException if the creation was cancelled by {@link #killThreads()}
+	 */
+	public DataMap createTrainingDataMapThreaded(final List<List<EventSet>> eventList,List<EventSet> relevantEvents,List<String> features, final CumulativeFeatureDriver cfd) throws Exception {
+
+	    //build the vocabulary once; it is shared read-only by all of the tasks
+	    final FeatureVocabulary vocabulary = new FeatureVocabulary(relevantEvents,cfd);
+	    DataMap trainingDataMap = new DataMap("Training",features,vocabulary.getColumns());
 
 		//pre-process the map to add all authors
 		for (List<EventSet> docEvents : eventList){
@@ -244,71 +259,438 @@ public class LocalParallelFeatureExtractionAPI extends FeatureExtractionAPI {
 		    String author = metadata.eventAt(0).getEvent();
 		    trainingDataMap.initAuthor(author);
 		}
-		
-		//Parallelized magic
-		trainThreads = new CreateTrainDataMapThread[threadsToUse];
-		for (int thread = 0; thread < threadsToUse; thread++)
-			trainThreads[thread] = new CreateTrainDataMapThread(div,thread,numInstances,new CumulativeFeatureDriver(cfd),eventList,relevantEvents,features,trainingDataMap);
-		for (int thread = 0; thread < threadsToUse; thread++)
-			trainThreads[thread].start();
-		for (int thread = 0; thread < threadsToUse; thread++)
-			trainThreads[thread].join();
-		for (int thread = 0; thread < threadsToUse; thread++)
-			trainThreads[thread] = null;
-		trainThreads = null;
-		
+
+		//Parallelized magic; the cfd is only read here, so the tasks share it
+		List<DocumentData> docData = runTasks(eventList.size(), new IndexedTask<DocumentData>() {
+			@Override
+			public DocumentData run(int i) {
+				List<EventSet> events = eventList.get(i);
+				try {
+				    DocumentData doc = createDocumentData(vocabulary, cfd, events);
+					//normalize it
+					normDocData(doc);
+					return doc;
+				} catch (Exception e) {
+				    LOG.error("Error creating datamap " + i + " for document "+events.get(events.size()-1).eventAt(1).getEvent(),e);
+				    return null;
+				}
+			}
+		});
+
+		for (int i = 0; i < docData.size(); i++) {
+			if (docData.get(i) == null)
+				continue;
+			EventSet metadata = eventList.get(i).get(eventList.get(i).size()-1);
+			trainingDataMap.addDocumentData(metadata.eventAt(0).getEvent(), metadata.eventAt(1).getEvent(), docData.get(i));
+		}
+
 		return trainingDataMap;
 	}
 
 	/**
-	 * Creates Test datamap from all of the information gathered (if there are any)
+	 * Creates Test datamap from all of the information gathered (if there are any).<br>
+	 * The test documents are extracted and their data computed in parallel, and added to the datamap in
+	 * document order.
 	 * @throws Exception
+	 * @throws CancellationException if the creation was cancelled by {@link #killThreads()}
 	 */
 	public DataMap createTestingDataMapThreaded(List<List<EventSet>> eventList,List<EventSet> relevantEvents,List<String> features, CumulativeFeatureDriver cfd) throws Exception {
-		
+		List<String> trainAuthors = new ArrayList<String>(eventList.size());
+		for (List<EventSet> docEvents : eventList){
+			EventSet metadata = docEvents.get(docEvents.size()-1);
+			trainAuthors.add(metadata.eventAt(0).getEvent());
+		}
+		return createTestingDataMap(trainAuthors,relevantEvents,features,cfd);
+	}
+
+	/**
+	 * Creates Test datamap from all of the information gathered (if there are any), for training data that was
+	 * created by {@link #createTrainingDataMapStreaming(List, List, CumulativeFeatureDriver)}.<br>
+	 * The authors of the test datamap are the authors of the given training datamap.
+	 * @throws Exception
+	 * @throws CancellationException if the creation was cancelled by {@link #killThreads()}
+	 */
+	public DataMap createTestingDataMapThreaded(DataMap trainingDataMap,List<EventSet> relevantEvents,List<String> features, CumulativeFeatureDriver cfd) throws Exception {
+		return createTestingDataMap(trainingDataMap.getDataMap().keySet(),relevantEvents,features,cfd);
+	}
+
+	/**
+	 * Creates the test datamap, see {@link #createTestingDataMapThreaded(List, List, List, CumulativeFeatureDriver)}.
+	 * @param trainAuthors the authors of the training documents
+	 */
+	private DataMap createTestingDataMap(Collection<String> trainAuthors,List<EventSet> relevantEvents,List<String> features, CumulativeFeatureDriver cfd) throws Exception {
+
+		//capture the test documents once; the tasks index into this snapshot
+		final List<Document> testDocs = ps.getTestDocsSnapshot();
+
 		//if there are no test instances, return null and move on with our lives
-		if (ps.getAllTestDocs().size()==0){
+		if (testDocs.size()==0){
 			return null;
 		} else { //otherwise go through the whole process
-			DataMap testingDataMap = new DataMap("testing data",features);
-			//create/fetch data
-			int numThreads = getNumThreads();
-			int threadsToUse = numThreads;
-			int numInstances = ps.getAllTestDocs().size();
-		
+			//build the vocabulary once; it is shared read-only by all of the tasks
+			final FeatureVocabulary vocabulary = new FeatureVocabulary(relevantEvents,cfd);
+			DataMap testingDataMap = new DataMap("testing data",features,vocabulary.getColumns());
+			final DriverCopies cfds = new DriverCopies(cfd);
+
 		    //pre-process the map to add all authors
-	        for (List<EventSet> docEvents : eventList){
-	            EventSet metadata = docEvents.get(docEvents.size()-1);
-	            String author = metadata.eventAt(0).getEvent();
+	        for (String author : trainAuthors){
 	            testingDataMap.initAuthor(author);
 	        }
-	        
-	        testingDataMap.initAuthor(DocResult.defaultUnknown);
-			
-			//make sure number of threads isn't silly
-			if (numThreads > numInstances) {
-				threadsToUse = numInstances;
-			}
 
-			//ensure the docs are divided correctly
-			int div = numInstances / threadsToUse;
-			if (div % threadsToUse != 0)
-				div++;
+	        testingDataMap.initAuthor(DocResult.defaultUnknown);
 
 			//Perform some parallelization magic
-			testThreads = new CreateTestDataMapThread[threadsToUse];
-			for (int thread = 0; thread < threadsToUse; thread++)
-				testThreads[thread] = new CreateTestDataMapThread(div,thread,numInstances, new CumulativeFeatureDriver(cfd),relevantEvents,features,testingDataMap);
-			for (int thread = 0; thread < threadsToUse; thread++)
-				testThreads[thread].start();
-			for (int thread = 0; thread < threadsToUse; thread++)
-				testThreads[thread].join();
-			for (int thread = 0; thread < threadsToUse; thread++)
-				testThreads[thread] = null;
-			testThreads = null;
+			List<DocumentData> docData = runTasks(testDocs.size(), new IndexedTask<DocumentData>() {
+				@Override
+				public DocumentData run(int i) {
+					CumulativeFeatureDriver cfd = null;
+					try {
+						cfd = cfds.borrow();
+						//grab the document
+						Document document = testDocs.get(i);
+						//extract its event sets
+						List<EventSet> events = extractEventSets(document, cfd,loadingDocContents(),isCacheValid,driverHashes);
+						//cull the events/eventSets with respect to training events/sets
+						events = cullWithRespectToTraining(vocabulary, events, cfd);
+
+						//build the doc data
+		                DocumentData doc = createDocumentData(vocabulary, cfd, events);
+						//normalize it
+						normDocData(doc);
+						return doc;
+					} catch (Exception e) {
+					    LOG.error("Error creating Test Document data for "+
+					            testDocs.get(i).getFilePath()+" author: "+testDocs.get(i).getAuthor(),e);
+					    return null;
+					} finally {
+						if (cfd != null)
+							cfds.release(cfd);
+					}
+				}
+			});
+
+			//add them to the datamap in document order
+			for (int i = 0; i < docData.size(); i++) {
+				if (docData.get(i) == null)
+					continue;
+				String author = testDocs.get(i).getAuthor();
+				if (!testingDataMap.getDataMap().containsKey(author))
+					testingDataMap.initAuthor(author);
+				testingDataMap.addDocumentData(author, testDocs.get(i).getTitle(), docData.get(i));
+			}
 			return testingDataMap;
 		}
-		
+
+	}
+
+	/**
+	 * First pass of the streaming mode, in place of extractEventsThreaded and getRelevantEvents: extracts the
+	 * training documents and collects the relevant events without holding on to the documents' event sets.<br>
+	 * The documents are split into a few consecutive ranges per thread. Every range extracts its documents one at a
+	 * time and adds their event sets to the unions of the range right away, after which they are dropped, so only the
+	 * vocabulary of every feature set is kept rather than the events of the whole corpus. The unions of the ranges are
+	 * then merged in document order.<br>
+	 * Feature sets with event cullers need the events of all documents. When the cullers only look at the number of
+	 * appearances of every event (see {@link CumulativeEventCuller#cullsByCount(FeatureDriver)}), only those numbers
+	 * are added up over the documents and culled, and the union is left with the events that remain. Otherwise the
+	 * event sets of the feature set are kept until the end of the pass, culled, and then unioned.<br>
+	 * The result is the same as that of getRelevantEvents on the output of extractEventsThreaded.
+	 * @throws Exception
+	 * @throws CancellationException if the extraction was cancelled by {@link #killThreads()}
+	 */
+	public List<EventSet> getRelevantEventsStreaming(final CumulativeFeatureDriver cfd) throws Exception {
+
+		final List<Document> knownDocs = ps.getTrainDocsSnapshot();
+		final DriverCopies cfds = new DriverCopies(cfd);
+		final int numDocs = knownDocs.size();
+
+		//the feature sets culled by the number of appearances of their events, which are counted as the documents
+		//are extracted, and the other culled feature sets, whose event sets have to be kept for their cullers
+		final boolean[] counted = new boolean[cfd.numOfFeatureDrivers()];
+		final boolean[] culled = new boolean[cfd.numOfFeatureDrivers()];
+		boolean hasCulled = false;
+		for (int i = 0; i < culled.length; i++) {
+			counted[i] = CumulativeEventCuller.cullsByCount(cfd.featureDriverAt(i));
+			culled[i] = !counted[i] && CumulativeEventCuller.hasCullers(cfd.featureDriverAt(i));
+			hasCulled |= culled[i];
+		}
+		final boolean anyCulled = hasCulled;
+
+		LOG.info("Beginning streaming Feature Extraction");
+
+		int numRanges = Math.max(1, Math.min(numDocs, 4 * getNumThreads()));
+		//round up so that every document is in some range
+		final int div = (numDocs + numRanges - 1) / numRanges;
+
+		List<StreamedRange> ranges = runTasks(numRanges, new IndexedTask<StreamedRange>() {
+			@Override
+			public StreamedRange run(int range) {
+				StreamedRange streamed = new StreamedRange(counted);
+				CumulativeFeatureDriver cfd = null;
+				try {
+					cfd = cfds.borrow();
+					for (int i = Math.min(numDocs, div * range); i < Math.min(numDocs, div * (range + 1)); i++) {
+						List<EventSet> events;
+						try {
+							LOG.info("Extracting features from document " + i);
+							events = extractEventSets(knownDocs.get(i),cfd,loadingDocContents(),isCacheValid,driverHashes);
+						} catch (Exception e) {
+							LOG.error("Error extracting features for document " + i + " from "+knownDocs.get(i).getFilePath(),e);
+							continue;
+						}
+						//drop the metadata, then fold the rest into the unions and drop it as well
+						events.remove(events.size()-1);
+						for (int j = 0; j < events.size(); j++) {
+							if (counted[j])
+								FrequencyEventsExtended.addCounts(streamed.counts.get(j), events.get(j));
+						}
+						if (anyCulled) {
+							//keep the culled sets aside, the unions of those are built after culling
+							List<EventSet> kept = new ArrayList<EventSet>(events.size());
+							for (int j = 0; j < events.size(); j++) {
+								kept.add(culled[j] ? events.get(j) : null);
+								if (culled[j]) {
+									//an empty set in its place, so the union still gets the ID of the feature set
+									EventSet empty = new EventSet();
+									empty.setEventSetID(events.get(j).getEventSetID());
+									events.set(j, empty);
+								}
+							}
+							streamed.culledSets.add(kept);
+						}
+						EventUnion.addTo(streamed.unions, events, cfd);
+					}
+				} finally {
+					if (cfd != null)
+						cfds.release(cfd);
+				}
+				return streamed;
+			}
+		});
+
+		//merge the ranges in order
+		List<EventUnion> unions = new ArrayList<EventUnion>(cfd.numOfFeatureDrivers());
+		List<List<EventSet>> culledSets = new ArrayList<List<EventSet>>(numDocs);
+		StreamedRange merged = new StreamedRange(counted);
+		for (StreamedRange range : ranges) {
+			EventUnion.mergeInto(unions, range.unions);
+			culledSets.addAll(range.culledSets);
+			for (int j = 0; j < counted.length; j++) {
+				if (counted[j])
+					FrequencyEventsExtended.mergeCounts(merged.counts.get(j), range.counts.get(j));
+			}
+		}
+		ranges = null;
+
+		//cull the counted feature sets by the number of appearances of their events over all documents
+		for (int j = 0; j < unions.size(); j++) {
+			if (!counted[j])
+				continue;
+			Map<String,int[]> counts = merged.counts.get(j);
+			CumulativeEventCuller.cullCounts(counts, cfd.featureDriverAt(j));
+			unions.get(j).retainEvents(counts.keySet());
+		}
+		merged = null;
+
+		//cull the kept feature sets over all documents, and union what is left of them
+		if (anyCulled && !culledSets.isEmpty()) {
+			List<List<EventSet>> features = new ArrayList<List<EventSet>>(unions.size());
+			for (int j = 0; j < unions.size(); j++) {
+				if (!culled[j]) {
+					features.add(null);
+					continue;
+				}
+				List<EventSet> featureSets = new ArrayList<EventSet>(culledSets.size());
+				for (List<EventSet> docSets : culledSets)
+					featureSets.add(docSets.get(j));
+				features.add(featureSets);
+			}
+			culledSets = null;
+			features = CumulativeEventCuller.cullFeatures(features, cfd, getCullingThreads());
+			for (int j = 0; j < unions.size(); j++) {
+				if (!culled[j])
+					continue;
+				EventUnion union = new EventUnion(unions.get(j).getEventSetID(), cfd.featureDriverAt(j).isCalcHist());
+				for (EventSet es : features.get(j))
+					union.add(es);
+				unions.set(j, union);
+			}
+		}
+
+		List<EventSet> relevantEvents = new ArrayList<EventSet>(unions.size());
+		for (EventUnion union : unions)
+			relevantEvents.add(union.toEventSet());
+		return relevantEvents;
+	}
+
+	/**
+	 * Second pass of the streaming mode, in place of createTrainingDataMapThreaded: extracts every training document
+	 * again and converts it straight into its DocumentData, dropping its event sets as soon as it is converted.<br>
+	 * Use with the feature cache, so that the second extraction reads the cached event sets instead of processing the
+	 * documents again.<br>
+	 * The training event sets are not culled against the relevant events, as createDocMap only counts the events of the
+	 * vocabulary anyway. Like the JGAAP cullers, event cullers are expected to keep the same events of every document.
+	 * @param relevantEvents the relevant events, as produced by {@link #getRelevantEventsStreaming(CumulativeFeatureDriver)}
+	 * @throws Exception
+	 * @throws CancellationException if the creation was cancelled by {@link #killThreads()}
+	 */
+	public DataMap createTrainingDataMapStreaming(List<EventSet> relevantEvents,List<String> features, CumulativeFeatureDriver cfd) throws Exception {
+
+		final List<Document> knownDocs = ps.getTrainDocsSnapshot();
+		//build the vocabulary once; it is shared read-only by all of the tasks
+		final FeatureVocabulary vocabulary = new FeatureVocabulary(relevantEvents,cfd);
+		DataMap trainingDataMap = new DataMap("Training",features,vocabulary.getColumns());
+		final DriverCopies cfds = new DriverCopies(cfd);
+
+		List<DocumentData> docData = runTasks(knownDocs.size(), new IndexedTask<DocumentData>() {
+			@Override
+			public DocumentData run(int i) {
+				CumulativeFeatureDriver cfd = null;
+				try {
+					cfd = cfds.borrow();
+					List<EventSet> events = extractEventSets(knownDocs.get(i),cfd,loadingDocContents(),isCacheValid,driverHashes);
+					DocumentData doc = createDocumentData(vocabulary, cfd, events);
+					//normalize it
+					normDocData(doc);
+					return doc;
+				} catch (Exception e) {
+					LOG.error("Error creating datamap " + i + " for document "+knownDocs.get(i).getFilePath(),e);
+					return null;
+				} finally {
+					if (cfd != null)
+						cfds.release(cfd);
+				}
+			}
+		});
+
+		//add them to the datamap in document order
+		for (int i = 0; i < docData.size(); i++) {
+			if (docData.get(i) == null)
+				continue;
+			String author = knownDocs.get(i).getAuthor();
+			if (!trainingDataMap.getDataMap().containsKey(author))
+				trainingDataMap.initAuthor(author);
+			trainingDataMap.addDocumentData(author, knownDocs.get(i).getTitle(), docData.get(i));
+		}
+
+		return trainingDataMap;
+	}
+
+	/**
+	 * The unions of the feature sets over a range of documents, collected by the first pass of the streaming mode.
+	 */
+	private static class StreamedRange {
+
+		private final List<EventUnion> unions = new ArrayList<EventUnion>();
+
+		/**
+		 * The event sets of the feature sets that are culled but not counted, of every document in the range, in
+		 * document order. The event sets of the other feature sets are null. Empty if there are no such feature sets.
+		 */
+		private final List<List<EventSet>> culledSets = new ArrayList<List<EventSet>>();
+
+		/**
+		 * The number of appearances of every event over the documents in the range, for every feature set that is
+		 * culled by those numbers, or null for the other feature sets.
+		 */
+		private final List<Map<String,int[]>> counts;
+
+		/**
+		 * @param counted the feature sets culled by the number of appearances of their events
+		 */
+		StreamedRange(boolean[] counted) {
+			counts = new ArrayList<Map<String,int[]>>(counted.length);
+			for (boolean c : counted)
+				counts.add(c ? new HashMap<String,int[]>() : null);
+		}
+	}
+
+	/**
+	 * A task run for every index of a parallel stage, usually for every document.
+	 */
+	private interface IndexedTask<T> {
+		T run(int i);
+	}
+
+	/**
+	 * Runs the task for every index in [0,n) as a separate task on the pool, and waits for all of them.
+	 * @return the results of the tasks, in index order
+	 * @throws CancellationException if the tasks were cancelled by {@link #killThreads()}
+	 * @throws ExecutionException if a task failed, once the remaining tasks are cancelled
+	 */
+	private <T> List<T> runTasks(int n, final IndexedTask<T> task) throws InterruptedException, ExecutionException {
+		ForkJoinPool pool = getPool();
+		List<Future<T>> futures = new ArrayList<Future<T>>(n);
+		try {
+			for (int i = 0; i < n; i++) {
+				final int index = i;
+				futures.add(pool.submit(new Callable<T>() {
+					@Override
+					public T call() {
+						return task.run(index);
+					}
+				}));
+			}
+		} catch (RejectedExecutionException e) {
+			// the pool was shut down while submitting
+			for (Future<T> future : futures)
+				future.cancel(true);
+			throw new CancellationException("Cancelled");
+		}
+
+		List<T> results = new ArrayList<T>(n);
+		try {
+			for (Future<T> future : futures)
+				results.add(future.get());
+		} catch (InterruptedException | ExecutionException | RuntimeException e) {
+			// stop the rest of the tasks when the waiting thread is interrupted, a task fails or the tasks are cancelled
+			for (Future<T> future : futures)
+				future.cancel(true);
+			throw e;
+		}
+		return results;
+	}
+
+	/**
+	 * @return the pool to run tasks on, (re)created if it was shut down or the number of threads has changed
+	 */
+	private synchronized ForkJoinPool getPool() {
+		int parallelism = Math.max(1, getNumThreads());
+		if (pool == null || pool.isShutdown() || pool.getParallelism() != parallelism) {
+			if (pool != null)
+				pool.shutdown();
+			pool = new ForkJoinPool(parallelism);
+		}
+		return pool;
+	}
+
+	/**
+	 * Copies of a cfd for the tasks of a stage, as event drivers are not necessarily thread safe. A task borrows
+	 * a copy for the duration of one document, so there are at most as many copies as there are threads.
+	 */
+	private static class DriverCopies {
+
+		private final CumulativeFeatureDriver cfd;
+		private final ConcurrentLinkedQueue<CumulativeFeatureDriver> idle = new ConcurrentLinkedQueue<CumulativeFeatureDriver>();
+
+		DriverCopies(CumulativeFeatureDriver cfd) {
+			this.cfd = cfd;
+		}
+
+		CumulativeFeatureDriver borrow() {
+			CumulativeFeatureDriver copy = idle.poll();
+			if (copy != null)
+				return copy;
+			try {
+				return new CumulativeFeatureDriver(cfd);
+			} catch (Exception e) {
+				throw new IllegalStateException("Failed to copy the cumulative feature driver", e);
+			}
+		}
+
+		void release(CumulativeFeatureDriver copy) {
+			idle.offer(copy);
+		}
 	}
 
 	//////////////////////////////////////////// Setters/Getters
@@ -429,237 +811,19 @@ public class LocalParallelFeatureExtractionAPI extends FeatureExtractionAPI {
     }
 	
 	/**
-	 * For use when stopping analysis mid-way through it. Kills any processing threads
+	 * For use when stopping analysis mid-way through it. Cancels the tasks of the running stage, which then
+	 * throws a CancellationException. Documents that are already being processed are interrupted, but may
+	 * still run to completion in the background.<br>
+	 * The next stage runs on a new pool.
 	 */
-	@SuppressWarnings("deprecation")
 	public void killThreads() {
-		
-		//feature extraction threads
-		if (featThreads!=null){
-			for (int i=0; i<featThreads.length; i++){
-				featThreads[i].stop();
-			}
-			for (int i=0; i<featThreads.length; i++){
-				featThreads[i] = null;
-			}
-			featThreads=null;
-		}
-		
-		//training instances threads
-		if (trainThreads!=null){
-			for (int i=0; i<trainThreads.length; i++){
-				trainThreads[i].stop();
-			}
-			for (int i=0; i<trainThreads.length; i++){
-				trainThreads[i] = null;
-			}
-			trainThreads=null;
-		}
-		
-		//testing instances threads
-		if (testThreads!=null){
-			for (int i=0; i<testThreads.length; i++){
-				testThreads[i].stop();
-			}
-			for (int i=0; i<testThreads.length; i++){
-				testThreads[i] = null;
-			}
-			testThreads=null;
-		}
-	}
-
-	//////////////////////////////////////////// Thread Definitions
-	
-	/**
-	 * A thread used to parallelize the population of the TestingDataMap from a set of documents
-	 * @param d The "div" or divide--how many documents each thread processes at most
-	 * @param t The threadId. Keeps track of which thread is doing which div of documents
-	 * @param n the total number of instances (used to put a cap on the last div so it doesn't try to process docs which don't exist
-	 * @param cd A copy of the cfd to assess features with
-	 * @author Travis Dutko
-	 */
-	public class CreateTestDataMapThread extends Thread {
-		
-		int div; //the number of instances to be created per thread
-		int threadId; //the div this thread is dealing with
-		int numInstances; //the total number of instances to be created
-		CumulativeFeatureDriver cfd; //the cfd used to assess features
-		List<EventSet> relevantEvents;
-		List<String> features;
-		DataMap testingDataMap;
-		
-		//Constructor
-		public CreateTestDataMapThread(int d, int t, int n, CumulativeFeatureDriver cd,List<EventSet> relevantEvents, List<String> features, DataMap testingDataMap){
-			cfd=cd;
-			div = d;
-			threadId = t;
-			numInstances = n;
-			this.features = features;
-			this.testingDataMap = testingDataMap;
-			this.relevantEvents = relevantEvents;
-		}
-		
-		//Run method
-		@Override
-		public void run() {
-			//for all docs in this div
-			for (int i = div * threadId; i < Math.min(numInstances, div
-					* (threadId + 1)); i++)
-				try {
-					//grab the document
-					Document document = ps.getAllTestDocs().get(i);
-					//extract its event sets
-					List<EventSet> events = extractEventSets(document, cfd,loadingDocContents(),isCacheValid);
-					//cull the events/eventSets with respect to training events/sets
-					events = cullWithRespectToTraining(relevantEvents, events, cfd);
-					
-					//build the doc data
-	                String author = events.get(events.size()-1).eventAt(0).getEvent();
-	                if (!testingDataMap.getDataMap().containsKey(author))
-	                    testingDataMap.initAuthor(author);
-	                String title = events.get(events.size()-1).eventAt(1).getEvent();
-	                ConcurrentHashMap<Integer,FeatureData> docdata = createDocMap(features, relevantEvents, cfd, events);
-
-	                DocumentData doc = new DocumentData(getNormalizations(events.get(events.size()-1)), docdata);
-					//normalize it
-					normDocData(doc);
-					
-					//add it to datamap
-					testingDataMap.addDocumentData(author, title, doc);
-				} catch (Exception e) {
-				    LOG.error("Error creating Test Document data for "+
-				            ps.getAllTestDocs().get(i).getFilePath()+" author: "+ps.getAllTestDocs().get(i).getAuthor(),e);
-				}
-		}
-		
-	}
-	
-	/**
-	 * A thread used to parallelize the population of TrainingDataMap from a set of documents
-	 * @param d The "div" or divide--how many documents each thread processes at most
-	 * @param t The threadId. Keeps track of which thread is doing which div of documents
-	 * @param n the total number of instances (used to put a cap on the last div so it doesn't try to process docs which don't exist
-	 * @param cd A copy of the cfd to assess features with
-	 * @author Travis Dutko
-	 */
-	public class CreateTrainDataMapThread extends Thread {
-		
-		int div; //the number of instances to be created per thread
-		int threadId; //the div for this thread
-		int numdocs; //the total number of docs to be processed
-		CumulativeFeatureDriver cfd; //the cfd used to identify features/attributes
-		List<List<EventSet>> eventList;
-		List<EventSet> relevantEvents;
-		List<String> features;
-		DataMap trainingDataMap;
-		
-		//Constructor
-		public CreateTrainDataMapThread(int d, int t, int n,CumulativeFeatureDriver cd,List<List<EventSet>> eventList,List<EventSet> relevantEvents,List<String> features,DataMap trainingDataMap){
-			div = d;
-			threadId = t;
-			numdocs = n;
-			cfd=cd;
-			this.eventList = eventList;
-			this.relevantEvents = relevantEvents;
-			this.features = features;
-			this.trainingDataMap = trainingDataMap;
-		}
-		
-		//Run method
-		@Override
-		public void run() {
-			//for all docs in this div
-			for (int i = div * threadId; i < Math.min(numdocs, div
-					* (threadId + 1)); i++)
-				try {
-					//grab the document
-				    //Logger.logln("[THREAD-" + threadId + "] Processing document " + i);
-					String author = eventList.get(i).get(eventList.get(i).size()-1).eventAt(0).getEvent();
-				    String title = eventList.get(i).get(eventList.get(i).size()-1).eventAt(1).getEvent();
-				    ConcurrentHashMap<Integer,FeatureData> docdata = createDocMap(features, relevantEvents, cfd, eventList.get(i));
-					//normalize it
-				    DocumentData doc = new DocumentData(getNormalizations(eventList.get(i).get(eventList.get(i).size()-1)),docdata);
-					normDocData(doc);
-					//add it to this div's list of completed instances
-					trainingDataMap.addDocumentData(author, title, doc);
-					
-				} catch (Exception e) {
-				    LOG.error("[THREAD-" + threadId + "] Error creating datamap " + i + " for document "+ps.getAllTrainDocs().get(i).getFilePath(),e);
-				}
-		}
-		
-	}
-	
-	/*
-    * 2 : Sentences in document 
-    * 3 : Words in document 
-    * 4 : Characters in document 
-    * 5 : Letters in document
-    */
-	
-	/**
-	 * A utility method for the conversion to datamap threads. This needs to be genericized at some point in the future
-	 * @param es
-	 * @return
-	 */
-	private static Map<String,Integer> getNormalizations(EventSet es){
-	    Map<String,Integer> norms = new HashMap<String,Integer>();
-	    norms.put(NormBaselineEnum.SENTENCES_IN_DOC.getTitle(), Integer.parseInt(es.eventAt(2).getEvent()));
-	    norms.put(NormBaselineEnum.WORDS_IN_DOC.getTitle(), Integer.parseInt(es.eventAt(3).getEvent()));
-	    norms.put(NormBaselineEnum.CHARS_IN_DOC.getTitle(), Integer.parseInt(es.eventAt(2).getEvent()));
-	    norms.put(NormBaselineEnum.LETTERS_IN_DOC.getTitle(), Integer.parseInt(es.eventAt(3).getEvent()));
-	    return norms;
-	}
-	
-	/**
-	 * A thread used to extract features from documents in parallel. 
-	 * @param d the divide--how many documents each thread processes at most
-	 * @param threadId keeps track of which thread is doing which div of documents
-	 * @param knownDocs a list of documents to be divvied up and have its features extracted
-	 * @param cd A copy of the cfd to assess features with
-	 * @author Travis Dutko
-	 */
-	public class FeatureExtractionThread extends Thread {
-		
-		ArrayList<List<EventSet>> list = new ArrayList<List<EventSet>>(); //The list of event sets for this division of docs
-		int div; //the number of docs to be processed per thread
-		int threadId; //the div index of this thread
-		int knownDocsSize; //the number of docs total
-		List<Document> knownDocs; //the docs to be extracted
-		CumulativeFeatureDriver cfd; //the cfd to do the extracting with
-
-		//Constructor
-		public FeatureExtractionThread(int div, int threadId,
-				int knownDocsSize, List<Document> knownDocs,
-				CumulativeFeatureDriver cfd) {
-			
-			this.div = div;
-			this.threadId = threadId;
-			this.knownDocsSize = knownDocsSize;
-			this.knownDocs = knownDocs;
-			try {
-				this.cfd = new CumulativeFeatureDriver(cfd);
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-		}
-
-		//Runnable Method
-		@Override
-		public void run() {
-			//for all the documents in this div to a maximum of the number of docs
-			for (int i = div * threadId; i < Math.min(knownDocsSize, div
-					* (threadId + 1)); i++){
-				try {
-					//try to extract the events
-				    LOG.info("[THREAD-" + threadId + "] Extracting features from document " + i);
-					List<EventSet> extractedEvents = extractEventSets(ps.getAllTrainDocs().get(i),cfd,loadingDocContents(),isCacheValid);
-					list.add(extractedEvents); //and add them to the list of list of eventsets
-				} catch (Exception e) {
-				    LOG.error("[THREAD-" + threadId + "] Error extracting features for document " + i + " from "+ps.getAllTrainDocs().get(i).getFilePath(),e);
-				} 
-			}
+		ForkJoinPool running;
+		synchronized (this) {
+			running = pool;
+			pool = null;
 		}
+		if (running != null)
+			running.shutdownNow();
 	}
 
 
@@ -677,66 +841,85 @@ public class LocalParallelFeatureExtractionAPI extends FeatureExtractionAPI {
     }
     
     /**
-     * Determines if we can load cached features. Cullers are not taken into account, since the
+     * @return whether the cache keeps all documents in a single memory-mapped segment file
+     *      rather than one file per document
+     */
+    public boolean isUsingMappedCache() {
+        return preferences.getBoolPreference("useMappedCache");
+    }
+
+    public void setUseMappedCache(boolean useMappedCache) {
+        if (useMappedCache)
+            preferences.setPreference("useMappedCache", "1");
+        else
+            preferences.setPreference("useMappedCache", "0");
+    }
+    
+    public void setCacheByContent(boolean cacheByContent) {
+        if (cacheByContent)
+            preferences.setPreference("cacheByContent", "1");
+        else
+            preferences.setPreference("cacheByContent", "0");
+    }
+    
+    /**
+     * @return whether documents are cached under a hash of their content, so identical documents
+     *      share cached features regardless of their path, author or machine
+     */
+    @Override
+    public boolean isCachingByContent() {
+        return preferences.getBoolPreference("cacheByContent");
+    }
+    
+    public void setCacheDataMaps(boolean cacheDataMaps) {
+        if (cacheDataMaps)
+            preferences.setPreference("cacheDataMaps", "1");
+        else
+            preferences.setPreference("cacheDataMaps", "0");
+    }
+    
+    /**
+     * @return whether the finished training and testing DataMaps are cached, so experiments that only
+     *      change the classifier skip the extraction altogether, see {@link DataMapCache}
+     */
+    public boolean isCachingDataMaps() {
+        return preferences.getBoolPreference("cacheDataMaps");
+    }
+    
+    /**
+     * @return the number of calculation threads, so the event sets of that many feature drivers are culled at once
+     */
+    @Override
+    protected int getCullingThreads() {
+        return getNumThreads();
+    }
+    
+    @Override
+    protected FeatureCache getFeatureCache(CumulativeFeatureDriver cfd) {
+        if (featureCache == null)
+            featureCache = FeatureCache.forDriver(cfd, isUsingMappedCache());
+        return featureCache;
+    }
+    
+    /**
+     * Prepares the feature cache of the CFD. Cullers are not taken into account, since the
      * features are cached and cached features are loaded before cullers are applied.
      * 
-     * If the cache is not valid, it will clear it and make a new cfdHash file for the CFD, so
-     * any future cached features will be associated with the updated CFD.
-     * @return False if the CFD has been modified (besides cullers) since the cache was made.
-     *      True otherwise.
+     * Cached feature sets are validated per feature driver, against the hash of its event driver,
+     * parameters and canonicizers, when they are loaded. Modifying the CFD therefore no longer
+     * clears the cache: only the feature sets of new or changed feature drivers are extracted,
+     * and the rest are still loaded from the cache.
+     * @return True, as the cache is always usable.
      */
     public boolean validateCFDCache(CumulativeFeatureDriver cfd) {
-        long currentHash = cfd.longHash(EnumSet.of(FeatureSetElement.CANONICIZERS, FeatureSetElement.EVENT_DRIVERS, FeatureSetElement.NORMALIZATION));
-        File cacheDir = new File(JSANConstants.JSAN_CACHE + "_" + cfd.getName());
-        File cacheFile = new File(cacheDir, "cfdHash.txt");
-        BufferedReader reader = null;
-        try {
-            reader = new BufferedReader(new FileReader(cacheFile));
-        } catch (FileNotFoundException e) {
-            cacheDir.mkdirs();
-            BufferedWriter writer = null;
-            try {
-                writer = new BufferedWriter(new FileWriter(cacheFile));
-                writer.write(currentHash + "\n");
-                writer.close();
-            } catch (IOException e2) {
-                e2.printStackTrace();
-            }
-            setCacheValid(false);
-            return false;
-        }
-        long cachedHash = 0;
-        try {
-            cachedHash = Long.parseLong(reader.readLine());
-            reader.close();
-        } catch (NumberFormatException | IOException e) {
-            e.printStackTrace();
-            setCacheValid(false);
-            return false;
-        }
-        if (cachedHash == currentHash) {
-            setCacheValid(true);
-            return true;
-        } else {
-            // Delete the cache and create a new one.
-            // It is necessary to delete the entire cache (instead of just letting the cache
-            // files be overwritten), because there may be some cache files not being used in this
-            // case, and if some are not overwritten, but the CFD hash is updated, an invalid
-            // cache could be used at some point thereafter.
-            
-            deleteRecursive(cacheDir);
-            cacheDir.mkdirs();
-            BufferedWriter writer = null;
-            try {
-                writer = new BufferedWriter(new FileWriter(cacheFile));
-                writer.write(currentHash + "\n");
-                writer.close();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            setCacheValid(false);
-            return false;
-        }
+        driverHashes = FeatureCache.driverHashes(cfd);
+        featureCache = null;
+        File cacheDir = FeatureCache.cacheDirFor(cfd);
+        cacheDir.mkdirs();
+        // left over from when the whole cache was validated against a single hash of the CFD
+        new File(cacheDir, "cfdHash.txt").delete();
+        setCacheValid(true);
+        return true;
     }
     
     // Set whether or not the CFD cache is valid
@@ -0,0 +1,338 @@
+package edu.drexel.psal.jstylo.featureProcessing;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.jgaap.generics.Document;
+
+/**
+ * A feature cache keeping the records of every document of a cumulative feature driver in one append-only segment
+ * file, _&lt;cfd&gt;/features.segment under the cache directory. Meant for large corpora, where opening one small
+ * file per document dominates warm runs.<br>
+ *
+ * The segment starts with a magic number and version, followed by entries of
+ * [key length][key][record length][record], where the key is the document's storage key (see
+ * {@link FeatureCache#keyFor}) and the record is a regular feature cache record. A later entry for a key supersedes
+ * the earlier ones. The offset index (key -&gt; record position) is built by scanning the entry headers when the
+ * segment is opened; an incomplete entry at the end of the file, left by an interrupted write, is truncated away.<br>
+ *
+ * Superseded entries are not reclaimed while the segment is open. When a segment is opened and more than half of its
+ * entries by size are superseded, it is compacted first: the live entries are copied into a new segment, which then
+ * replaces the old one. A segment therefore stays within about twice the size of its live records across runs.<br>
+ *
+ * Records are read through read-only memory mappings of the segment, so any number of threads can read concurrently
+ * without copying the records onto the heap. At most {@link #MAX_WINDOWS} mappings are kept; a dropped mapping is
+ * unmapped once the readers still using it are done with it. Appends are serialized. A segment must only be used by a
+ * single process, and must be closed with {@link #close(File)} before its directory is deleted.
+ */
+public class MappedFeatureCache extends FeatureCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedFeatureCache.class);
+
+    private static final String SEGMENT_NAME = "features.segment";
+    private static final int SEGMENT_MAGIC = 0x4A534653; // "JSFS"
+    private static final int SEGMENT_VERSION = 1;
+    private static final int SEGMENT_HEADER_SIZE = 8;
+
+    /**
+     * The maximum size of a single mapping of the segment
+     */
+    private static final long MAX_WINDOW_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * The maximum number of mappings kept per segment
+     */
+    private static final int MAX_WINDOWS = 8;
+
+    /**
+     * The open segments, by canonical path, so that all of the extraction threads share one index and one channel
+     */
+    private static final Map<String,MappedFeatureCache> openSegments = new ConcurrentHashMap<String,MappedFeatureCache>();
+
+    private final File segmentFile;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+
+    /**
+     * key -> {record offset, record length}
+     */
+    private final Map<String,long[]> index = new ConcurrentHashMap<String,long[]>();
+
+    /**
+     * Read-only mappings of the segment, by their start offset. Guarded by itself.
+     */
+    private final TreeMap<Long,MappedByteBuffer> windows = new TreeMap<Long,MappedByteBuffer>();
+
+    /**
+     * Where the next entry is appended. Guarded by the write lock (this).
+     */
+    private long end;
+
+    /**
+     * Returns the segment of the given cache directory, opening (or creating) it if it is not open yet.
+     * @param cacheDir the cache directory of a cumulative feature driver
+     * @return the segment's cache, or a per-document {@link FileFeatureCache} if the segment cannot be opened
+     */
+    public static FeatureCache open(File cacheDir) {
+        File segmentFile = new File(cacheDir, SEGMENT_NAME);
+        try {
+            String key = segmentFile.getCanonicalPath();
+            synchronized (openSegments) {
+                MappedFeatureCache cache = openSegments.get(key);
+                // the cache directory may have been deleted from under an open segment
+                if (cache != null && !segmentFile.exists()) {
+                    cache.release();
+                    cache = null;
+                }
+                if (cache == null) {
+                    cache = new MappedFeatureCache(segmentFile);
+                    openSegments.put(key, cache);
+                }
+                return cache;
+            }
+        } catch (IOException e) {
+            LOG.error("Failed to open feature cache segment " + segmentFile.getPath() + ", using per-document cache files", e);
+            return new FileFeatureCache(cacheDir);
+        }
+    }
+
+    /**
+     * Closes the open segments in the given directory or any directory below it. Called by
+     * {@link FeatureExtractionAPI#deleteRecursive} before it deletes anything under the cache directory.
+     * @param dir a cache directory, or a directory holding cache directories
+     */
+    public static void close(File dir) {
+        try {
+            String prefix = dir.getCanonicalPath() + File.separator;
+            synchronized (openSegments) {
+                Iterator<Map.Entry<String,MappedFeatureCache>> segments = openSegments.entrySet().iterator();
+                while (segments.hasNext()) {
+                    Map.Entry<String,MappedFeatureCache> segment = segments.next();
+                    if (segment.getKey().startsWith(prefix)) {
+                        segments.remove();
+                        segment.getValue().release();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to close feature cache segments in " + dir.getPath(), e);
+        }
+    }
+
+    private MappedFeatureCache(File segmentFile) throws IOException {
+        this.segmentFile = segmentFile;
+        segmentFile.getParentFile().mkdirs();
+        compactIfSparse(segmentFile);
+        raf = new RandomAccessFile(segmentFile, "rw");
+        channel = raf.getChannel();
+        try {
+            if (channel.size() < SEGMENT_HEADER_SIZE || !readHeader(channel)) {
+                // new, or of an older format; start over
+                channel.truncate(0);
+                ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+                header.putInt(SEGMENT_MAGIC).putInt(SEGMENT_VERSION).flip();
+                channel.write(header, 0);
+                end = SEGMENT_HEADER_SIZE;
+            } else {
+                end = buildIndex(channel, index);
+                if (end < channel.size()) {
+                    LOG.warn("Truncating incomplete entry at the end of feature cache segment " + segmentFile.getPath());
+                    channel.truncate(end);
+                }
+            }
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private static boolean readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        return header.getInt() == SEGMENT_MAGIC && header.getInt() == SEGMENT_VERSION;
+    }
+
+    /**
+     * Scans the entry headers of a segment, skipping the records themselves, and indexes them.
+     * @param channel the segment
+     * @param index the index to fill, key -&gt; {record offset, record length}
+     * @return the offset right after the last complete entry
+     */
+    private static long buildIndex(FileChannel channel, Map<String,long[]> index) throws IOException {
+        long size = channel.size();
+        long offset = SEGMENT_HEADER_SIZE;
+        ByteBuffer length = ByteBuffer.allocate(4);
+        while (offset + 4 <= size) {
+            length.clear();
+            channel.read(length, offset);
+            length.flip();
+            int keyLength = length.getInt();
+            if (keyLength < 0 || offset + 4 + keyLength + 4 > size)
+                break;
+
+            ByteBuffer keyBytes = ByteBuffer.allocate(keyLength);
+            channel.read(keyBytes, offset + 4);
+            length.clear();
+            channel.read(length, offset + 4 + keyLength);
+            length.flip();
+            int recordLength = length.getInt();
+            long recordOffset = offset + 4 + keyLength + 4;
+            if (recordLength < 0 || recordOffset + recordLength > size)
+                break;
+
+            index.put(new String(keyBytes.array(), StandardCharsets.UTF_8), new long[]{recordOffset, recordLength});
+            offset = recordOffset + recordLength;
+        }
+        return offset;
+    }
+
+    /**
+     * Replaces the given segment by a copy of its live entries, if more than half of it is taken by superseded entries.
+     * Must be called before the segment is opened.
+     */
+    private static void compactIfSparse(File segmentFile) throws IOException {
+        if (!segmentFile.isFile())
+            return;
+
+        File tmp = null;
+        try {
+            try (RandomAccessFile in = new RandomAccessFile(segmentFile, "r")) {
+                FileChannel source = in.getChannel();
+                if (source.size() < SEGMENT_HEADER_SIZE || !readHeader(source))
+                    return;
+                Map<String,long[]> live = new LinkedHashMap<String,long[]>();
+                long size = buildIndex(source, live) - SEGMENT_HEADER_SIZE;
+                long liveSize = 0;
+                for (Map.Entry<String,long[]> entry : live.entrySet())
+                    liveSize += 4 + entry.getKey().getBytes(StandardCharsets.UTF_8).length + 4 + entry.getValue()[1];
+                if (size - liveSize <= size / 2)
+                    return;
+
+                LOG.info("Compacting feature cache segment " + segmentFile.getPath() + " from " + size + " to " + liveSize + " bytes");
+                tmp = File.createTempFile(SEGMENT_NAME, ".tmp", segmentFile.getParentFile());
+                try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+                    FileChannel target = out.getChannel();
+                    ByteBuffer header = ByteBuffer.allocate(SEGMENT_HEADER_SIZE);
+                    header.putInt(SEGMENT_MAGIC).putInt(SEGMENT_VERSION).flip();
+                    while (header.hasRemaining())
+                        target.write(header);
+                    for (Map.Entry<String,long[]> entry : live.entrySet()) {
+                        byte[] keyBytes = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                        long recordOffset = entry.getValue()[0];
+                        long recordLength = entry.getValue()[1];
+                        ByteBuffer entryHeader = ByteBuffer.allocate(4 + keyBytes.length + 4);
+                        entryHeader.putInt(keyBytes.length).put(keyBytes).putInt((int) recordLength).flip();
+                        while (entryHeader.hasRemaining())
+                            target.write(entryHeader);
+                        long copied = 0;
+                        while (copied < recordLength)
+                            copied += source.transferTo(recordOffset + copied, recordLength - copied, target);
+                    }
+                }
+            }
+            try {
+                Files.move(tmp.toPath(), segmentFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), segmentFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            if (tmp != null)
+                tmp.delete();
+        }
+    }
+
+    @Override
+    public Record read(Document document, Key key) {
+        long[] entry = index.get(key.storageKey);
+        if (entry == null)
+            return null;
+        try {
+            return decode(slice(entry[0], (int) entry[1]), key);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Unable to read cached features of " + document.getTitle() + " from " + segmentFile.getPath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * @return a buffer over the given region of the segment, positioned at its start
+     */
+    private ByteBuffer slice(long offset, int length) throws IOException {
+        MappedByteBuffer window = null;
+        long windowStart = 0;
+        synchronized (windows) {
+            Map.Entry<Long,MappedByteBuffer> floor = windows.floorEntry(offset);
+            if (floor != null && offset + length <= floor.getKey() + floor.getValue().capacity()) {
+                windowStart = floor.getKey();
+                window = floor.getValue();
+            } else {
+                // map from the requested record to the current end of the segment, so later records share the window
+                long size = Math.max(length, Math.min(MAX_WINDOW_SIZE, channel.size() - offset));
+                window = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+                windowStart = offset;
+                // drop the mappings the new one covers, and the lowest ones beyond the limit
+                Iterator<Map.Entry<Long,MappedByteBuffer>> covered = windows.tailMap(offset, true).entrySet().iterator();
+                while (covered.hasNext()) {
+                    Map.Entry<Long,MappedByteBuffer> other = covered.next();
+                    if (other.getKey() + other.getValue().capacity() <= offset + size)
+                        covered.remove();
+                }
+                while (windows.size() >= MAX_WINDOWS)
+                    windows.pollFirstEntry();
+                windows.put(offset, window);
+            }
+        }
+        // each reader gets its own position and limit over the shared mapping
+        ByteBuffer buffer = window.duplicate();
+        buffer.position((int) (offset - windowStart));
+        buffer.limit((int) (offset - windowStart) + length);
+        return buffer.slice();
+    }
+
+    @Override
+    public void write(Key key, Record record) throws IOException {
+        byte[] keyBytes = key.storageKey.getBytes(StandardCharsets.UTF_8);
+        byte[] recordBytes = encode(key, record);
+
+        ByteBuffer entry = ByteBuffer.allocate(4 + keyBytes.length + 4 + recordBytes.length);
+        entry.putInt(keyBytes.length).put(keyBytes).putInt(recordBytes.length).put(recordBytes).flip();
+
+        synchronized (this) {
+            long offset = end;
+            while (entry.hasRemaining())
+                offset += channel.write(entry, offset);
+            long recordOffset = end + 4 + keyBytes.length + 4;
+            end = offset;
+            // only index the entry once it is completely written
+            index.put(key.storageKey, new long[]{recordOffset, recordBytes.length});
+        }
+    }
+
+    private void release() {
+        synchronized (windows) {
+            windows.clear();
+        }
+        try {
+            raf.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close feature cache segment " + segmentFile.getPath(), e);
+        }
+    }
+}
@@ -706,6 +706,62 @@ public class ProblemSet implements Serializable {
 		return allTestDocs;
 	}
 	
+	/**
+	 * Returns a read-only, random-access snapshot of all training documents, in the same order as
+	 * {@link #getAllTrainDocs()}.<br>
+	 * Unlike getAllTrainDocs, no document text is copied: documents that can be shared are returned as-is and
+	 * file-backed documents are returned as unloaded shells. Meant to be captured once per extraction run and
+	 * indexed by the worker threads.
+	 * @return
+	 * 		An unmodifiable list of the training documents.
+	 */
+	public List<Document> getTrainDocsSnapshot() {
+		return docsSnapshot(trainDocsMap);
+	}
+
+	/**
+	 * Returns a read-only, random-access snapshot of all test documents, in the same order as
+	 * {@link #getAllTestDocs()}. See {@link #getTrainDocsSnapshot()}.
+	 * @return
+	 * 		An unmodifiable list of the test documents.
+	 */
+	public List<Document> getTestDocsSnapshot() {
+		return docsSnapshot(testDocsMap);
+	}
+
+	/**
+	 * Builds the snapshot for the given document map. The author of every returned document is its map key.
+	 */
+	private List<Document> docsSnapshot(SortedMap<String,List<Document>> docsMap) {
+		int size = 0;
+		for (List<Document> docs : docsMap.values())
+			size += docs.size();
+		List<Document> snapshot = new ArrayList<Document>(size);
+		for (String key: docsMap.keySet()){
+			for (Document d: docsMap.get(key)){
+				try {
+					if (d instanceof StringDocument){
+						// string documents are never modified during extraction and load() is a no-op
+						snapshot.add(d);
+					} else if (!loadDocContents){
+						// an unloaded shell; the extractor loads it from disk itself
+						snapshot.add(new Document(d.getFilePath(),key,d.getTitle()));
+					} else if (key.equals(d.getAuthor())){
+						// already loaded and attributed correctly, so it is only ever read
+						snapshot.add(d);
+					} else {
+						Document sd = new Document(d.getFilePath(),key,d.getTitle());
+						sd.readStringText(String.copyValueOf(d.getProcessedText()));
+						snapshot.add(sd);
+					}
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return Collections.unmodifiableList(snapshot);
+	}
+
 	/**
 	 * @return whether or not we're loading the contents of the document
 	 */
@@ -7,9 +7,13 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
@@ -50,6 +54,11 @@ public class DataMap {
      */
     private Map<Integer,String> features;
     
+    /**
+     * The metadata of every column, shared with the compact DocumentData of the datamap. Null if unknown.
+     */
+    private FeatureColumns columns;
+    
     /**
      * Name of the data set
      */
@@ -61,6 +70,16 @@ public class DataMap {
         datamap = new ConcurrentHashMap<String,ConcurrentHashMap<String,DocumentData>>();
     }
     
+    /**
+     * @param name name of the data set
+     * @param featureNames the feature names, in column order
+     * @param columns the metadata of the columns, shared with the compact DocumentData that will be added
+     */
+    public DataMap(String name, List<String> featureNames, FeatureColumns columns){
+        this(name,featureNames);
+        this.columns = columns;
+    }
+    
     /**
      * Add a potential author to the datamap
      * @param author
@@ -96,6 +115,20 @@ public class DataMap {
         return features;
     }
 
+    /**
+     * @return the name of the dataset
+     */
+    public String getDatasetName() {
+        return datasetName;
+    }
+
+    /**
+     * @return the metadata of every column, or null if unknown
+     */
+    public FeatureColumns getColumns() {
+        return columns;
+    }
+    
     /**
      * Sets the feature map - replacing it if it is already present
      * @param featureList
@@ -121,7 +154,7 @@ public class DataMap {
     public void removeFeatures(Integer[] indicesToRemove){
         //empty feature list
         List<String> newFeatures = new ArrayList<String>();
-        List<Integer> match = new ArrayList<Integer>();
+        Set<Integer> match = new HashSet<Integer>();
         for (Integer inte : indicesToRemove)
             match.add(inte);
         for (Integer i = 0; i < features.size(); i++){
@@ -129,36 +162,31 @@ public class DataMap {
                 newFeatures.add(features.get(i));
             } 
         }
+        //the new index of every column, or -1 if it is removed
+        int[] newIndices = new int[features.size()];
+        int numRemaining = 0;
+        for (int i = 0; i < newIndices.length; i++)
+            newIndices[i] = match.contains(i) ? -1 : numRemaining++;
         setFeatures(newFeatures);
 
-        for (int i = 0; i < indicesToRemove.length; i++){
+        //the column tables after the removal; the documents normally share the table of the datamap
+        Map<FeatureColumns,FeatureColumns> remapped = new IdentityHashMap<FeatureColumns,FeatureColumns>();
+        if (columns != null){
+            FeatureColumns newColumns = columns.remap(newIndices, numRemaining);
+            remapped.put(columns, newColumns);
+            columns = newColumns;
+        }
 
-            Integer indexToRemove = indicesToRemove[i];
-            
-            for (String author : datamap.keySet()){ //for all authors
-                for (String document: datamap.get(author).keySet()){ //for all of their documents
-                    ConcurrentHashMap<Integer,FeatureData> docData = datamap.get(author).get(document).getDataValues();
-                    //remove the index/feature if it is present
-                    if (docData.containsKey(indexToRemove)){
-                        docData.remove(indexToRemove);
-                    }
-                    //regardless, bump down the index of ALL other features
-                    ConcurrentHashMap<Integer,FeatureData> newDocData = new ConcurrentHashMap<Integer,FeatureData>();
-                    for (Integer key : docData.keySet()){
-                        if (key < indexToRemove){ //if the index is under i, add as normal
-                            newDocData.put(key, docData.get(key));
-                        } else if (key > indexToRemove){ // if the index is over i, add it with a - 1
-                            newDocData.put(key-1, docData.get(key));
-                        }
-                    }
-                    datamap.get(author).get(document).replaceFeatureValues(newDocData);
-                }
-            }
-                
-            //adjust all future indices to remove to account for 
-            for (int j = i+1; j < indicesToRemove.length; j++){
-                if (indicesToRemove[i] <= indicesToRemove[j])
-                    indicesToRemove[j] = indicesToRemove[j]-1;
+        //move every document's data in a single pass. A document may be added more than once, so only move it once
+        Set<DocumentData> moved = Collections.newSetFromMap(new IdentityHashMap<DocumentData,Boolean>());
+        for (String author : datamap.keySet()){ //for all authors
+            for (DocumentData docData : datamap.get(author).values()){ //for all of their documents
+                if (!moved.add(docData))
+                    continue;
+                FeatureColumns oldColumns = docData.getFeatureColumns();
+                if (oldColumns != null && !remapped.containsKey(oldColumns))
+                    remapped.put(oldColumns, oldColumns.remap(newIndices, numRemaining));
+                docData.remapColumns(newIndices, oldColumns == null ? null : remapped.get(oldColumns));
             }
         }
     }
@@ -211,11 +239,16 @@ public class DataMap {
             for (String author: datamap.keySet()){
                 for (String document : datamap.get(author).keySet()){
                     nextline =author+","+document+",";
-                    ConcurrentHashMap<Integer,FeatureData> docdata = datamap.get(author).get(document).getDataValues();
+                    DocumentData docdata = datamap.get(author).get(document);
+                    int[] indices = docdata.getIndices();
+                    int[] counts = docdata.getCounts();
+                    double[] values = docdata.getValues();
+                    int next = 0; //the next non-zero column of the document
                     for (int i = 0; i <features.size(); i++){
-                        if (docdata.containsKey(i))
-                            nextline+=docdata.get(i).getValue()+":"+docdata.get(i).getCount()+",";
-                        else
+                        if (next < indices.length && indices[next] == i){
+                            nextline+=values[next]+":"+counts[next]+",";
+                            next++;
+                        } else
                             nextline+="0,";
                     }
                     
@@ -265,6 +298,25 @@ public class DataMap {
         return titleToAuthor;
     }
     
+    /**
+     * Writes the datamap to a sparse binary file, see {@link DataMapFile}
+     * @param path location to write the file
+     * @throws IOException if the file could not be written
+     */
+    public void saveDataMapToFile(String path) throws IOException {
+        DataMapFile.write(this, new File(path));
+    }
+
+    /**
+     * Loads a DataMap from a binary file written by {@link #saveDataMapToFile(String)}
+     * @param path path to the file
+     * @return the loaded datamap
+     * @throws IOException if the file could not be read or is not a DataMap file of the current version
+     */
+    public static DataMap loadDataMapFromFile(String path) throws IOException {
+        return DataMapFile.read(new File(path));
+    }
+
     /**
      * Loads a DataMap from a CSV file. Note that the CSV file must be dense.
      * The first row should consist solely of the datamap name
@@ -0,0 +1,381 @@
+package edu.drexel.psal.jstylo.generics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.drexel.psal.jstylo.featureProcessing.NormBaselineEnum;
+
+/**
+ * A binary, versioned and sparse file format for {@link DataMap}s.<br>
+ *
+ * A file holds, in order: a header, the feature names, the metadata of every column, the normalization types, the
+ * authors, every document's author, title and normalization values, and finally the non-zero cells of all documents in
+ * compressed sparse row form: the offset of every document's first cell, followed by the column indices, the counts
+ * and the values of all of the cells. Only the non-zero cells are written, so the size of a file grows with the number
+ * of non-zero cells rather than with the number of documents times the number of features.<br>
+ *
+ * Files are written through a buffered FileChannel and replace the previous file atomically, so other processes can
+ * keep loading a file while it is rewritten. They are loaded by memory mapping the file and copying the arrays of every
+ * document out in bulk; the loaded documents are compact {@link DocumentData}.
+ */
+public class DataMapFile {
+
+    private static final int MAGIC = 0x4A53444D; // "JSDM"
+
+    /**
+     * The version of the file format. Files of other versions are not loaded.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The normalization value of a normalization type the document does not have
+     */
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private DataMapFile() {}
+
+    /**
+     * Writes the datamap to the given file, replacing it if it exists.
+     * @param map the datamap to write
+     * @param file the file to write to
+     * @throws IOException if the file could not be written
+     */
+    public static void write(DataMap map, File file) throws IOException {
+        Map<Integer,String> features = map.getFeatures();
+        int numFeatures = features.size();
+        FeatureColumns columns = map.getColumns() != null ? map.getColumns() : columnsOf(map);
+
+        // the documents in the order they are written, and the normalization types of all of them
+        List<String> authors = new ArrayList<String>(map.getDataMap().keySet());
+        List<Integer> docAuthors = new ArrayList<Integer>();
+        List<String> docTitles = new ArrayList<String>();
+        List<DocumentData> docs = new ArrayList<DocumentData>();
+        List<String> normTypes = new ArrayList<String>();
+        Map<String,Integer> normIndices = new HashMap<String,Integer>();
+        for (int a = 0; a < authors.size(); a++) {
+            for (Map.Entry<String,DocumentData> doc : map.getDataMap().get(authors.get(a)).entrySet()) {
+                docAuthors.add(a);
+                docTitles.add(doc.getKey());
+                docs.add(doc.getValue());
+                for (String type : doc.getValue().getNormalizationValues().keySet()) {
+                    if (!normIndices.containsKey(type)) {
+                        normIndices.put(type, normTypes.size());
+                        normTypes.add(type);
+                    }
+                }
+            }
+        }
+
+        // the cells of every document; compact documents hand out their arrays without copying
+        int numDocs = docs.size();
+        int[][] indices = new int[numDocs][];
+        int[][] counts = new int[numDocs][];
+        double[][] values = new double[numDocs][];
+        for (int d = 0; d < numDocs; d++) {
+            indices[d] = docs.get(d).getIndices();
+            counts[d] = docs.get(d).getCounts();
+            values[d] = docs.get(d).getValues();
+        }
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists())
+            dir.mkdirs();
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Output out = new Output(channel);
+                out.putInt(MAGIC);
+                out.putInt(VERSION);
+                out.putString(map.getDatasetName());
+
+                out.putInt(numFeatures);
+                for (int i = 0; i < numFeatures; i++)
+                    out.putString(features.get(i));
+
+                // the column metadata, as references into a table of the few distinct strings
+                List<String> strings = new ArrayList<String>();
+                Map<String,Integer> stringIndices = new HashMap<String,Integer>();
+                int[] refs = new int[2 * columns.size()];
+                for (int i = 0; i < columns.size(); i++) {
+                    refs[2 * i] = stringIndex(columns.getName(i), strings, stringIndices);
+                    refs[2 * i + 1] = stringIndex(columns.getNormalizationType(i), strings, stringIndices);
+                }
+                out.putInt(strings.size());
+                for (String s : strings)
+                    out.putString(s);
+                out.putInt(columns.size());
+                out.putInts(refs);
+
+                out.putInt(normTypes.size());
+                for (String type : normTypes)
+                    out.putString(type);
+
+                out.putInt(authors.size());
+                for (String author : authors)
+                    out.putString(author);
+
+                out.putInt(numDocs);
+                for (int d = 0; d < numDocs; d++) {
+                    out.putInt(docAuthors.get(d));
+                    out.putString(docTitles.get(d));
+                    Map<String,Integer> norms = docs.get(d).getNormalizationValues();
+                    for (String type : normTypes) {
+                        Integer value = norms.get(type);
+                        out.putInt(value == null ? MISSING : value);
+                    }
+                }
+
+                // compressed sparse rows
+                long offset = 0;
+                out.putLong(offset);
+                for (int d = 0; d < numDocs; d++) {
+                    offset += indices[d].length;
+                    out.putLong(offset);
+                }
+                for (int d = 0; d < numDocs; d++)
+                    out.putInts(indices[d]);
+                for (int d = 0; d < numDocs; d++)
+                    out.putInts(counts[d]);
+                for (int d = 0; d < numDocs; d++)
+                    out.putDoubles(values[d]);
+                out.flush();
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Loads a datamap from the given file.
+     * @param file a file written by {@link #write(DataMap, File)}
+     * @return the loaded datamap, with compact document data
+     * @throws IOException if the file could not be read, is of another version or is corrupt
+     */
+    public static DataMap read(File file) throws IOException {
+        MappedByteBuffer in;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("DataMap file " + file.getPath() + " is too large to map");
+            in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if (in.getInt() != MAGIC)
+                throw new IOException(file.getPath() + " is not a DataMap file");
+            int version = in.getInt();
+            if (version != VERSION)
+                throw new IOException("DataMap file " + file.getPath() + " is of version " + version + ", expected " + VERSION);
+            String name = readString(in);
+
+            int numFeatures = in.getInt();
+            List<String> features = new ArrayList<String>(numFeatures);
+            for (int i = 0; i < numFeatures; i++)
+                features.add(readString(in));
+
+            String[] strings = new String[in.getInt()];
+            for (int i = 0; i < strings.length; i++)
+                strings[i] = readString(in);
+            int numColumns = in.getInt();
+            String[] names = new String[numColumns];
+            String[] types = new String[numColumns];
+            for (int i = 0; i < numColumns; i++) {
+                names[i] = strings[in.getInt()];
+                types[i] = strings[in.getInt()];
+            }
+            FeatureColumns columns = new FeatureColumns(names, types);
+
+            String[] normTypes = new String[in.getInt()];
+            for (int i = 0; i < normTypes.length; i++)
+                normTypes[i] = readString(in);
+
+            DataMap map = new DataMap(name, features, columns);
+            String[] authors = new String[in.getInt()];
+            for (int a = 0; a < authors.length; a++) {
+                authors[a] = readString(in);
+                map.initAuthor(authors[a]);
+            }
+
+            int numDocs = in.getInt();
+            int[] docAuthors = new int[numDocs];
+            String[] docTitles = new String[numDocs];
+            List<Map<String,Integer>> docNorms = new ArrayList<Map<String,Integer>>(numDocs);
+            for (int d = 0; d < numDocs; d++) {
+                docAuthors[d] = in.getInt();
+                docTitles[d] = readString(in);
+                Map<String,Integer> norms = new HashMap<String,Integer>(normTypes.length * 2);
+                for (String type : normTypes) {
+                    int value = in.getInt();
+                    if (value != MISSING)
+                        norms.put(type, value);
+                }
+                docNorms.add(norms);
+            }
+
+            long[] offsets = new long[numDocs + 1];
+            for (int d = 0; d <= numDocs; d++)
+                offsets[d] = in.getLong();
+            int numCells = (int) offsets[numDocs];
+
+            // views of the three arrays of cells, read in bulk
+            int start = in.position();
+            IntBuffer indices = view(in, start).asIntBuffer();
+            IntBuffer counts = view(in, start + 4 * numCells).asIntBuffer();
+            DoubleBuffer values = view(in, start + 8 * numCells).asDoubleBuffer();
+            if (values.remaining() < numCells)
+                throw new BufferUnderflowException();
+
+            for (int d = 0; d < numDocs; d++) {
+                int length = (int) (offsets[d + 1] - offsets[d]);
+                int[] docIndices = new int[length];
+                int[] docCounts = new int[length];
+                double[] docValues = new double[length];
+                indices.get(docIndices);
+                counts.get(docCounts);
+                values.get(docValues);
+                map.addDocumentData(authors[docAuthors[d]], docTitles[d],
+                        new DocumentData(docNorms.get(d), columns, docIndices, docCounts, docValues));
+            }
+            return map;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException("DataMap file " + file.getPath() + " is corrupt", e);
+        }
+    }
+
+    /**
+     * Builds the column metadata of a datamap that has none from the feature data of its documents. Columns that no
+     * document has are taken to be unnormalized.
+     */
+    private static FeatureColumns columnsOf(DataMap map) {
+        int numFeatures = map.getFeatures().size();
+        String[] names = new String[numFeatures];
+        String[] types = new String[numFeatures];
+        for (Map<String,DocumentData> docs : map.getDataMap().values()) {
+            for (DocumentData doc : docs.values()) {
+                for (Map.Entry<Integer,FeatureData> cell : doc.getDataValues().entrySet()) {
+                    int index = cell.getKey();
+                    if (index < numFeatures && names[index] == null) {
+                        names[index] = cell.getValue().getName();
+                        types[index] = cell.getValue().getNormalizationType();
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < numFeatures; i++) {
+            if (names[i] == null)
+                names[i] = map.getFeatures().get(i);
+            if (types[i] == null)
+                types[i] = NormBaselineEnum.NONE.getTitle();
+        }
+        return new FeatureColumns(names, types);
+    }
+
+    private static int stringIndex(String s, List<String> strings, Map<String,Integer> stringIndices) {
+        Integer index = stringIndices.get(s);
+        if (index == null) {
+            index = strings.size();
+            stringIndices.put(s, index);
+            strings.add(s);
+        }
+        return index;
+    }
+
+    private static ByteBuffer view(ByteBuffer in, int position) {
+        ByteBuffer view = in.duplicate();
+        view.position(position);
+        return view.slice();
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Buffers the writes to a channel.
+     */
+    private static class Output {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putString(String s) throws IOException {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            for (int i = 0; i < bytes.length; ) {
+                ensure(1);
+                int n = Math.min(bytes.length - i, buffer.remaining());
+                buffer.put(bytes, i, n);
+                i += n;
+            }
+        }
+
+        void putInts(int[] values) throws IOException {
+            for (int i = 0; i < values.length; ) {
+                ensure(4);
+                int n = Math.min(values.length - i, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(values, i, n);
+                buffer.position(buffer.position() + 4 * n);
+                i += n;
+            }
+        }
+
+        void putDoubles(double[] values) throws IOException {
+            for (int i = 0; i < values.length; ) {
+                ensure(8);
+                int n = Math.min(values.length - i, buffer.remaining() / 8);
+                buffer.asDoubleBuffer().put(values, i, n);
+                buffer.position(buffer.position() + 8 * n);
+                i += n;
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes)
+                flush();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+    }
+}
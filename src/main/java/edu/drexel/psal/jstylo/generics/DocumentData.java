@@ -1,36 +1,288 @@
 package edu.drexel.psal.jstylo.generics;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import edu.drexel.psal.jstylo.featureProcessing.NormBaselineEnum;
+
+/**
+ * The data extracted from a single document: its normalization values and the counts and values of its non-zero
+ * features.<br>
+ *
+ * The data is kept in one of two forms. Compact data, as created by the feature extraction, is a sorted array of the
+ * non-zero column indices with parallel arrays of their counts and values, while the name and normalization type of
+ * every column are kept once in a shared {@link FeatureColumns} table. Data created from a map of {@link FeatureData}
+ * keeps that map, and changes to the map show in the data.<br>
+ *
+ * {@link #getIndices()}, {@link #getCounts()} and {@link #getValues()} work on both forms, and do not copy compact data.
+ * For compact data, {@link #getDataValues()} returns a new map of views of the non-zero cells: setting the value of one
+ * of its FeatureData sets the value in the document, but adding entries to or removing entries from the map does not.
+ */
 public class DocumentData {
 
     private Map<String,Integer> normalizationValues;
+
+    /**
+     * The map form of the data, null if the data is compact
+     */
     private ConcurrentHashMap<Integer,FeatureData> dataValues;
 
+    /**
+     * The compact form of the data: the sorted non-zero columns, their counts and their values
+     */
+    private int[] indices;
+    private int[] counts;
+    private double[] values;
+    private FeatureColumns columns;
+
     public DocumentData(Map<String,Integer> norms, ConcurrentHashMap<Integer,FeatureData> data){
         normalizationValues = norms;
         dataValues = data;
     }
-    
+
+    /**
+     * Creates compact document data. The values are 0 until the data is normalized.
+     * @param norms the normalization values of the document
+     * @param columns the metadata of the columns
+     * @param indices the non-zero columns, sorted and distinct
+     * @param counts the count of each of the non-zero columns
+     */
+    public DocumentData(Map<String,Integer> norms, FeatureColumns columns, int[] indices, int[] counts){
+        this(norms, columns, indices, counts, new double[counts.length]);
+    }
+
+    /**
+     * Creates compact document data with already known values.
+     * @param norms the normalization values of the document
+     * @param columns the metadata of the columns
+     * @param indices the non-zero columns, sorted and distinct
+     * @param counts the count of each of the non-zero columns
+     * @param values the value of each of the non-zero columns
+     */
+    public DocumentData(Map<String,Integer> norms, FeatureColumns columns, int[] indices, int[] counts, double[] values){
+        if (indices.length != counts.length || indices.length != values.length)
+            throw new IllegalArgumentException("Expected a count and a value for each of the "+indices.length+" columns, got "
+                    +counts.length+" and "+values.length);
+        normalizationValues = norms;
+        this.columns = columns;
+        this.indices = indices;
+        this.counts = counts;
+        this.values = values;
+    }
+
     public Map<String,Integer> getNormalizationValues(){
         return normalizationValues;
     }
-    
+
+    /**
+     * @return the map of column index to feature data. For compact data this is a new map of views, see the class comment.
+     */
     public ConcurrentHashMap<Integer,FeatureData> getDataValues(){
-        return dataValues;
+        if (!isCompact())
+            return dataValues;
+        ConcurrentHashMap<Integer,FeatureData> views = new ConcurrentHashMap<Integer,FeatureData>(indices.length*2);
+        for (int i = 0; i < indices.length; i++)
+            views.put(indices[i], new CellView(this, i));
+        return views;
     }
-    
+
     public Integer getFeatureCountAtIndex(int i){
+        if (isCompact()){
+            int position = Arrays.binarySearch(indices, i);
+            return position < 0 ? -1 : counts[position];
+        }
         if (dataValues.containsKey(i)){
             return dataValues.get(i).getCount();
         } else {
             return -1;
         }
     }
-    
+
+    /**
+     * Replaces the data with the given map, after which the data is in map form.
+     */
     public void replaceFeatureValues(ConcurrentHashMap<Integer,FeatureData> newmap){
         dataValues = newmap;
+        indices = null;
+        counts = null;
+        values = null;
+        columns = null;
+    }
+
+    /**
+     * @return whether the data is in the compact form rather than backed by a map
+     */
+    public boolean isCompact(){
+        return dataValues == null;
+    }
+
+    /**
+     * @return the column metadata of compact data, or null if the data is in map form
+     */
+    public FeatureColumns getFeatureColumns(){
+        return columns;
+    }
+
+    /**
+     * @return the number of non-zero columns
+     */
+    public int size(){
+        return isCompact() ? indices.length : dataValues.size();
+    }
+
+    /**
+     * @return the non-zero columns in ascending order. The array of compact data is not copied and must not be changed.
+     */
+    public int[] getIndices(){
+        if (isCompact())
+            return indices;
+        List<Integer> keys = sortedKeys();
+        int[] result = new int[keys.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = keys.get(i);
+        return result;
+    }
+
+    /**
+     * @return the counts of the non-zero columns, in the order of {@link #getIndices()}. The array of compact data is not
+     *      copied and must not be changed.
+     */
+    public int[] getCounts(){
+        if (isCompact())
+            return counts;
+        List<Integer> keys = sortedKeys();
+        int[] result = new int[keys.size()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = dataValues.get(keys.get(i)).getCount();
+        return result;
+    }
+
+    /**
+     * @return the values of the non-zero columns, in the order of {@link #getIndices()}. The array of compact data is not
+     *      copied and must not be changed.
+     */
+    public double[] getValues(){
+        if (isCompact())
+            return values;
+        List<Integer> keys = sortedKeys();
+        double[] result = new double[keys.size()];
+        for (int i = 0; i < result.length; i++){
+            Double value = dataValues.get(keys.get(i)).getValue();
+            result[i] = value == null ? 0.0 : value;
+        }
+        return result;
+    }
+
+    /**
+     * Sets the value of every non-zero column to its count times the normalization value of its normalization type,
+     * or to its count if the column is not normalized.
+     */
+    public void normalize(){
+        String none = NormBaselineEnum.NONE.getTitle();
+        if (!isCompact()){
+            for (FeatureData fd : dataValues.values()){
+                if (!fd.getNormalizationType().equals(none))
+                    fd.setValue(0.0+fd.getCount()*normalizationValues.get(fd.getNormalizationType()));
+                else
+                    fd.setValue(0.0+fd.getCount());
+            }
+            return;
+        }
+
+        //neighboring columns mostly come from the same feature driver, so remember the last factor
+        String lastType = null;
+        int factor = 1;
+        for (int i = 0; i < indices.length; i++){
+            String type = columns.getNormalizationType(indices[i]);
+            if (!type.equals(lastType)){
+                factor = type.equals(none) ? 1 : normalizationValues.get(type);
+                lastType = type;
+            }
+            values[i] = 0.0+counts[i]*factor;
+        }
+    }
+
+    /**
+     * Moves the data to new column indices, dropping the columns that are removed. The new indices must keep the
+     * order of the remaining columns.
+     * @param newIndices the new index of every column, or -1 for a column that is removed
+     * @param newColumns the column metadata after the move, for compact data
+     */
+    public void remapColumns(int[] newIndices, FeatureColumns newColumns){
+        if (!isCompact()){
+            ConcurrentHashMap<Integer,FeatureData> newDocData = new ConcurrentHashMap<Integer,FeatureData>();
+            for (Map.Entry<Integer,FeatureData> entry : dataValues.entrySet()){
+                int index = entry.getKey();
+                if (index < newIndices.length && newIndices[index] != -1)
+                    newDocData.put(newIndices[index], entry.getValue());
+            }
+            replaceFeatureValues(newDocData);
+            return;
+        }
+
+        int kept = 0;
+        for (int i = 0; i < indices.length; i++){
+            int index = indices[i];
+            if (index < newIndices.length && newIndices[index] != -1){
+                indices[kept] = newIndices[index];
+                counts[kept] = counts[i];
+                values[kept] = values[i];
+                kept++;
+            }
+        }
+        indices = Arrays.copyOf(indices, kept);
+        counts = Arrays.copyOf(counts, kept);
+        values = Arrays.copyOf(values, kept);
+        columns = newColumns;
+    }
+
+    private List<Integer> sortedKeys(){
+        List<Integer> keys = new ArrayList<Integer>(dataValues.keySet());
+        Collections.sort(keys);
+        return keys;
+    }
+
+    /**
+     * A view of a single non-zero cell of compact data.
+     */
+    private static class CellView extends FeatureData {
+
+        private final DocumentData data;
+        private final int position;
+
+        CellView(DocumentData data, int position){
+            super(null, null, null);
+            this.data = data;
+            this.position = position;
+        }
+
+        @Override
+        public void setValue(Double value){
+            data.values[position] = value;
+        }
+
+        @Override
+        public String getName(){
+            return data.columns.getName(data.indices[position]);
+        }
+
+        @Override
+        public String getNormalizationType(){
+            return data.columns.getNormalizationType(data.indices[position]);
+        }
+
+        @Override
+        public Integer getCount(){
+            return data.counts[position];
+        }
+
+        @Override
+        public Double getValue(){
+            return data.values[position];
+        }
     }
-    
 }
@@ -0,0 +1,67 @@
+package edu.drexel.psal.jstylo.generics;
+
+/**
+ * The per-column metadata of a DataMap: the name of the feature driver that produced each column and the
+ * normalization type of that column.<br>
+ *
+ * The table is immutable and shared by the DataMap and all of its compact {@link DocumentData}, so the documents only
+ * store the indices, counts and values of their non-zero columns.
+ */
+public class FeatureColumns {
+
+    private final String[] names;
+    private final String[] normalizationTypes;
+
+    /**
+     * @param names the feature driver name of every column
+     * @param normalizationTypes the normalization type of every column
+     */
+    public FeatureColumns(String[] names, String[] normalizationTypes){
+        if (names.length != normalizationTypes.length)
+            throw new IllegalArgumentException("Expected a normalization type for each of the "+names.length+" columns, got "
+                    +normalizationTypes.length);
+        this.names = names;
+        this.normalizationTypes = normalizationTypes;
+    }
+
+    /**
+     * @param index a column index
+     * @return the name of the feature driver that produced the column
+     */
+    public String getName(int index){
+        return names[index];
+    }
+
+    /**
+     * @param index a column index
+     * @return the normalization type of the column
+     */
+    public String getNormalizationType(int index){
+        return normalizationTypes[index];
+    }
+
+    /**
+     * @return the number of columns
+     */
+    public int size(){
+        return names.length;
+    }
+
+    /**
+     * Creates the table of the columns that remain after removing some.
+     * @param newIndices the new index of every column, or -1 for a column that is removed
+     * @param numRemaining the number of remaining columns
+     * @return the table of the remaining columns
+     */
+    public FeatureColumns remap(int[] newIndices, int numRemaining){
+        String[] newNames = new String[numRemaining];
+        String[] newTypes = new String[numRemaining];
+        for (int i = 0; i < names.length && i < newIndices.length; i++){
+            if (newIndices[i] != -1){
+                newNames[newIndices[i]] = names[i];
+                newTypes[newIndices[i]] = normalizationTypes[i];
+            }
+        }
+        return new FeatureColumns(newNames,newTypes);
+    }
+}
@@ -1,5 +1,6 @@
 package edu.drexel.psal.jstylo.generics;
 
+import java.io.IOException;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -9,11 +10,13 @@ import com.jgaap.generics.EventSet;
 
 import edu.drexel.psal.jstylo.featureProcessing.Chunker;
 import edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.DataMapCache;
 import edu.drexel.psal.jstylo.featureProcessing.LocalParallelFeatureExtractionAPI;
 import edu.drexel.psal.jstylo.featureProcessing.ProblemSet;
 import edu.drexel.psal.jstylo.machineLearning.Analyzer;
 import edu.drexel.psal.jstylo.machineLearning.Verifier;
 import edu.drexel.psal.jstylo.machineLearning.weka.InfoGain;
+import edu.drexel.psal.jstylo.machineLearning.weka.WekaAnalyzer;
 import edu.drexel.psal.jstylo.verifiers.DistractorlessVerifier;
 
 /**
@@ -44,6 +47,8 @@ public class FullAPI {
 	 * numFolds = 10<br>
 	 * type = analysisType.CROSS_VALIDATION<br>
 	 * useDocTitles = false<br>
+	 * streaming = false<br>
+	 * cacheDataMaps = false<br>
 	 */
 	public static class Builder{
 		private String psXMLPath;
@@ -60,6 +65,8 @@ public class FullAPI {
 		private boolean chunkDocs = false;
 		private boolean applyInfoGain = false;
 		private int featuresToKeep = 500;
+		private boolean streaming = false;
+		private boolean cacheDataMaps = false;
 		
 		public Builder(){
 			
@@ -133,6 +140,24 @@ public class FullAPI {
 		    return this;
 		}
 		
+		/**
+		 * Whether to prepare the instances in two streaming passes over the training documents, which holds only the
+		 * vocabulary in memory rather than the events of every document. Best used together with the cache.
+		 */
+		public Builder streaming(boolean st){
+		    streaming = st;
+		    return this;
+		}
+		
+		/**
+		 * Whether to cache the finished training and testing DataMaps, so preparing the instances of the same
+		 * problem set, feature set and settings again loads them instead of extracting them. See {@link DataMapCache}.
+		 */
+		public Builder cacheDataMaps(boolean cdm){
+		    cacheDataMaps = cdm;
+		    return this;
+		}
+		
 		public Builder loadDocContents(boolean ldc){
 			loadDocContents = ldc;
 			return this;
@@ -166,6 +191,8 @@ public class FullAPI {
 	double[][] featureWeights;
 	int numFeaturesToKeep;
 	boolean applyInfoGain;
+	boolean streaming;
+	List<EventSet> relevantEvents; //null if the DataMaps were loaded from the cache
 	DataMap training;
 	DataMap testing;
 	
@@ -205,12 +232,14 @@ public class FullAPI {
 		ib.setUseCache(b.useCache);
 		ib.setLoadDocContents(b.loadDocContents);
 		ib.setChunkDocs(b.chunkDocs);
+		ib.setCacheDataMaps(b.cacheDataMaps);
 		verifierName = b.verifierName;
 		selected = b.type;
 		numFolds = b.numFolds;
 		analysisDriver = b.analyzer;
 		numFeaturesToKeep = b.featuresToKeep;
 		applyInfoGain = b.applyInfoGain;
+		streaming = b.streaming;
 	}
 	
 	///////////////////////////////// Methods
@@ -221,19 +250,48 @@ public class FullAPI {
 	public void prepareInstances() {
 
 		try {
+			DataMapCache dataMapCache = null;
+			String cacheKey = null;
+			if (ib.isCachingDataMaps()) {
+			    dataMapCache = DataMapCache.forDriver(cfd);
+			    cacheKey = dataMapCacheKey();
+			    DataMapCache.Entry cached = cacheKey == null ? null : dataMapCache.read(cacheKey);
+			    if (cached != null) {
+			        LOG.info("Loaded the training and testing DataMaps from the cache");
+			        training = cached.getTraining();
+			        testing = cached.getTesting();
+			        relevantEvents = null;
+			        ib.killThreads();
+			        return;
+			    }
+			}
 			if (ib.isUsingCache())
 				ib.validateCFDCache(cfd);
 			if (ib.isChunkingDocs())
 			    Chunker.chunkAllTrainDocs(ib.getProblemSet());
-			List<List<EventSet>> eventList = ib.extractEventsThreaded(cfd); //extracts events from documents
-			List<EventSet> relevantEvents = ib.getRelevantEvents(eventList,cfd); //creates the List<EventSet> to pay attention to
-			List<String> features = ib.getFeatureList(eventList,relevantEvents, cfd); //creates the attribute list to base the Instances on
-			training = ib.createTrainingDataMapThreaded(eventList,relevantEvents,features,cfd); //creates train Instances
-			testing = ib.createTestingDataMapThreaded(eventList,relevantEvents,features,cfd); //creates test Instances (if present)
+			if (streaming) {
+			    relevantEvents = ib.getRelevantEventsStreaming(cfd); //first pass, collects the vocabulary
+			    List<String> features = ib.getFeatureList(null,relevantEvents,cfd); //the feature list only needs the relevant events
+			    training = ib.createTrainingDataMapStreaming(relevantEvents,features,cfd); //second pass, creates train Instances
+			    testing = ib.createTestingDataMapThreaded(training,relevantEvents,features,cfd); //creates test Instances (if present)
+			} else {
+				List<List<EventSet>> eventList = ib.extractEventsThreaded(cfd); //extracts events from documents
+				relevantEvents = ib.getRelevantEvents(eventList,cfd); //creates the List<EventSet> to pay attention to
+				List<String> features = ib.getFeatureList(eventList,relevantEvents, cfd); //creates the attribute list to base the Instances on
+				training = ib.createTrainingDataMapThreaded(eventList,relevantEvents,features,cfd); //creates train Instances
+				testing = ib.createTestingDataMapThreaded(eventList,relevantEvents,features,cfd); //creates test Instances (if present)
+			}
 			if (applyInfoGain){
 			    applyInfoGain(training);
 			    applyInfoGain(testing);
 			}
+			if (cacheKey != null) {
+			    try {
+			        dataMapCache.write(cacheKey, training, testing);
+			    } catch (IOException e) {
+			        LOG.warn("Failed to cache the DataMaps", e);
+			    }
+			}
 			    
 			ib.killThreads();
 		} catch (Exception e) {
@@ -243,12 +301,47 @@ public class FullAPI {
 
 	}
 	
+	/**
+	 * @return the DataMap cache key of the problem set, feature set, chunking and InfoGain settings, or null if a
+	 *      document cannot be read
+	 */
+	private String dataMapCacheKey() {
+	    String settings = "chunkDocs=" + ib.isChunkingDocs() + ";infoGain=" + (applyInfoGain ? numFeaturesToKeep : "none");
+	    try {
+	        return DataMapCache.keyFor(ib.getProblemSet(), cfd, ib.isCachingByContent(), settings);
+	    } catch (IOException e) {
+	        LOG.warn("Failed to compute the DataMap cache key, not caching", e);
+	        return null;
+	    }
+	}
+	
+	/**
+	 * Trains the underlying analyzer's classifier on the prepared training data and bundles it with the feature set
+	 * and vocabulary, so new documents can be classified later without the training documents.
+	 * @return the model bundle
+	 * @throws Exception if the analyzer is not a WekaAnalyzer, the instances have not been prepared or the classifier
+	 *      could not be trained
+	 */
+	public ModelBundle buildModelBundle() throws Exception {
+		if (!(analysisDriver instanceof WekaAnalyzer))
+			throw new IllegalStateException("Model bundles can only be built with a WekaAnalyzer");
+		if (training == null)
+			throw new IllegalStateException("prepareInstances must be called before building a model bundle");
+		if (relevantEvents == null) { //the DataMaps were loaded from the cache, so collect the vocabulary again
+			if (ib.isChunkingDocs())
+				Chunker.chunkAllTrainDocs(ib.getProblemSet());
+			relevantEvents = ib.getRelevantEventsStreaming(cfd);
+			ib.killThreads();
+		}
+		return ModelBundle.train(training, relevantEvents, cfd, ((WekaAnalyzer) analysisDriver).getClassifier());
+	}
+	
 	/**
 	 * Calculates and stores the infoGain for future use
 	 */
 	public void calcInfoGain(){
 		try {
-			featureWeights = InfoGain.calcInfoGain(training); //delegate to underlying Instances Builder
+			featureWeights = InfoGain.calcInfoGain(training, ib.getNumThreads()); //delegate to underlying Instances Builder
 		} catch (Exception e) {
 			LOG.error("Failed to calculate infoGain",e);
 		} 
@@ -279,11 +372,15 @@ public class FullAPI {
 	
 		//do a cross val
 		case CROSS_VALIDATION:
+			if (analysisDriver instanceof WekaAnalyzer)
+				((WekaAnalyzer) analysisDriver).setNumThreads(ib.getNumThreads()); //folds are evaluated concurrently
 			experimentResults = analysisDriver.runCrossValidation(training, numFolds, 0);
 			break;
 
 		// do a train/test
 		case TRAIN_TEST_UNKNOWN:
+			if (analysisDriver instanceof WekaAnalyzer)
+				((WekaAnalyzer) analysisDriver).setNumThreads(ib.getNumThreads()); //test documents are classified concurrently
 		    experimentResults = analysisDriver.classifyWithUnknownAuthors(training, testing, ib.getProblemSet().getAllTestDocs());
 			break;
 
@@ -436,6 +533,8 @@ public class FullAPI {
 		//initialize the string and infoGain
 		String infoString = ">-----InfoGain information: \n\n";
 		DataMap trainingDataMap = training;
+		if (featureWeights == null) //the training data was loaded from the cache
+		    calcInfoGain();
 		double[][] infoGain = featureWeights;
 		
 		for (int i = 0; i<infoGain.length; i++){
@@ -0,0 +1,292 @@
+package edu.drexel.psal.jstylo.generics;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.jgaap.generics.Document;
+import com.jgaap.generics.Event;
+import com.jgaap.generics.EventSet;
+
+import edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.FeatureExtractionAPI;
+import edu.drexel.psal.jstylo.featureProcessing.FeatureVocabulary;
+import edu.drexel.psal.jstylo.machineLearning.weka.WekaUtils;
+import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instances;
+
+/**
+ * A trained classifier together with everything needed to classify new documents without the training documents:
+ * the feature set, the relevant events the feature vocabulary is built from, the columns that remained after InfoGain
+ * and the header of the training instances.<br>
+ *
+ * A bundle is trained once with {@link #train}, saved with {@link #save(File)} and loaded by any number of later
+ * processes with {@link #load(File)}, each of which then classifies documents with {@link #score(Document)} as fast as
+ * their features can be extracted.<br>
+ *
+ * The file is a Java serialization stream that starts with a magic number and the format version, so a file written by
+ * an incompatible version is rejected rather than misread. The classifier is serialized by Weka's own means, so a
+ * bundle can only be loaded with a compatible Weka version.<br>
+ *
+ * A bundle is not thread-safe; use {@link #copy()} to get one per thread.
+ */
+public class ModelBundle {
+
+    /**
+     * "JSMB", the first four bytes of every bundle
+     */
+    private static final int MAGIC = 0x4A534D42;
+
+    /**
+     * Bump whenever the format changes
+     */
+    public static final int VERSION = 1;
+
+    private final String cfdXML;
+    private final List<EventSet> relevantEvents;
+    private final int[] keptColumns;
+    private final Classifier classifier;
+    private final Instances header;
+    private final List<String> authors;
+
+    private final CumulativeFeatureDriver cfd;
+    private final FeatureVocabulary vocabulary;
+    private final int[] newIndices;
+    private final FeatureColumns columns;
+    private final FeatureExtractionAPI extractor = new FeatureExtractionAPI();
+
+    private ModelBundle(String cfdXML, List<EventSet> relevantEvents, int[] keptColumns, Classifier classifier,
+            Instances header) throws Exception {
+        this.cfdXML = cfdXML;
+        this.relevantEvents = relevantEvents;
+        this.keptColumns = keptColumns;
+        this.classifier = classifier;
+        this.header = header;
+
+        authors = new ArrayList<String>();
+        Attribute authorsAttr = header.classAttribute();
+        for (int i = 0; i < authorsAttr.numValues(); i++)
+            authors.add(authorsAttr.value(i));
+
+        cfd = CumulativeFeatureDriver.fromXMLString(cfdXML);
+        vocabulary = new FeatureVocabulary(relevantEvents, cfd);
+        if (keptColumns == null) {
+            newIndices = null;
+            columns = vocabulary.getColumns();
+        } else {
+            newIndices = new int[vocabulary.size()];
+            Arrays.fill(newIndices, -1);
+            for (int i = 0; i < keptColumns.length; i++)
+                newIndices[keptColumns[i]] = i;
+            columns = vocabulary.getColumns().remap(newIndices, keptColumns.length);
+        }
+    }
+
+    /**
+     * Trains a copy of the given classifier on the training data and bundles it.
+     * @param training the training data, possibly reduced by InfoGain
+     * @param relevantEvents the relevant events the training data was built from
+     * @param cfd the cumulative feature driver the training data was extracted with
+     * @param classifier the classifier to train, which is copied rather than changed
+     * @return the bundle
+     * @throws Exception if the classifier could not be trained
+     */
+    public static ModelBundle train(DataMap training, List<EventSet> relevantEvents, CumulativeFeatureDriver cfd,
+            Classifier classifier) throws Exception {
+        FeatureVocabulary vocabulary = new FeatureVocabulary(relevantEvents, cfd);
+        int[] keptColumns = keptColumns(vocabulary, training);
+
+        Instances instances = WekaUtils.instancesFromDataMap(training);
+        instances.setClassIndex(instances.numAttributes()-1);
+        Classifier trained = Classifier.makeCopy(classifier);
+        trained.buildClassifier(instances);
+
+        Instances header = new Instances(instances, 0);
+        header.setClassIndex(header.numAttributes()-1);
+        return new ModelBundle(cfd.toXMLString(), copyOf(relevantEvents), keptColumns, trained, header);
+    }
+
+    /**
+     * Creates a copy with its own classifier and feature drivers, for use by another thread.
+     * @return the copy
+     * @throws Exception if the classifier could not be copied
+     */
+    public ModelBundle copy() throws Exception {
+        return new ModelBundle(cfdXML, relevantEvents, keptColumns, Classifier.makeCopy(classifier), header);
+    }
+
+    /**
+     * Finds the vocabulary column of every feature of the training data. InfoGain keeps the order of the remaining
+     * features, so every training feature is matched to the first following vocabulary column with the same name,
+     * feature driver and normalization type.
+     * @return the vocabulary column of every training feature, or null if every vocabulary column was kept
+     */
+    private static int[] keptColumns(FeatureVocabulary vocabulary, DataMap training) {
+        Map<Integer,String> features = training.getFeatures();
+        if (features.size() == vocabulary.size())
+            return null;
+
+        List<String> names = vocabulary.getFeatureList();
+        FeatureColumns vocabularyColumns = vocabulary.getColumns();
+        FeatureColumns trainingColumns = training.getColumns();
+        int[] kept = new int[features.size()];
+        int column = 0;
+        for (int i = 0; i < kept.length; i++) {
+            String name = features.get(i);
+            while (column < names.size() && !(names.get(column).equals(name) && (trainingColumns == null
+                    || (vocabularyColumns.getName(column).equals(trainingColumns.getName(i))
+                    && vocabularyColumns.getNormalizationType(column).equals(trainingColumns.getNormalizationType(i))))))
+                column++;
+            if (column == names.size())
+                throw new IllegalArgumentException("The training feature " + name + " is not in the vocabulary");
+            kept[i] = column++;
+        }
+        return kept;
+    }
+
+    /**
+     * Copies the event sets, keeping only their IDs and events.
+     */
+    private static List<EventSet> copyOf(List<EventSet> eventSets) {
+        List<EventSet> copy = new ArrayList<EventSet>(eventSets.size());
+        for (EventSet es : eventSets) {
+            EventSet events = new EventSet();
+            events.setEventSetID(es.getEventSetID());
+            for (Event e : es)
+                events.addEvent(new Event(e.getEvent()));
+            copy.add(events);
+        }
+        return copy;
+    }
+
+    /**
+     * Saves the bundle to a temporary file next to the given one, then moves it into place, atomically where the file
+     * system allows it.
+     * @param file the file to save to
+     * @throws IOException if the file could not be written
+     */
+    public void save(File file) throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.exists())
+            dir.mkdirs();
+        File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeObject(cfdXML);
+                out.writeInt(relevantEvents.size());
+                for (EventSet es : relevantEvents) {
+                    out.writeUTF(es.getEventSetID());
+                    out.writeInt(es.size());
+                    for (Event e : es)
+                        out.writeUTF(e.getEvent());
+                }
+                out.writeObject(keptColumns);
+                out.writeObject(classifier);
+                out.writeObject(header);
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Loads a bundle saved with {@link #save(File)}.
+     * @param file the file to load
+     * @return the bundle
+     * @throws IOException if the file cannot be read or is not a bundle of this version
+     */
+    public static ModelBundle load(File file) throws IOException {
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " is not a model bundle");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException(file + " is a version " + version + " model bundle, expected version " + VERSION);
+            String cfdXML = (String) in.readObject();
+            int numEventSets = in.readInt();
+            List<EventSet> relevantEvents = new ArrayList<EventSet>(numEventSets);
+            for (int i = 0; i < numEventSets; i++) {
+                EventSet es = new EventSet();
+                es.setEventSetID(in.readUTF());
+                int numEvents = in.readInt();
+                for (int j = 0; j < numEvents; j++)
+                    es.addEvent(new Event(in.readUTF()));
+                relevantEvents.add(es);
+            }
+            int[] keptColumns = (int[]) in.readObject();
+            Classifier classifier = (Classifier) in.readObject();
+            Instances header = (Instances) in.readObject();
+            return new ModelBundle(cfdXML, relevantEvents, keptColumns, classifier, header);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Unable to load model bundle " + file, e);
+        }
+    }
+
+    /**
+     * Extracts the features of a document, in the columns of the training data.
+     * @param document the document
+     * @return the normalized document data
+     * @throws Exception if the features could not be extracted
+     */
+    public DocumentData extract(Document document) throws Exception {
+        List<EventSet> events = extractor.extractEventSets(document, cfd, false, false);
+        events = extractor.cullWithRespectToTraining(vocabulary, events, cfd);
+        DocumentData documentData = extractor.createDocumentData(vocabulary, cfd, events);
+        extractor.normDocData(documentData);
+        if (newIndices != null)
+            documentData.remapColumns(newIndices, columns);
+        return documentData;
+    }
+
+    /**
+     * Classifies a document.
+     * @param document the document
+     * @return the result, with the probability of every author
+     * @throws Exception if the features could not be extracted or the document could not be classified
+     */
+    public DocResult score(Document document) throws Exception {
+        double[] distribution = classifier.distributionForInstance(
+                WekaUtils.instanceFromDocumentData(extract(document), header));
+        Map<String,Double> probabilities = new HashMap<String,Double>(authors.size()*2);
+        for (int i = 0; i < authors.size(); i++)
+            probabilities.put(authors.get(i), distribution[i]);
+        return new DocResult(document.getTitle(), probabilities);
+    }
+
+    /**
+     * @return the authors the classifier distinguishes, in class order
+     */
+    public List<String> getAuthors() {
+        return authors;
+    }
+
+    /**
+     * @return the cumulative feature driver documents are extracted with
+     */
+    public CumulativeFeatureDriver getCFD() {
+        return cfd;
+    }
+}
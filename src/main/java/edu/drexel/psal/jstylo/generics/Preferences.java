@@ -30,7 +30,7 @@ public class Preferences{
     private static final Logger LOG = LoggerFactory.getLogger(Preferences.class);
 
 	//older versions will be replaced with the default of the newest version
-	private static final double currentVersion = 0.78;
+	private static final double currentVersion = 0.81;
 	
 	//where the file can be found
 	private static final String preferenceFilePath = "./jsan_resources/JStylo_prop.prop";
@@ -55,6 +55,9 @@ public class Preferences{
 		"useSparse",
 		"useDocTitles",
 		"useCache",
+		"useMappedCache",
+		"cacheByContent",
+		"cacheDataMaps",
 		"loadDocContents",
 		"printVectors",
 		"calcInfoGain",
@@ -76,6 +79,9 @@ public class Preferences{
 			"useSparse=1\n" +
 			"useDocTitles=0\n" +
 			"useCache=1\n" +
+			"useMappedCache=0\n" +
+			"cacheByContent=0\n" +
+			"cacheDataMaps=0\n" +
 			"loadDocContents=0\n" +
 			"printVectors=0\n" +
 			"calcInfoGain=1\n" +
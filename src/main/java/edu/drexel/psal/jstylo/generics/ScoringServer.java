@@ -0,0 +1,248 @@
+package edu.drexel.psal.jstylo.generics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.drexel.psal.jstylo.featureProcessing.StringDocument;
+
+/**
+ * A long-lived local service that classifies documents with a {@link ModelBundle}.<br>
+ *
+ * The bundle is loaded once and its feature drivers and classifier stay in memory, and the static POS taggers and
+ * other resources of the event drivers are loaded when the server starts rather than on the first request, so each
+ * request only pays for extracting and classifying its own document. Requests are handled concurrently by a fixed pool
+ * of worker threads. The bundle is copied once per worker thread when the server starts, and every request borrows a
+ * copy for as long as it is scored.<br>
+ *
+ * The server only listens on the loopback interface and offers:
+ * <ul>
+ * <li>POST /score, with the UTF-8 text of a document as the body and an optional title query parameter, which answers
+ * with the {@link DocResult#toJson() JSON} of the result plus the time spent in milliseconds</li>
+ * <li>GET /authors, which answers with the JSON array of the authors the classifier distinguishes</li>
+ * </ul>
+ *
+ * Start it from the command line with the bundle file and optionally the port and number of threads:<br>
+ * <code>java edu.drexel.psal.jstylo.generics.ScoringServer model.bundle 8500 4</code>
+ */
+public class ScoringServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ScoringServer.class);
+
+    public static final int DEFAULT_PORT = 8500;
+
+    private final ModelBundle bundle;
+    private final int numThreads;
+    private BlockingQueue<ModelBundle> bundles;
+    private final AtomicLong requests = new AtomicLong();
+
+    private HttpServer server;
+    private ExecutorService workers;
+
+    /**
+     * @param bundle the bundle to classify with
+     * @param numThreads the number of requests handled at the same time
+     */
+    public ScoringServer(ModelBundle bundle, int numThreads) {
+        this.bundle = bundle;
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Copies the bundle for every worker thread, warms up the feature drivers and starts listening.
+     * @param port the port to listen on, or 0 for any free port
+     * @throws IOException if the bundle cannot be copied or the port cannot be bound
+     */
+    public void start(int port) throws IOException {
+        bundles = new ArrayBlockingQueue<ModelBundle>(numThreads);
+        try {
+            for (int i = 0; i < numThreads; i++)
+                bundles.add(bundle.copy());
+        } catch (Exception e) {
+            throw new IOException("Unable to copy the model bundle", e);
+        }
+        warmUp();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/score", new ScoreHandler());
+        server.createContext("/authors", new AuthorsHandler());
+        workers = Executors.newFixedThreadPool(numThreads);
+        server.setExecutor(workers);
+        server.start();
+        LOG.info("Scoring server listening on port " + getPort() + " with " + numThreads + " threads");
+    }
+
+    /**
+     * Stops the server, letting the requests in progress finish for up to the given delay.
+     * @param delaySeconds the number of seconds to wait for the requests in progress
+     */
+    public void stop(int delaySeconds) {
+        if (server == null)
+            return;
+        server.stop(delaySeconds);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(delaySeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+        LOG.info("Scoring server stopped after " + requests.get() + " requests");
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Scores a small document, so the event drivers load their taggers and other static resources before the first
+     * request rather than during it.
+     */
+    private void warmUp() {
+        long start = System.currentTimeMillis();
+        try {
+            bundle.score(new StringDocument("This is a short document, used to warm up the scoring server.", null,
+                    "warm-up"));
+            LOG.info("Warmed up in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            LOG.warn("Failed to warm up the feature drivers", e);
+        }
+    }
+
+    /**
+     * Classifies the document in the body of a POST request.
+     */
+    private class ScoreHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("Use POST with the text of the document as the body"));
+                return;
+            }
+            long start = System.nanoTime();
+            long request = requests.incrementAndGet();
+            ModelBundle copy = null;
+            try {
+                String text = new String(readBody(exchange.getRequestBody()), StandardCharsets.UTF_8);
+                String title = queryParameter(exchange.getRequestURI().getRawQuery(), "title");
+                if (title == null)
+                    title = "document" + request;
+                // there is a copy for every worker thread, so one is always free
+                copy = bundles.take();
+                DocResult result = copy.score(new StringDocument(text, null, title));
+                JsonObject json = result.toJson();
+                json.addProperty("millis", (System.nanoTime() - start) / 1e6);
+                respond(exchange, 200, json);
+            } catch (Exception e) {
+                LOG.error("Failed to score request " + request, e);
+                respond(exchange, 500, error(String.valueOf(e.getMessage())));
+            } finally {
+                if (copy != null)
+                    bundles.offer(copy);
+            }
+        }
+    }
+
+    /**
+     * Lists the authors of the classifier.
+     */
+    private class AuthorsHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            JsonArray authors = new JsonArray();
+            for (String author : bundle.getAuthors()) {
+                JsonObject json = new JsonObject();
+                json.addProperty("Author", author);
+                authors.add(json);
+            }
+            respond(exchange, 200, authors);
+        }
+    }
+
+    private static JsonObject error(String message) {
+        JsonObject json = new JsonObject();
+        json.addProperty("error", message);
+        return json;
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object json) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+            bytes.write(buffer, 0, read);
+        in.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @return the decoded value of the given query parameter, or null if it is not present
+     */
+    private static String queryParameter(String query, String name) throws UnsupportedEncodingException {
+        if (query == null)
+            return null;
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals != -1 && parameter.substring(0, equals).equals(name))
+                return URLDecoder.decode(parameter.substring(equals + 1), "UTF-8");
+        }
+        return null;
+    }
+
+    /**
+     * Starts a server.
+     * @param args the model bundle file, and optionally the port and the number of threads
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: ScoringServer <model bundle> [port] [threads]");
+            System.exit(1);
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int numThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        final ScoringServer server = new ScoringServer(ModelBundle.load(new File(args[0])), numThreads);
+        server.start(port);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                server.stop(5);
+            }
+        });
+    }
+}
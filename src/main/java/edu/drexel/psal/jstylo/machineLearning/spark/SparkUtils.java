@@ -14,11 +14,9 @@ import org.apache.spark.sql.DataFrame;
 import org.apache.spark.sql.Row;
 import org.apache.spark.sql.SQLContext;
 
-import com.google.common.primitives.Doubles;
-import com.google.common.primitives.Ints;
 
 import edu.drexel.psal.jstylo.generics.DataMap;
-import edu.drexel.psal.jstylo.generics.FeatureData;
+import edu.drexel.psal.jstylo.generics.DocumentData;
 
 public class SparkUtils {
 
@@ -74,7 +72,7 @@ public class SparkUtils {
         for (String author : map.getDataMap().keySet()){
             for (String document : map.getDataMap().get(author).keySet()){
                 points.add(new LabeledPoint(labels.get(author),
-                        getVector(map.getDataMap().get(author).get(document).getDataValues(),map.getFeatures().keySet().size())));
+                        getVector(map.getDataMap().get(author).get(document),map.getFeatures().keySet().size())));
             }
         }
         return points;
@@ -86,14 +84,8 @@ public class SparkUtils {
      * @param numfeatures
      * @return
      */
-    private static Vector getVector(Map<Integer,FeatureData> docdata, int numfeatures) {
-        List<Integer> keys = new ArrayList<Integer>(docdata.keySet().size());
-        List<Double> values = new ArrayList<Double>(docdata.keySet().size());
-        for (Integer i : docdata.keySet()){
-            keys.add(i);
-            values.add(docdata.get(i).getValue());
-        }
-        
-        return Vectors.sparse(numfeatures, Ints.toArray(keys), Doubles.toArray(values));
+    private static Vector getVector(DocumentData docdata, int numfeatures) {
+        //the indices are already sorted, as a sparse vector expects. The vector keeps the arrays, so copy them
+        return Vectors.sparse(numfeatures, docdata.getIndices().clone(), docdata.getValues().clone());
     }
 }
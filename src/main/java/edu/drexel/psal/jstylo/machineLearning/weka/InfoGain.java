@@ -21,11 +21,42 @@ public class InfoGain {
 
     /**
      * Calculates InfoGain on the instances to provide information on how useful each feature was to identifying the documents.<br>
+     * Uses all of the available processors, see {@link #calcInfoGain(DataMap, int)}.
      * @param data the datamap to analyze
      * @return a two-dimensional sorted array with one element per feature. It is sorted via how useful each feature was and stores the index.
      * @throws Exception
      */
     public static double[][] calcInfoGain(DataMap data) throws Exception {
+        return calcInfoGain(data, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Calculates InfoGain directly on the sparse data of the datamap, see {@link SparseInfoGain}. The result is the
+     * same as that of {@link #calcInfoGainWeka(DataMap)}, to within rounding, without converting the datamap into
+     * Instances.<br>
+     * @param data the datamap to analyze
+     * @param numThreads the number of features to evaluate at the same time
+     * @return a two-dimensional sorted array with one element per feature. It is sorted via how useful each feature was and stores the index.
+     * @throws Exception
+     */
+    public static double[][] calcInfoGain(DataMap data, int numThreads) throws Exception {
+        double[] infoGains = SparseInfoGain.infoGains(data, numThreads);
+        double[][] infoArr = new double[infoGains.length][2];
+        for (int i = 0; i < infoArr.length; i++) {
+            infoArr[i][0] = infoGains[i];
+            infoArr[i][1] = i;
+        }
+        sortByUsefulness(infoArr);
+        return infoArr;
+    }
+
+    /**
+     * Calculates InfoGain with Weka's InfoGainAttributeEval, after converting the datamap into Instances.<br>
+     * @param data the datamap to analyze
+     * @return a two-dimensional sorted array with one element per feature. It is sorted via how useful each feature was and stores the index.
+     * @throws Exception
+     */
+    public static double[][] calcInfoGainWeka(DataMap data) throws Exception {
 
         Instances insts = WekaUtils.instancesFromDataMap(data);
         //initialize values
@@ -50,15 +81,20 @@ public class InfoGain {
             }
             j++;
         }
-        //sort based on usefulness
+        sortByUsefulness(infoArr);
+        return infoArr;
+    }
+
+    /**
+     * Sorts the features by descending InfoGain, keeping the order of features of equal InfoGain.
+     */
+    private static void sortByUsefulness(double[][] infoArr) {
         Arrays.sort(infoArr, new Comparator<double[]>() {
             @Override
             public int compare(final double[] first, final double[] second) {
                 return -1 * ((Double) first[0]).compareTo(((Double) second[0]));
             }
         });
-
-        return infoArr;
     }
 
     /**
@@ -11,6 +11,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import com.esotericsoftware.minlog.Log;
 import com.jgaap.generics.Document;
@@ -52,6 +56,12 @@ public class WekaAnalyzer extends Analyzer {
 	
 	private Evaluation crossValResults;
 	
+	/**
+	 * The number of cross validation folds to train and evaluate, or batches of test instances to classify, at the
+	 * same time
+	 */
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+	
 	/* ============
 	 * constructors
 	 * ============
@@ -122,25 +132,27 @@ public class WekaAnalyzer extends Analyzer {
 		
 		
 		// classify test cases
+		for (int i=0; i<testingInstances.numInstances(); i++)
+			testingInstances.instance(i).setDataset(trainingInstances);
+		double[][] dists;
+		try {
+			dists = classifyInstances(testingInstances);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return results;
+		}
+		
 		Map<String,Double> map;
-		double[] currRes;
-		for (int i=0; i<testingInstances.numInstances(); i++) {
-			Instance test = testingInstances.instance(i);
-
-			test.setDataset(trainingInstances);
-
+		for (int i=0; i<dists.length; i++) {
+			if (dists[i] == null) // failed, see classifyBatch
+				continue;
 			map = res.get(unknownDocs.get(i).getTitle());
-			try {
-				currRes = classifier.distributionForInstance(test);
-				for (int j=0; j<numOfAuthors; j++) {
-					map.put(authors.get(j), currRes[j]);
-				}
-				//FIXME something around here isn't working properly
-				
-				results.addDocResult(new DocResult(documentTitles.get(i),map));
-			} catch (Exception e) {
-				e.printStackTrace();
+			for (int j=0; j<numOfAuthors; j++) {
+				map.put(authors.get(j), dists[i][j]);
 			}
+			//FIXME something around here isn't working properly
+			
+			results.addDocResult(new DocResult(documentTitles.get(i),map));
 		}
 		
 		return results;
@@ -174,14 +186,7 @@ public class WekaAnalyzer extends Analyzer {
 		Evaluation eval = null;
 		try {
 			eval = new Evaluation(randData);
-			for (int n = 0; n < folds; n++) {
-				Instances train = randData.trainCV(folds, n);
-				Instances test = randData.testCV(folds, n);
-				// build and evaluate classifier
-				Classifier clsCopy = Classifier.makeCopy(classifier);
-				clsCopy.buildClassifier(train);
-				eval.evaluateModel(clsCopy, test);
-			}
+			evaluateFolds(randData, folds, eval);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -226,14 +231,7 @@ public class WekaAnalyzer extends Analyzer {
 		RelaxedWekaEvaluation eval = null;
 		try {
 			eval = new RelaxedWekaEvaluation(randData, relaxFactor);
-			for (int n = 0; n < folds; n++) {
-				Instances train = randData.trainCV(folds, n);
-				Instances test = randData.testCV(folds, n);
-				// build and evaluate classifier
-				Classifier clsCopy =  Classifier.makeCopy(classifier);
-				clsCopy.buildClassifier(train);
-				eval.evaluateModel(clsCopy, test);
-			}
+			evaluateFolds(randData, folds, eval);
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
@@ -241,6 +239,140 @@ public class WekaAnalyzer extends Analyzer {
 		return WekaUtils.resultsFromEvaluation(eval,data.attribute(data.numAttributes()-1).toString(),documentTitles); 
 	}
 	
+	/**
+	 * Trains a copy of the classifier on each fold of the randomized and stratified data and evaluates it on the
+	 * fold's test instances. Up to numThreads folds are trained and classified at the same time, but the predictions
+	 * are recorded into the evaluation one fold after the other, in fold order, so the results and their order are
+	 * the same as evaluating the folds one by one.
+	 * @param randData
+	 * 		The randomized and stratified data.
+	 * @param folds
+	 * 		The number of folds.
+	 * @param eval
+	 * 		The evaluation to record the predictions into.
+	 * @throws Exception
+	 * 		If a fold could not be trained or classified.
+	 */
+	private void evaluateFolds(final Instances randData, final int folds, Evaluation eval) throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, Math.min(numThreads, folds)));
+		try {
+			List<Future<double[][]>> futures = new ArrayList<Future<double[][]>>(folds);
+			for (int n = 0; n < folds; n++) {
+				final int fold = n;
+				// copied up front, as copying serializes the shared classifier
+				final Classifier clsCopy = Classifier.makeCopy(classifier);
+				futures.add(pool.submit(new Callable<double[][]>() {
+					@Override
+					public double[][] call() throws Exception {
+						Instances train = randData.trainCV(folds, fold);
+						Instances test = randData.testCV(folds, fold);
+						// build the classifier and classify the test instances as Evaluation.evaluateModel does
+						clsCopy.buildClassifier(train);
+						double[][] dists = new double[test.numInstances()][];
+						for (int i = 0; i < dists.length; i++) {
+							Instance classMissing = (Instance) test.instance(i).copy();
+							classMissing.setDataset(test);
+							classMissing.setClassMissing();
+							dists[i] = clsCopy.distributionForInstance(classMissing);
+						}
+						return dists;
+					}
+				}));
+			}
+			
+			for (int n = 0; n < folds; n++) {
+				double[][] dists;
+				try {
+					dists = futures.get(n).get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception)
+						throw (Exception) e.getCause();
+					throw e;
+				}
+				Instances test = randData.testCV(folds, n);
+				for (int i = 0; i < dists.length; i++)
+					eval.evaluateModelOnceAndRecordPrediction(dists[i], test.instance(i));
+			}
+		} finally {
+			// stops the remaining folds if one of them failed
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Classifies the test instances with the trained classifier. The instances are split into up to numThreads
+	 * contiguous batches that are classified at the same time: the first batch by the trained classifier itself and
+	 * each of the others by a serialized copy of it, as Weka classifiers may change their state while classifying (SMO
+	 * caches kernel evaluations, for example). All of the copies are made before any batch starts, so the classifier
+	 * is never serialized while it is in use; if it cannot be copied, the instances are classified on a single thread.
+	 * The distributions are returned in the order of the instances.
+	 * @param test
+	 * 		The test instances, with their dataset set to the training instances.
+	 * @return
+	 * 		The distribution of every test instance, or null for an instance that could not be classified.
+	 * @throws Exception
+	 * 		If the classification was interrupted.
+	 */
+	private double[][] classifyInstances(final Instances test) throws Exception {
+		final int numInstances = test.numInstances();
+		final double[][] dists = new double[numInstances][];
+		int numBatches = Math.max(1, Math.min(numThreads, numInstances));
+		long start = System.currentTimeMillis();
+		
+		Classifier[] classifiers = new Classifier[numBatches];
+		classifiers[0] = classifier;
+		try {
+			for (int b = 1; b < numBatches; b++)
+				classifiers[b] = Classifier.makeCopy(classifier);
+		} catch (Exception e) {
+			Log.warn("Failed to copy the classifier, classifying on a single thread", e);
+			numBatches = 1;
+		}
+		
+		if (numBatches == 1) {
+			classifyBatch(classifier, test, dists, 0, numInstances);
+		} else {
+			ForkJoinPool pool = new ForkJoinPool(numBatches);
+			try {
+				List<Future<?>> futures = new ArrayList<Future<?>>(numBatches);
+				for (int b = 0; b < numBatches; b++) {
+					final int from = (int) ((long) numInstances * b / numBatches);
+					final int to = (int) ((long) numInstances * (b + 1) / numBatches);
+					final Classifier cls = classifiers[b];
+					futures.add(pool.submit(new Runnable() {
+						@Override
+						public void run() {
+							classifyBatch(cls, test, dists, from, to);
+						}
+					}));
+				}
+				for (Future<?> future : futures)
+					future.get();
+			} finally {
+				pool.shutdownNow();
+			}
+		}
+		
+		long millis = Math.max(1, System.currentTimeMillis() - start);
+		Log.info("Classified " + numInstances + " documents in " + millis + " ms with " + numBatches
+				+ " threads (" + (numInstances * 1000L / millis) + " documents/s)");
+		return dists;
+	}
+	
+	/**
+	 * Classifies the test instances from (inclusive) to to (exclusive) into dists, leaving the distribution of an
+	 * instance that could not be classified null.
+	 */
+	private static void classifyBatch(Classifier cls, Instances test, double[][] dists, int from, int to) {
+		for (int i = from; i < to; i++) {
+			try {
+				dists[i] = cls.distributionForInstance(test.instance(i));
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
 	/**
 	 * Runs cross validation with given number of folds on the given Instances object.
 	 * Uses 0 as default random seed for fold generation.
@@ -271,6 +403,16 @@ public class WekaAnalyzer extends Analyzer {
 		return classifier;
 	}
 	
+	/**
+	 * Returns the number of cross validation folds trained and evaluated, or batches of test instances classified, at
+	 * the same time.
+	 * @return
+	 * 		The number of threads used for cross validation and classification.
+	 */
+	public int getNumThreads() {
+		return numThreads;
+	}
+	
 	/**
 	 * Returns the weka classifier's args
 	 */
@@ -335,6 +477,17 @@ public class WekaAnalyzer extends Analyzer {
 	public void setClassifier(Classifier classifier) {
 		this.classifier = classifier;
 	}
+	
+	/**
+	 * Sets the number of cross validation folds to train and evaluate, and of batches of test instances to classify,
+	 * at the same time. Every fold being evaluated holds its own copy of the training data and of the classifier, and
+	 * every batch but the first its own copy of the trained classifier.
+	 * @param numThreads
+	 * 		The number of threads to use for cross validation and classification.
+	 */
+	public void setNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+	}
 
 	/**
 	 * Sets the weka classifier's args.
@@ -1,6 +1,7 @@
 package edu.drexel.psal.jstylo.machineLearning.weka;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -11,7 +12,6 @@ import edu.drexel.psal.jstylo.generics.DataMap;
 import edu.drexel.psal.jstylo.generics.DocResult;
 import edu.drexel.psal.jstylo.generics.DocumentData;
 import edu.drexel.psal.jstylo.generics.ExperimentResults;
-import edu.drexel.psal.jstylo.generics.FeatureData;
 import weka.classifiers.Evaluation;
 import weka.classifiers.evaluation.NominalPrediction;
 import weka.core.Attribute;
@@ -43,14 +43,23 @@ public class WekaUtils {
             //for each document...
             for (String doctitle : authormap.keySet()){
                 
-                Instance instance = new SparseInstance(numfeatures);
-                ConcurrentHashMap<Integer,FeatureData> documentData = authormap.get(doctitle).getDataValues();
+                DocumentData documentData = authormap.get(doctitle);
+                int[] indices = documentData.getIndices();
+                double[] values = documentData.getValues();
                 
-                //for each index we have a value for 
-                for (Integer index : documentData.keySet()){
-                    instance.setValue((Attribute)attributes.elementAt(index), documentData.get(index).getValue());
-                }
-                instance.setValue((Attribute)attributes.elementAt(attributes.size()-1), author);
+                //the non-zero values in ascending column order, followed by the author, which is the last attribute
+                int authorIndex = attributes.size()-1;
+                int numValues = 0;
+                while (numValues < indices.length && indices[numValues] < authorIndex)
+                    numValues++;
+                double[] instanceValues = new double[numValues+1];
+                int[] instanceIndices = new int[numValues+1];
+                System.arraycopy(values, 0, instanceValues, 0, numValues);
+                System.arraycopy(indices, 0, instanceIndices, 0, numValues);
+                instanceIndices[numValues] = authorIndex;
+                instanceValues[numValues] = ((Attribute)attributes.elementAt(authorIndex)).indexOfValue(author);
+                
+                Instance instance = new SparseInstance(1.0, instanceValues, instanceIndices, numfeatures);
                 instances.add(instance);
             }
         }
@@ -58,6 +67,28 @@ public class WekaUtils {
         return instances;
     }
     
+    /**
+     * Converts the data of a single document into an instance of the given dataset, with its class missing, so it can
+     * be classified by a classifier trained on that dataset.
+     * @param documentData the document data, in the columns of the dataset's features
+     * @param dataset the dataset, with the author as its last attribute and class
+     * @return the instance
+     */
+    public static Instance instanceFromDocumentData(DocumentData documentData, Instances dataset){
+        int[] indices = documentData.getIndices();
+        double[] values = documentData.getValues();
+        int authorIndex = dataset.numAttributes()-1;
+        int numValues = 0;
+        while (numValues < indices.length && indices[numValues] < authorIndex)
+            numValues++;
+        
+        Instance instance = new SparseInstance(1.0, Arrays.copyOf(values, numValues), Arrays.copyOf(indices, numValues),
+                dataset.numAttributes());
+        instance.setDataset(dataset);
+        instance.setClassMissing();
+        return instance;
+    }
+    
     protected static FastVector createFastVector(Map<Integer,String> features, Set<String> authors){
         FastVector fv = new FastVector(features.size()+1);
         
@@ -0,0 +1,137 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.jgaap.generics.Event;
+import com.jgaap.generics.EventCuller;
+import com.jgaap.generics.EventSet;
+
+import edu.drexel.psal.jstylo.eventCullers.LeastCommonEventsExtended;
+import edu.drexel.psal.jstylo.eventCullers.MaxAppearances;
+import edu.drexel.psal.jstylo.eventCullers.MinAppearances;
+import edu.drexel.psal.jstylo.eventCullers.MostCommonEventsExtended;
+import edu.drexel.psal.jstylo.eventDrivers.LetterNGramEventDriver;
+import edu.drexel.psal.jstylo.featureProcessing.CumulativeEventCuller;
+import edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.FeatureDriver;
+
+public class CumulativeEventCullerTest {
+
+    private static final int NUM_DOCS = 6;
+
+    private static EventCuller culler(EventCuller ec, int n) {
+        ec.setParameter("N", n);
+        return ec;
+    }
+
+    private static FeatureDriver driver(String name, EventCuller... cullers) {
+        FeatureDriver fd = new FeatureDriver(name, true, new LetterNGramEventDriver());
+        for (EventCuller ec : cullers)
+            fd.addEventCuller(ec);
+        return fd;
+    }
+
+    private static CumulativeFeatureDriver culledDriver() {
+        CumulativeFeatureDriver cfd = new CumulativeFeatureDriver();
+        cfd.setName("culling");
+        cfd.addFeatureDriver(driver("Most", culler(new MostCommonEventsExtended(), 3)));
+        cfd.addFeatureDriver(driver("Least", culler(new LeastCommonEventsExtended(), 2)));
+        cfd.addFeatureDriver(driver("Unculled"));
+        cfd.addFeatureDriver(driver("Min", culler(new MinAppearances(), 4)));
+        cfd.addFeatureDriver(driver("Max", culler(new MaxAppearances(), 3)));
+        cfd.addFeatureDriver(driver("Chained", culler(new MinAppearances(), 2), culler(new MostCommonEventsExtended(), 4)));
+        return cfd;
+    }
+
+    /**
+     * @return the event sets of every feature driver of the given driver, one per document, with random events
+     */
+    private static List<List<EventSet>> features(CumulativeFeatureDriver cfd) {
+        Random random = new Random(9);
+        List<List<EventSet>> features = new ArrayList<List<EventSet>>();
+        for (int f = 0; f < cfd.numOfFeatureDrivers(); f++) {
+            List<EventSet> eventSets = new ArrayList<EventSet>();
+            for (int d = 0; d < NUM_DOCS; d++) {
+                EventSet es = new EventSet();
+                es.setAuthor("Author" + (d % 2));
+                es.setDocumentName("Doc" + d);
+                es.setEventSetID(cfd.featureDriverAt(f).getName());
+                for (int i = 5 + random.nextInt(20); i > 0; i--)
+                    es.addEvent(new Event(cfd.featureDriverAt(f).getName() + "{" + random.nextInt(10) + "}"));
+                eventSets.add(es);
+            }
+            features.add(eventSets);
+        }
+        return features;
+    }
+
+    private static List<String> events(EventSet es) {
+        List<String> events = new ArrayList<String>();
+        for (Event e : es)
+            events.add(e.getEvent());
+        return events;
+    }
+
+    private static void assertSameEventSets(List<EventSet> expected, List<EventSet> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int d = 0; d < expected.size(); d++) {
+            assertEquals(expected.get(d).getAuthor(), actual.get(d).getAuthor());
+            assertEquals(expected.get(d).getDocumentName(), actual.get(d).getDocumentName());
+            assertEquals(expected.get(d).getEventSetID(), actual.get(d).getEventSetID());
+            assertEquals(events(expected.get(d)), events(actual.get(d)));
+        }
+    }
+
+    @Test
+    public void cullFeatures_MultipleThreads_SameAsSingleThread() throws Exception {
+        // Setup
+        CumulativeFeatureDriver cfd = culledDriver();
+        List<List<EventSet>> features = features(cfd);
+        // a feature driver left out
+        features.set(1, null);
+
+        // Execution
+        List<List<EventSet>> expected = CumulativeEventCuller.cullFeatures(features, cfd, 1);
+        List<List<EventSet>> actual = CumulativeEventCuller.cullFeatures(features, cfd, 4);
+
+        // Verification
+        assertEquals(expected.size(), actual.size());
+        assertNull(actual.get(1));
+        assertSame(features.get(2), actual.get(2));
+        for (int f = 0; f < expected.size(); f++) {
+            if (expected.get(f) != null)
+                assertSameEventSets(expected.get(f), actual.get(f));
+        }
+        // the cullers did remove events
+        assertTrue(events(actual.get(0).get(0)).size() < events(features.get(0).get(0)).size());
+    }
+
+    @Test
+    public void cull_MultipleThreads_SameAsSequential() throws Exception {
+        // Setup
+        CumulativeFeatureDriver cfd = culledDriver();
+        List<List<EventSet>> features = features(cfd);
+        List<List<EventSet>> eventSets = new ArrayList<List<EventSet>>();
+        for (int d = 0; d < NUM_DOCS; d++) {
+            List<EventSet> docSets = new ArrayList<EventSet>();
+            for (List<EventSet> featureSets : features)
+                docSets.add(featureSets.get(d));
+            eventSets.add(docSets);
+        }
+
+        // Execution
+        List<List<EventSet>> expected = CumulativeEventCuller.cull(eventSets, cfd);
+        List<List<EventSet>> actual = CumulativeEventCuller.cull(eventSets, cfd, 4);
+
+        // Verification
+        assertEquals(NUM_DOCS, actual.size());
+        for (int d = 0; d < NUM_DOCS; d++)
+            assertSameEventSets(expected.get(d), actual.get(d));
+    }
+}
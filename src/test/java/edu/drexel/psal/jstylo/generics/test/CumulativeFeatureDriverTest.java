@@ -0,0 +1,64 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import edu.drexel.psal.jstylo.canonicizers.StripSpaces;
+import edu.drexel.psal.jstylo.eventDrivers.LetterNGramEventDriver;
+import edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.FeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.NormBaselineEnum;
+
+public class CumulativeFeatureDriverTest {
+
+    private static CumulativeFeatureDriver driver(){
+        LetterNGramEventDriver ed = new LetterNGramEventDriver();
+        ed.setParameter("N", "3");
+        FeatureDriver fd = new FeatureDriver("Letter Trigrams", true, ed);
+        fd.setDescription("letter trigrams");
+        fd.addCanonicizer(new StripSpaces());
+        fd.setNormBaseline(NormBaselineEnum.CHARS_IN_DOC);
+        fd.setNormFactor(100.0);
+
+        CumulativeFeatureDriver cfd = new CumulativeFeatureDriver();
+        cfd.setName("test");
+        cfd.setDescription("test driver");
+        cfd.addFeatureDriver(fd);
+        return cfd;
+    }
+
+    @Test
+    public void copyConstructor_CopiesConfiguration_Success() throws Exception {
+        CumulativeFeatureDriver original = driver();
+        CumulativeFeatureDriver copy = new CumulativeFeatureDriver(original);
+
+        assertEquals(original.toXMLString(), copy.toXMLString());
+        assertEquals(original.featureDriverAt(0).cacheHash(), copy.featureDriverAt(0).cacheHash());
+    }
+
+    @Test
+    public void copyConstructor_CreatesNewInstances_Success() throws Exception {
+        CumulativeFeatureDriver original = driver();
+        CumulativeFeatureDriver copy = new CumulativeFeatureDriver(original);
+
+        FeatureDriver fd = original.featureDriverAt(0);
+        FeatureDriver fdCopy = copy.featureDriverAt(0);
+        assertNotSame(fd, fdCopy);
+        assertNotSame(fd.getUnderlyingEventDriver(), fdCopy.getUnderlyingEventDriver());
+        assertNotSame(fd.canonicizerAt(0), fdCopy.canonicizerAt(0));
+
+        // changing the copy leaves the original alone
+        fdCopy.getUnderlyingEventDriver().setParameter("N", "2");
+        assertEquals("3", fd.getUnderlyingEventDriver().getParameter("N"));
+    }
+
+    @Test
+    public void fromXMLString_RoundTrip_Success() throws Exception {
+        CumulativeFeatureDriver original = driver();
+        CumulativeFeatureDriver parsed = CumulativeFeatureDriver.fromXMLString(original.toXMLString());
+
+        assertEquals(original.toXMLString(), parsed.toXMLString());
+        assertEquals(original.featureDriverAt(0).cacheHash(), parsed.featureDriverAt(0).cacheHash());
+    }
+}
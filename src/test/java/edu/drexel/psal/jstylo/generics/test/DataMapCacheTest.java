@@ -0,0 +1,153 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.drexel.psal.jstylo.eventDrivers.LetterNGramEventDriver;
+import edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.DataMapCache;
+import edu.drexel.psal.jstylo.featureProcessing.FeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.ProblemSet;
+import edu.drexel.psal.jstylo.featureProcessing.StringDocument;
+import edu.drexel.psal.jstylo.generics.DataMap;
+import edu.drexel.psal.jstylo.generics.DocumentData;
+import edu.drexel.psal.jstylo.generics.FullAPI;
+import edu.drexel.psal.jstylo.machineLearning.weka.WekaAnalyzer;
+import weka.classifiers.bayes.NaiveBayes;
+
+public class DataMapCacheTest {
+
+    private static final String SETTINGS = "chunkDocs=false;infoGain=none";
+
+    private File cacheDir;
+    private DataMapCache cache;
+
+    private static ProblemSet problemSet(String firstText) {
+        ProblemSet ps = new ProblemSet();
+        String[] texts = {firstText, "xyz zyx yzx xxy zzy", "aab cba abc bac cca", "yxz xyz zzx yyx xzy"};
+        for (int d = 0; d < texts.length; d++) {
+            String author = d % 2 == 0 ? "AuthorA" : "AuthorX";
+            ps.addTrainDoc(author, new StringDocument(texts[d], author, "train" + d));
+        }
+        ps.addTestDoc(ProblemSet.getDummyAuthor(), new StringDocument("abc xyz", ProblemSet.getDummyAuthor(), "test"));
+        return ps;
+    }
+
+    private static CumulativeFeatureDriver letterNGrams(int n) {
+        LetterNGramEventDriver ed = new LetterNGramEventDriver();
+        ed.setParameter("N", "" + n);
+        CumulativeFeatureDriver cfd = new CumulativeFeatureDriver();
+        cfd.setName("datamaps");
+        cfd.addFeatureDriver(new FeatureDriver("Letters", true, ed));
+        return cfd;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = File.createTempFile("datamaps", "");
+        cacheDir.delete();
+        cacheDir.mkdirs();
+        cache = new DataMapCache(cacheDir);
+    }
+
+    @After
+    public void tearDown() {
+        for (File file : cacheDir.listFiles())
+            file.delete();
+        cacheDir.delete();
+    }
+
+    private static void assertSameDataMap(DataMap expected, DataMap actual) {
+        assertEquals(expected.getFeatures(), actual.getFeatures());
+        assertEquals(expected.getDataMap().keySet(), actual.getDataMap().keySet());
+        for (String author : expected.getDataMap().keySet()) {
+            Map<String,DocumentData> expectedDocs = expected.getDataMap().get(author);
+            Map<String,DocumentData> actualDocs = actual.getDataMap().get(author);
+            assertEquals(expectedDocs.keySet(), actualDocs.keySet());
+            for (String title : expectedDocs.keySet()) {
+                assertEquals(expectedDocs.get(title).getNormalizationValues(), actualDocs.get(title).getNormalizationValues());
+                assertArrayEquals(expectedDocs.get(title).getIndices(), actualDocs.get(title).getIndices());
+                assertArrayEquals(expectedDocs.get(title).getCounts(), actualDocs.get(title).getCounts());
+                assertArrayEquals(expectedDocs.get(title).getValues(), actualDocs.get(title).getValues(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void keyFor_SameInputs_SameKey() throws IOException {
+        // Execution
+        String first = DataMapCache.keyFor(problemSet("abc abc cab"), letterNGrams(1), false, SETTINGS);
+        String second = DataMapCache.keyFor(problemSet("abc abc cab"), letterNGrams(1), false, SETTINGS);
+
+        // Verification
+        assertEquals(first, second);
+        assertTrue(first.matches("[0-9a-f]{40}"));
+    }
+
+    @Test
+    public void keyFor_ChangedInput_DifferentKey() throws IOException {
+        // Setup
+        String key = DataMapCache.keyFor(problemSet("abc abc cab"), letterNGrams(1), false, SETTINGS);
+
+        // Execution
+        String otherDriver = DataMapCache.keyFor(problemSet("abc abc cab"), letterNGrams(2), false, SETTINGS);
+        String otherSettings = DataMapCache.keyFor(problemSet("abc abc cab"), letterNGrams(1), false,
+                "chunkDocs=true;infoGain=none");
+        String otherDocument = DataMapCache.keyFor(problemSet("abc abc cba"), letterNGrams(1), false, SETTINGS);
+        ProblemSet moreDocuments = problemSet("abc abc cab");
+        moreDocuments.addTrainDoc("AuthorA", new StringDocument("cab", "AuthorA", "train4"));
+        String otherDocuments = DataMapCache.keyFor(moreDocuments, letterNGrams(1), false, SETTINGS);
+
+        // Verification
+        assertNotEquals(key, otherDriver);
+        assertNotEquals(key, otherSettings);
+        assertNotEquals(key, otherDocument);
+        assertNotEquals(key, otherDocuments);
+    }
+
+    @Test
+    public void writeRead_RoundTrip_Success() throws IOException {
+        // Setup
+        ProblemSet ps = problemSet("abc abc cab");
+        CumulativeFeatureDriver cfd = letterNGrams(1);
+        String key = DataMapCache.keyFor(ps, cfd, false, SETTINGS);
+        FullAPI api = new FullAPI.Builder().ps(ps).cfd(cfd).setAnalyzer(new WekaAnalyzer(new NaiveBayes()))
+                .analysisType(FullAPI.analysisType.TRAIN_TEST_UNKNOWN).numThreads(1).useCache(false).build();
+        api.prepareInstances();
+
+        // Execution
+        cache.write(key, api.getTrainingDataMap(), api.getTestingDataMap());
+        DataMapCache.Entry entry = cache.read(key);
+
+        // Verification
+        assertNotNull(entry);
+        assertSameDataMap(api.getTrainingDataMap(), entry.getTraining());
+        assertSameDataMap(api.getTestingDataMap(), entry.getTesting());
+    }
+
+    @Test
+    public void read_ChangedSetting_Miss() throws IOException {
+        // Setup
+        ProblemSet ps = problemSet("abc abc cab");
+        CumulativeFeatureDriver cfd = letterNGrams(1);
+        FullAPI api = new FullAPI.Builder().ps(ps).cfd(cfd).setAnalyzer(new WekaAnalyzer(new NaiveBayes()))
+                .numThreads(1).useCache(false).build();
+        api.prepareInstances();
+        cache.write(DataMapCache.keyFor(ps, cfd, false, SETTINGS), api.getTrainingDataMap(), null);
+
+        // Execution
+        DataMapCache.Entry entry = cache.read(DataMapCache.keyFor(ps, cfd, false, "chunkDocs=false;infoGain=50"));
+
+        // Verification
+        assertNull(entry);
+        assertNotNull(cache.read(DataMapCache.keyFor(ps, cfd, false, SETTINGS)));
+        assertNull(cache.read(DataMapCache.keyFor(ps, cfd, false, SETTINGS)).getTesting());
+    }
+}
@@ -0,0 +1,96 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.drexel.psal.jstylo.generics.DataMap;
+import edu.drexel.psal.jstylo.generics.DataMapFile;
+import edu.drexel.psal.jstylo.generics.DocumentData;
+import edu.drexel.psal.jstylo.generics.FeatureColumns;
+import edu.drexel.psal.jstylo.generics.FeatureData;
+
+public class DataMapFileTest {
+
+	private DataMap testDataMap;
+	private File testFile;
+
+	@Before
+	public void setUp() throws IOException {
+		List<String> featureNames = new ArrayList<>();
+		featureNames.add("Feature0");
+		featureNames.add("Feature1");
+		featureNames.add("Feature2");
+		FeatureColumns columns = new FeatureColumns(new String[] {"Words", "Words", "Letters"},
+				new String[] {"None", "Words in document", "None"});
+		testDataMap = new DataMap("Test_DataMap_Object", featureNames, columns);
+
+		Map<String, Integer> norms = new HashMap<>();
+		norms.put("Words in document", 10);
+		DocumentData compact = new DocumentData(norms, columns, new int[] {0, 1}, new int[] {2, 3});
+		compact.normalize();
+		testDataMap.initAuthor("Author1");
+		testDataMap.addDocumentData("Author1", "Doc1", compact);
+
+		ConcurrentHashMap<Integer, FeatureData> values = new ConcurrentHashMap<>();
+		FeatureData fd = new FeatureData("Letters", "None", 4);
+		fd.setValue(4.0);
+		values.put(2, fd);
+		testDataMap.initAuthor("Author2");
+		testDataMap.addDocumentData("Author2", "Doc2", new DocumentData(new HashMap<String, Integer>(), values));
+
+		testFile = File.createTempFile("datamap", ".bin");
+	}
+
+	@After
+	public void tearDown() {
+		testFile.delete();
+	}
+
+	@Test
+	public void writeRead_RoundTrip_Success() throws IOException {
+		// Execution
+		DataMapFile.write(testDataMap, testFile);
+		DataMap loaded = DataMapFile.read(testFile);
+
+		// Verification
+		assertEquals(testDataMap.getDatasetName(), loaded.getDatasetName());
+		assertEquals(testDataMap.getFeatures(), loaded.getFeatures());
+		for (String author : testDataMap.getDataMap().keySet()) {
+			for (Map.Entry<String, DocumentData> doc : testDataMap.getDataMap().get(author).entrySet()) {
+				DocumentData original = doc.getValue();
+				DocumentData copy = loaded.getDataMap().get(author).get(doc.getKey());
+				assertTrue(copy.isCompact());
+				assertEquals(original.getNormalizationValues(), copy.getNormalizationValues());
+				assertArrayEquals(original.getIndices(), copy.getIndices());
+				assertArrayEquals(original.getCounts(), copy.getCounts());
+				assertArrayEquals(original.getValues(), copy.getValues(), 0.0);
+			}
+		}
+		assertEquals("Words in document", loaded.getColumns().getNormalizationType(1));
+		assertEquals("Letters", loaded.getColumns().getName(2));
+	}
+
+	@Test(expected = IOException.class)
+	public void read_TruncatedFile_Failure() throws IOException {
+		// Setup
+		DataMapFile.write(testDataMap, testFile);
+		try (RandomAccessFile file = new RandomAccessFile(testFile, "rw")) {
+			file.setLength(file.length() - 4);
+		}
+
+		// Execution
+		DataMapFile.read(testFile);
+	}
+}
@@ -9,6 +9,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import edu.drexel.psal.jstylo.generics.FeatureColumns;
 import edu.drexel.psal.jstylo.generics.FeatureData;
 import edu.drexel.psal.jstylo.generics.DocumentData;
 
@@ -73,4 +74,68 @@ public class DocumentDataTest {
 		
 		
 	}
+
+	private static DocumentData compactDocumentData(){
+		Map<String, Integer> norms = new HashMap<>();
+		norms.put("Number of words in the document", 10);
+		FeatureColumns columns = new FeatureColumns(new String[]{"Words", "Words", "Words", "Count"},
+				new String[]{"Number of words in the document", "Number of words in the document",
+						"Number of words in the document", "None"});
+		return new DocumentData(norms, columns, new int[]{0, 2, 3}, new int[]{1, 4, 7});
+	}
+
+	@Test
+	public void compact_getFeatureCountAtIndex_Test(){
+		// Setup
+		DocumentData compact = compactDocumentData();
+
+		// Verification
+		assertTrue(compact.isCompact());
+		assertEquals(Integer.valueOf(4), compact.getFeatureCountAtIndex(2));
+		assertEquals(Integer.valueOf(-1), compact.getFeatureCountAtIndex(1));
+	}
+
+	@Test
+	public void compact_normalize_Test(){
+		// Setup
+		DocumentData compact = compactDocumentData();
+
+		// Execution
+		compact.normalize();
+
+		// Verification
+		assertArrayEquals(new double[]{10.0, 40.0, 7.0}, compact.getValues(), 0.0);
+	}
+
+	@Test
+	public void compact_getDataValues_WritesThrough_Test(){
+		// Setup
+		DocumentData compact = compactDocumentData();
+
+		// Execution
+		ConcurrentHashMap<Integer, FeatureData> views = compact.getDataValues();
+		views.get(3).setValue(0.5);
+
+		// Verification
+		assertEquals(3, views.size());
+		assertEquals("Count", views.get(3).getName());
+		assertEquals("None", views.get(3).getNormalizationType());
+		assertEquals(Integer.valueOf(7), views.get(3).getCount());
+		assertEquals(0.5, compact.getValues()[2], 0.0);
+	}
+
+	@Test
+	public void compact_remapColumns_Test(){
+		// Setup
+		DocumentData compact = compactDocumentData();
+		FeatureColumns remapped = compact.getFeatureColumns().remap(new int[]{0, -1, -1, 1}, 2);
+
+		// Execution
+		compact.remapColumns(new int[]{0, -1, -1, 1}, remapped);
+
+		// Verification
+		assertArrayEquals(new int[]{0, 1}, compact.getIndices());
+		assertArrayEquals(new int[]{1, 7}, compact.getCounts());
+		assertEquals("Count", compact.getDataValues().get(1).getName());
+	}
 }
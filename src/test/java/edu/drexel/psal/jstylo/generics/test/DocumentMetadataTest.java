@@ -0,0 +1,45 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import edu.drexel.psal.jstylo.featureProcessing.DocumentMetadata;
+import edu.drexel.psal.jstylo.featureProcessing.NormBaselineEnum;
+
+public class DocumentMetadataTest {
+
+    @Test
+    public void fromText_CountsBaselines_Success(){
+        String text = "The quick brown fox. It jumped over 2 dogs!";
+        DocumentMetadata metadata = DocumentMetadata.fromText("author", "title", text.toCharArray());
+        
+        assertEquals("<DOCUMENT METADATA>", metadata.getEventSetID());
+        assertEquals("author", metadata.eventAt(0).getEvent());
+        assertEquals("title", metadata.eventAt(1).getEvent());
+        assertEquals(2, metadata.getSentences());
+        assertEquals(text.split("\\s+").length, metadata.getWords());
+        assertEquals(text.length(), metadata.getChars());
+        assertEquals(text.replaceAll("[^A-Za-z]", "").length(), metadata.getLetters());
+    }
+    
+    @Test
+    public void fromText_WordsMatchWhitespaceSplit_Success(){
+        String[] texts = {"", "   ", " leading", "trailing \n", "a\t\tb\r\nc"};
+        for (String text : texts)
+            assertEquals(text, text.split("\\s+").length, DocumentMetadata.fromText("a", "t", text.toCharArray()).getWords());
+    }
+    
+    @Test
+    public void getNormalizations_UsesTypedCounts_Success(){
+        DocumentMetadata metadata = new DocumentMetadata("author", "title", 1, 2, 3, 4);
+        Map<String,Integer> norms = metadata.getNormalizations();
+        
+        assertEquals(Integer.valueOf(1), norms.get(NormBaselineEnum.SENTENCES_IN_DOC.getTitle()));
+        assertEquals(Integer.valueOf(2), norms.get(NormBaselineEnum.WORDS_IN_DOC.getTitle()));
+        assertEquals(Integer.valueOf(3), norms.get(NormBaselineEnum.CHARS_IN_DOC.getTitle()));
+        assertEquals(Integer.valueOf(4), norms.get(NormBaselineEnum.LETTERS_IN_DOC.getTitle()));
+    }
+}
@@ -0,0 +1,97 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.jgaap.generics.Event;
+import com.jgaap.generics.EventSet;
+
+import edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.EventUnion;
+import edu.drexel.psal.jstylo.featureProcessing.FeatureDriver;
+
+public class EventUnionTest {
+
+    private static EventSet eventSet(String id, String... events){
+        EventSet es = new EventSet();
+        es.setEventSetID(id);
+        for (String e : events)
+            es.addEvent(new Event(e));
+        return es;
+    }
+
+    private static List<String> events(EventSet es){
+        List<String> events = new ArrayList<String>();
+        for (Event e : es)
+            events.add(e.getEvent());
+        return events;
+    }
+
+    private static CumulativeFeatureDriver driver(){
+        CumulativeFeatureDriver cfd = new CumulativeFeatureDriver();
+        FeatureDriver words = new FeatureDriver();
+        words.setName("Words");
+        words.setCalcHist(true);
+        cfd.addFeatureDriver(words);
+        FeatureDriver count = new FeatureDriver();
+        count.setName("Count");
+        count.setCalcHist(false);
+        cfd.addFeatureDriver(count);
+        return cfd;
+    }
+
+    private static List<List<EventSet>> documents(){
+        List<List<EventSet>> docs = new ArrayList<List<EventSet>>();
+        docs.add(Arrays.asList(eventSet("Words", "b", "a", "b"), eventSet("Count", "{3}")));
+        docs.add(Arrays.asList(eventSet("Words", "c", "a"), eventSet("Count", "{2}")));
+        docs.add(Arrays.asList(eventSet("Words", "d", "c", "e"), eventSet("Count", "{3}")));
+        return docs;
+    }
+
+    @Test
+    public void unionOf_KeepsFirstOccurrenceOrder_Success(){
+        List<EventUnion> unions = EventUnion.unionOf(documents(), 0, 3, driver());
+
+        assertEquals(2, unions.size());
+        EventSet words = unions.get(0).toEventSet();
+        assertEquals("Words", words.getEventSetID());
+        assertEquals(Arrays.asList("b", "a", "c", "d", "e"), events(words));
+        EventSet count = unions.get(1).toEventSet();
+        assertEquals("Count", count.getEventSetID());
+        assertEquals(Arrays.asList("{-}"), events(count));
+    }
+
+    @Test
+    public void mergeInto_MatchesSingleUnion_Success(){
+        CumulativeFeatureDriver cfd = driver();
+        List<List<EventSet>> docs = documents();
+        List<EventUnion> whole = EventUnion.unionOf(docs, 0, 3, cfd);
+
+        List<EventUnion> merged = EventUnion.unionOf(docs, 0, 1, cfd);
+        EventUnion.mergeInto(merged, EventUnion.unionOf(docs, 1, 3, cfd));
+        EventUnion.mergeInto(merged, EventUnion.unionOf(docs, 3, 3, cfd));
+
+        for (int i = 0; i < whole.size(); i++)
+            assertEquals(events(whole.get(i).toEventSet()), events(merged.get(i).toEventSet()));
+    }
+
+    @Test
+    public void addTo_MatchesUnionOf_Success(){
+        CumulativeFeatureDriver cfd = driver();
+        List<List<EventSet>> docs = documents();
+        List<EventUnion> whole = EventUnion.unionOf(docs, 0, 3, cfd);
+
+        List<EventUnion> added = new ArrayList<EventUnion>();
+        for (List<EventSet> doc : docs)
+            EventUnion.addTo(added, doc, cfd);
+
+        assertEquals(whole.size(), added.size());
+        for (int i = 0; i < whole.size(); i++)
+            assertEquals(events(whole.get(i).toEventSet()), events(added.get(i).toEventSet()));
+    }
+}
@@ -0,0 +1,280 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jgaap.generics.Event;
+import com.jgaap.generics.EventSet;
+
+import edu.drexel.psal.jstylo.featureProcessing.DocumentMetadata;
+import edu.drexel.psal.jstylo.featureProcessing.FeatureCache;
+import edu.drexel.psal.jstylo.featureProcessing.FeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.FileFeatureCache;
+import edu.drexel.psal.jstylo.featureProcessing.MappedFeatureCache;
+import edu.drexel.psal.jstylo.featureProcessing.StringDocument;
+
+public class FeatureCacheTest {
+
+    private static final long WORDS_HASH = 17L;
+    private static final long LETTERS_HASH = -42L;
+
+    private File cacheDir;
+    private FeatureCache cache;
+    private StringDocument document;
+    private FeatureCache.Key key;
+    private FeatureDriver words;
+    private FeatureDriver letters;
+
+    private static EventSet eventSet(String prefix, String... events) {
+        EventSet es = new EventSet();
+        for (String e : events)
+            es.addEvent(new Event(prefix + "{" + e + "}"));
+        return es;
+    }
+
+    private static List<String> events(EventSet es) {
+        List<String> events = new ArrayList<String>();
+        for (Event e : es)
+            events.add(e.getEvent());
+        return events;
+    }
+
+    private static FeatureDriver driver(String name) {
+        FeatureDriver fd = new FeatureDriver();
+        fd.setName(name);
+        return fd;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = File.createTempFile("featurecache", "");
+        cacheDir.delete();
+        cacheDir.mkdirs();
+        cache = new FileFeatureCache(cacheDir);
+        document = new StringDocument("the cat and the hat", "Author1", "Doc1");
+        key = FeatureCache.keyFor(document, true);
+        words = driver("Word Unigrams");
+        letters = driver("Letters");
+    }
+
+    @After
+    public void tearDown() {
+        MappedFeatureCache.close(cacheDir);
+        delete(cacheDir);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null)
+            for (File child : children)
+                delete(child);
+        file.delete();
+    }
+
+    private File cacheFile() {
+        List<File> files = new ArrayList<File>();
+        collect(cacheDir, files);
+        assertEquals(1, files.size());
+        return files.get(0);
+    }
+
+    private static void collect(File dir, List<File> files) {
+        for (File child : dir.listFiles()) {
+            if (child.isDirectory())
+                collect(child, files);
+            else
+                files.add(child);
+        }
+    }
+
+    private void writeRecord() throws IOException {
+        FeatureCache.Record record = new FeatureCache.Record(new DocumentMetadata("Author1", "Doc1", 1, 5, 19, 15));
+        record.putEventSet(WORDS_HASH, words, eventSet("Word-Unigrams", "the", "cat", "and", "the", "hat"));
+        // shares strings with the first set
+        record.putEventSet(LETTERS_HASH, letters, eventSet("Letters", "t", "the", "t"));
+        cache.write(key, record);
+    }
+
+    @Test
+    public void writeRead_RoundTrip_Success() throws IOException {
+        // Setup
+        writeRecord();
+
+        // Execution
+        FeatureCache.Record loaded = cache.read(document, key);
+
+        // Verification
+        assertNotNull(loaded);
+        DocumentMetadata metadata = loaded.getMetadata(document);
+        assertEquals(1, metadata.getSentences());
+        assertEquals(5, metadata.getWords());
+        assertEquals(19, metadata.getChars());
+        assertEquals(15, metadata.getLetters());
+
+        assertTrue(loaded.contains(WORDS_HASH));
+        assertTrue(loaded.contains(LETTERS_HASH));
+        assertFalse(loaded.contains(0L));
+
+        // histograms come back in order of first occurrence, with their counts
+        EventSet wordSet = loaded.getEventSet(WORDS_HASH, words, document);
+        assertEquals("Word Unigrams", wordSet.getEventSetID());
+        assertEquals("Author1", wordSet.getAuthor());
+        assertEquals("Doc1", wordSet.getDocumentName());
+        List<String> expected = new ArrayList<String>();
+        expected.add("Word-Unigrams{the}");
+        expected.add("Word-Unigrams{the}");
+        expected.add("Word-Unigrams{cat}");
+        expected.add("Word-Unigrams{and}");
+        expected.add("Word-Unigrams{hat}");
+        assertEquals(expected, events(wordSet));
+
+        expected.clear();
+        expected.add("Letters{t}");
+        expected.add("Letters{t}");
+        expected.add("Letters{the}");
+        assertEquals(expected, events(loaded.getEventSet(LETTERS_HASH, letters, document)));
+        assertNull(loaded.getEventSet(0L, words, document));
+    }
+
+    @Test
+    public void read_RenamedDriver_UsesNewPrefix() throws IOException {
+        // Setup
+        writeRecord();
+
+        // Execution
+        EventSet es = cache.read(document, key).getEventSet(WORDS_HASH, driver("Words"), document);
+
+        // Verification
+        assertEquals("Words", es.getEventSetID());
+        assertEquals("Words{the}", es.eventAt(0).getEvent());
+    }
+
+    @Test
+    public void retainEventSets_UnusedDriver_Dropped() throws IOException {
+        // Setup
+        writeRecord();
+        long before = cacheFile().length();
+        FeatureCache.Record record = cache.read(document, key);
+
+        // Execution
+        record.retainEventSets(new long[] {LETTERS_HASH, 0L});
+        cache.write(key, record);
+
+        // Verification
+        assertTrue(cacheFile().length() < before);
+        FeatureCache.Record loaded = cache.read(document, key);
+        assertFalse(loaded.contains(WORDS_HASH));
+        assertTrue(loaded.contains(LETTERS_HASH));
+        List<String> expected = new ArrayList<String>();
+        expected.add("Letters{t}");
+        expected.add("Letters{t}");
+        expected.add("Letters{the}");
+        assertEquals(expected, events(loaded.getEventSet(LETTERS_HASH, letters, document)));
+        assertEquals(5, loaded.getMetadata(document).getWords());
+    }
+
+    @Test
+    public void read_OtherDocument_Miss() throws IOException {
+        // Setup
+        writeRecord();
+        StringDocument other = new StringDocument("the cat and the bat", "Author1", "Doc1");
+
+        // Execution
+        FeatureCache.Record loaded = cache.read(other, FeatureCache.keyFor(other, true));
+
+        // Verification
+        assertNull(loaded);
+    }
+
+    @Test
+    public void mappedWriteRead_SupersededEntries_CompactedOnOpen() throws IOException {
+        // Setup
+        cache = MappedFeatureCache.open(cacheDir);
+        for (int i = 0; i < 3; i++)
+            writeRecord();
+        StringDocument other = new StringDocument("a different text", "Author2", "Doc2");
+        FeatureCache.Record otherRecord = new FeatureCache.Record(new DocumentMetadata("Author2", "Doc2", 1, 3, 16, 14));
+        otherRecord.putEventSet(WORDS_HASH, words, eventSet("Word-Unigrams", "a", "different", "text"));
+        cache.write(FeatureCache.keyFor(other, true), otherRecord);
+        File segment = cacheFile();
+        long before = segment.length();
+
+        // Execution
+        MappedFeatureCache.close(cacheDir);
+        cache = MappedFeatureCache.open(cacheDir);
+
+        // Verification
+        assertTrue(segment.length() < before);
+        assertEquals("Word-Unigrams{hat}",
+                cache.read(document, key).getEventSet(WORDS_HASH, words, document).eventAt(4).getEvent());
+        assertEquals(3, cache.read(other, FeatureCache.keyFor(other, true)).getEventSet(WORDS_HASH, words, other).size());
+
+        // a compact segment is left as it is
+        before = segment.length();
+        MappedFeatureCache.close(cacheDir);
+        cache = MappedFeatureCache.open(cacheDir);
+        assertEquals(before, segment.length());
+        assertNotNull(cache.read(document, key));
+    }
+
+    @Test
+    public void read_OldVersion_Rejected() throws IOException {
+        // Setup
+        writeRecord();
+        File file = cacheFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(4);
+            raf.writeInt(FeatureCache.VERSION - 1);
+        }
+
+        // Execution
+        FeatureCache.Record loaded = cache.read(document, key);
+
+        // Verification
+        assertNull(loaded);
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void read_BadMagic_Rejected() throws IOException {
+        // Setup
+        writeRecord();
+        File file = cacheFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.writeInt(0);
+        }
+
+        // Execution
+        FeatureCache.Record loaded = cache.read(document, key);
+
+        // Verification
+        assertNull(loaded);
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void read_TruncatedRecord_Rejected() throws IOException {
+        // Setup
+        writeRecord();
+        File file = cacheFile();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 4);
+        }
+
+        // Execution
+        FeatureCache.Record loaded = cache.read(document, key);
+
+        // Verification
+        assertNull(loaded);
+        assertFalse(file.exists());
+    }
+}
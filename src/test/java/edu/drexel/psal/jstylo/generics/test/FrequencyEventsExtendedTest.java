@@ -0,0 +1,165 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.jgaap.generics.Event;
+import com.jgaap.generics.EventSet;
+
+import edu.drexel.psal.jstylo.eventCullers.FrequencyEventsExtended;
+import edu.drexel.psal.jstylo.eventCullers.LeastCommonEventsExtended;
+import edu.drexel.psal.jstylo.eventCullers.MostCommonEventsExtended;
+
+public class FrequencyEventsExtendedTest {
+
+    private static EventSet eventSet(String document, String... events) {
+        EventSet es = new EventSet();
+        es.setAuthor("Author1");
+        es.setDocumentName(document);
+        es.setEventSetID("Letters");
+        for (String e : events)
+            es.addEvent(new Event(e));
+        return es;
+    }
+
+    private static List<String> events(EventSet es) {
+        List<String> events = new ArrayList<String>();
+        for (Event e : es)
+            events.add(e.getEvent());
+        return events;
+    }
+
+    /**
+     * Culls as the most and least common events cullers did before they counted with a heap: sorts the events by
+     * their number of appearances and takes the first N, and every following event with the same number as the Nth.
+     * @return the events kept in every document
+     */
+    private static List<List<String>> sortBasedCull(List<EventSet> eventSets, int n, boolean mostCommon) {
+        final Map<String,Integer> map = new HashMap<String,Integer>();
+        for (EventSet es : eventSets) {
+            for (Event e : es) {
+                Integer count = map.get(e.toString());
+                map.put(e.toString(), count == null ? 1 : count + 1);
+            }
+        }
+
+        List<List<String>> culled = new ArrayList<List<String>>();
+        if (n > map.size()) {
+            for (EventSet es : eventSets)
+                culled.add(events(es));
+            return culled;
+        }
+        List<String> sorted = new ArrayList<String>(map.keySet());
+        Collections.sort(sorted, new Comparator<String>() {
+            @Override
+            public int compare(String o1, String o2) {
+                return map.get(o1) - map.get(o2);
+            }
+        });
+        if (mostCommon)
+            Collections.reverse(sorted);
+        int size = n;
+        while (size < sorted.size() && map.get(sorted.get(size - 1)).equals(map.get(sorted.get(size))))
+            size++;
+        Set<String> kept = new HashSet<String>(sorted.subList(0, size));
+
+        for (EventSet es : eventSets) {
+            List<String> events = new ArrayList<String>();
+            for (Event e : es) {
+                if (kept.contains(e.toString()))
+                    events.add(e.toString());
+            }
+            culled.add(events);
+        }
+        return culled;
+    }
+
+    private static List<List<String>> cull(FrequencyEventsExtended culler, List<EventSet> eventSets, int n) {
+        culler.setParameter("N", n);
+        List<List<String>> culled = new ArrayList<List<String>>();
+        List<EventSet> result = culler.cull(eventSets);
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals(eventSets.get(i).getAuthor(), result.get(i).getAuthor());
+            assertEquals(eventSets.get(i).getDocumentName(), result.get(i).getDocumentName());
+            assertEquals(eventSets.get(i).getEventSetID(), result.get(i).getEventSetID());
+            culled.add(events(result.get(i)));
+        }
+        return culled;
+    }
+
+    /**
+     * a appears 5 times, b 4 times, c, d and e 3 times, f and g once
+     */
+    private static List<EventSet> tiedEventSets() {
+        List<EventSet> eventSets = new ArrayList<EventSet>();
+        eventSets.add(eventSet("Doc1", "a", "b", "c", "a", "d", "f"));
+        eventSets.add(eventSet("Doc2", "a", "e", "b", "c", "d", "e"));
+        eventSets.add(eventSet("Doc3", "b", "a", "e", "d", "c", "a", "b", "g"));
+        return eventSets;
+    }
+
+    @Test
+    public void mostCommon_TiesAtNthCount_SameAsSortBased() {
+        // Setup
+        List<EventSet> eventSets = tiedEventSets();
+
+        // Execution
+        List<List<String>> culled = cull(new MostCommonEventsExtended(), eventSets, 3);
+
+        // Verification
+        assertEquals(sortBasedCull(eventSets, 3, true), culled);
+        // c, d and e are all kept along with a and b
+        assertEquals(events(eventSet("Doc1", "a", "b", "c", "a", "d")), culled.get(0));
+    }
+
+    @Test
+    public void leastCommon_TiesAtNthCount_SameAsSortBased() {
+        // Setup
+        List<EventSet> eventSets = tiedEventSets();
+
+        // Execution
+        List<List<String>> culled = cull(new LeastCommonEventsExtended(), eventSets, 3);
+
+        // Verification
+        assertEquals(sortBasedCull(eventSets, 3, false), culled);
+        // c, d and e are all kept along with f and g
+        assertEquals(events(eventSet("Doc2", "e", "c", "d", "e")), culled.get(1));
+    }
+
+    @Test
+    public void mostAndLeastCommon_RandomEvents_SameAsSortBased() {
+        // Setup
+        Random random = new Random(5);
+
+        for (int run = 0; run < 200; run++) {
+            List<EventSet> eventSets = new ArrayList<EventSet>();
+            int vocabulary = 1 + random.nextInt(15);
+            for (int d = 0; d < 1 + random.nextInt(6); d++) {
+                EventSet es = eventSet("Doc" + d);
+                for (int i = random.nextInt(30); i > 0; i--)
+                    es.addEvent(new Event("e" + random.nextInt(vocabulary)));
+                eventSets.add(es);
+            }
+            int n = 1 + random.nextInt(vocabulary + 2);
+
+            // Execution
+            List<List<String>> mostCommon = cull(new MostCommonEventsExtended(), eventSets, n);
+            List<List<String>> leastCommon = cull(new LeastCommonEventsExtended(), eventSets, n);
+
+            // Verification
+            assertEquals(sortBasedCull(eventSets, n, true), mostCommon);
+            assertEquals(sortBasedCull(eventSets, n, false), leastCommon);
+        }
+    }
+}
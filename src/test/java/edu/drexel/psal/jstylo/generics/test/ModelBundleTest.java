@@ -0,0 +1,132 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jgaap.generics.Document;
+
+import edu.drexel.psal.jstylo.eventDrivers.LetterNGramEventDriver;
+import edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.FeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.ProblemSet;
+import edu.drexel.psal.jstylo.featureProcessing.StringDocument;
+import edu.drexel.psal.jstylo.generics.DocResult;
+import edu.drexel.psal.jstylo.generics.FullAPI;
+import edu.drexel.psal.jstylo.generics.ModelBundle;
+import edu.drexel.psal.jstylo.machineLearning.weka.WekaAnalyzer;
+import weka.classifiers.bayes.NaiveBayes;
+
+public class ModelBundleTest {
+
+    private File bundleFile;
+    private ProblemSet ps;
+    private List<Document> testDocs;
+
+    private static FeatureDriver letterNGrams(String name, int n) {
+        LetterNGramEventDriver ed = new LetterNGramEventDriver();
+        ed.setParameter("N", "" + n);
+        return new FeatureDriver(name, true, ed);
+    }
+
+    /**
+     * A text of random letters, with every author favoring a different part of the alphabet.
+     */
+    private static String text(Random random, int author) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            int letter = random.nextInt(3) == 0 ? 6 * author + random.nextInt(6) : random.nextInt(26);
+            text.append((char) ('a' + letter));
+            if (random.nextInt(5) == 0)
+                text.append(' ');
+        }
+        return text.toString();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        bundleFile = File.createTempFile("model", ".bundle");
+        ps = new ProblemSet();
+        testDocs = new ArrayList<Document>();
+        Random random = new Random(7);
+        for (int d = 0; d < 15; d++) {
+            int author = d % 3;
+            if (d >= 12) {
+                Document doc = new StringDocument(text(random, author), ProblemSet.getDummyAuthor(), "test" + d);
+                ps.addTestDoc(ProblemSet.getDummyAuthor(), doc);
+                testDocs.add(doc);
+            } else {
+                ps.addTrainDoc("Author" + author, new StringDocument(text(random, author), "Author" + author, "train" + d));
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        bundleFile.delete();
+    }
+
+    private void assertRoundTrip(boolean applyInfoGain) throws Exception {
+        // Setup
+        CumulativeFeatureDriver cfd = new CumulativeFeatureDriver();
+        cfd.setName("bundle");
+        cfd.addFeatureDriver(letterNGrams("Letters", 1));
+        cfd.addFeatureDriver(letterNGrams("Letter Bigrams", 2));
+        FullAPI api = new FullAPI.Builder().ps(ps).cfd(cfd).setAnalyzer(new WekaAnalyzer(new NaiveBayes()))
+                .analysisType(FullAPI.analysisType.TRAIN_TEST_UNKNOWN).setApplyInfoGain(applyInfoGain)
+                .setFeaturesToKeep(30).numThreads(1).useCache(false).build();
+        api.prepareInstances();
+        api.run();
+        Map<String,Map<String,Double>> expected = new HashMap<String,Map<String,Double>>();
+        for (DocResult result : api.getResults().getExperimentContents())
+            expected.put(result.getTitle(), result.getProbabilities());
+
+        // Execution
+        ModelBundle bundle = api.buildModelBundle();
+        bundle.save(bundleFile);
+        ModelBundle loaded = ModelBundle.load(bundleFile);
+
+        // Verification
+        assertEquals(bundle.getAuthors(), loaded.getAuthors());
+        for (Document doc : testDocs) {
+            Map<String,Double> inMemory = bundle.score(doc).getProbabilities();
+            Map<String,Double> fromFile = loaded.score(doc).getProbabilities();
+            Map<String,Double> analyzed = expected.get(doc.getTitle());
+            assertEquals(analyzed.keySet(), fromFile.keySet());
+            for (String author : analyzed.keySet()) {
+                assertEquals(inMemory.get(author), fromFile.get(author), 1e-9);
+                assertEquals(analyzed.get(author), fromFile.get(author), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void saveLoad_RoundTrip_SameDistribution() throws Exception {
+        assertRoundTrip(false);
+    }
+
+    @Test
+    public void saveLoad_RoundTripAfterInfoGain_SameDistribution() throws Exception {
+        assertRoundTrip(true);
+    }
+
+    @Test(expected = IOException.class)
+    public void load_NotABundle_Failure() throws IOException {
+        // Setup
+        Files.write(bundleFile.toPath(), "not a bundle".getBytes());
+
+        // Execution
+        ModelBundle.load(bundleFile);
+    }
+}
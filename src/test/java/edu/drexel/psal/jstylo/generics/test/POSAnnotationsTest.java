@@ -0,0 +1,206 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jgaap.generics.Document;
+import com.jgaap.generics.Event;
+import com.jgaap.generics.EventDriver;
+import com.jgaap.generics.EventSet;
+
+import edu.drexel.psal.jstylo.eventDrivers.POSAnnotations;
+import edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.FeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.StringDocument;
+
+public class POSAnnotationsTest {
+
+    private static final String MODEL = "counting-model";
+
+    /**
+     * Tags every word with its length, counting the texts it tags.
+     */
+    private static class CountingTagger implements POSAnnotations.Tagger {
+        private int calls;
+
+        @Override
+        public List<String> tag(String text) {
+            calls++;
+            List<String> tags = new ArrayList<String>();
+            for (String word : text.trim().split("\\s+"))
+                tags.add("L" + word.length());
+            return tags;
+        }
+    }
+
+    private static final CountingTagger TAGGER = new CountingTagger();
+
+    /**
+     * A POS unigram driver on the counting tagger, wired like the Maxent, FastTag and TreeTagger drivers.
+     */
+    public static class CountingPOSTagsEventDriver extends EventDriver {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public EventSet createEventSet(Document doc) {
+            EventSet es = new EventSet(doc.getAuthor());
+            for (String tag : POSAnnotations.tags(MODEL, new String(doc.getProcessedText()), TAGGER))
+                es.addEvent(new Event(tag));
+            return es;
+        }
+
+        @Override
+        public String displayName() {
+            return "Counting POS tags";
+        }
+
+        @Override
+        public String tooltipText() {
+            return displayName();
+        }
+
+        @Override
+        public boolean showInGUI() {
+            return false;
+        }
+    }
+
+    /**
+     * A POS n-gram driver on the counting tagger.
+     */
+    public static class CountingPOSNGramsEventDriver extends CountingPOSTagsEventDriver {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public EventSet createEventSet(Document doc) {
+            EventSet es = new EventSet(doc.getAuthor());
+            List<String> tags = POSAnnotations.tags(MODEL, new String(doc.getProcessedText()), TAGGER);
+            POSAnnotations.addNGrams(es, tags, Integer.parseInt(getParameter("N")));
+            return es;
+        }
+    }
+
+    private static FeatureDriver unigrams() {
+        return new FeatureDriver("POS Tags", true, new CountingPOSTagsEventDriver());
+    }
+
+    private static FeatureDriver nGrams(String name, int n) {
+        CountingPOSNGramsEventDriver ed = new CountingPOSNGramsEventDriver();
+        ed.setParameter("N", n);
+        return new FeatureDriver(name, true, ed);
+    }
+
+    private static CumulativeFeatureDriver cfd(FeatureDriver... fds) {
+        CumulativeFeatureDriver cfd = new CumulativeFeatureDriver();
+        cfd.setName("pos");
+        for (FeatureDriver fd : fds)
+            cfd.addFeatureDriver(fd);
+        return cfd;
+    }
+
+    private static List<String> events(EventSet es) {
+        List<String> events = new ArrayList<String>();
+        for (Event e : es)
+            events.add(e.getEvent());
+        return events;
+    }
+
+    @Before
+    public void setUp() {
+        POSAnnotations.clear();
+        TAGGER.calls = 0;
+    }
+
+    @Test
+    public void createEventSets_UnigramsAndNGrams_TaggedOnce() throws Exception {
+        // Setup
+        StringDocument doc = new StringDocument("a bb ccc a dddd", "Author1", "Doc1");
+        List<List<EventSet>> separately = new ArrayList<List<EventSet>>();
+        separately.add(cfd(unigrams()).createEventSets(doc, true));
+        separately.add(cfd(nGrams("POS Bigrams", 2)).createEventSets(doc, true));
+        separately.add(cfd(nGrams("POS Trigrams", 3)).createEventSets(doc, true));
+        assertEquals(3, TAGGER.calls);
+        TAGGER.calls = 0;
+
+        // Execution
+        List<EventSet> together = cfd(unigrams(), nGrams("POS Bigrams", 2), nGrams("POS Trigrams", 3))
+                .createEventSets(doc, true);
+
+        // Verification
+        assertEquals(1, TAGGER.calls);
+        for (int i = 0; i < separately.size(); i++)
+            assertEquals(events(separately.get(i).get(0)), events(together.get(i)));
+        List<String> expected = new ArrayList<String>();
+        expected.add("POS-Bigrams{(L1)-(L2)}");
+        expected.add("POS-Bigrams{(L2)-(L3)}");
+        expected.add("POS-Bigrams{(L3)-(L1)}");
+        expected.add("POS-Bigrams{(L1)-(L4)}");
+        assertEquals(expected, events(together.get(1)));
+    }
+
+    @Test
+    public void createEventSets_NextDocument_TaggedAgain() throws Exception {
+        // Setup
+        CumulativeFeatureDriver cfd = cfd(unigrams(), nGrams("POS Bigrams", 2));
+        StringDocument first = new StringDocument("a bb ccc", "Author1", "Doc1");
+        StringDocument second = new StringDocument("dddd e", "Author1", "Doc2");
+
+        // Execution
+        cfd.createEventSets(first, true);
+        cfd.createEventSets(second, true);
+        // the tags of a document are dropped once its event sets are extracted
+        cfd.createEventSets(first, true);
+
+        // Verification
+        assertEquals(3, TAGGER.calls);
+    }
+
+    @Test
+    public void tags_SameModelAndText_Reused() {
+        // Execution
+        List<String> tags = POSAnnotations.tags(MODEL, "a bb", TAGGER);
+        List<String> again = POSAnnotations.tags(MODEL, "a bb", TAGGER);
+
+        // Verification
+        assertSame(tags, again);
+        assertEquals(1, TAGGER.calls);
+    }
+
+    @Test
+    public void tags_OtherModelOrText_TaggedAgain() {
+        // Setup
+        POSAnnotations.tags(MODEL, "a bb", TAGGER);
+
+        // Execution
+        POSAnnotations.tags("other-model", "a bb", TAGGER);
+        POSAnnotations.tags(MODEL, "a bb ccc", TAGGER);
+
+        // Verification
+        assertEquals(3, TAGGER.calls);
+        // all of them are kept
+        POSAnnotations.tags(MODEL, "a bb", TAGGER);
+        POSAnnotations.tags("other-model", "a bb", TAGGER);
+        POSAnnotations.tags(MODEL, "a bb ccc", TAGGER);
+        assertEquals(3, TAGGER.calls);
+    }
+
+    @Test
+    public void clear_TagsDropped_TaggedAgain() {
+        // Setup
+        List<String> tags = POSAnnotations.tags(MODEL, "a bb", TAGGER);
+
+        // Execution
+        POSAnnotations.clear();
+        List<String> again = POSAnnotations.tags(MODEL, "a bb", TAGGER);
+
+        // Verification
+        assertEquals(2, TAGGER.calls);
+        assertEquals(tags, again);
+        assertNotSame(tags, again);
+    }
+}
@@ -2,7 +2,9 @@ package edu.drexel.psal.jstylo.generics.test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
+import static org.junit.Assert.*;
 import org.junit.Test;
 
 import com.jgaap.generics.Document;
@@ -39,4 +41,33 @@ public class ProblemSetTest {
         ProblemSet ps5 = new ProblemSet("./jsan_resources/problem_sets/drexel_1_train_test.xml",false);
     }
     
+    @Test
+    public void testDocsSnapshot(){
+        ProblemSet ps = new ProblemSet("./jsan_resources/problem_sets/drexel_1_train_test.xml");
+        
+        List<Document> allTrain = ps.getAllTrainDocs();
+        List<Document> trainSnapshot = ps.getTrainDocsSnapshot();
+        assertEquals(allTrain.size(), trainSnapshot.size());
+        for (int i = 0; i < allTrain.size(); i++){
+            assertEquals(allTrain.get(i).getAuthor(), trainSnapshot.get(i).getAuthor());
+            assertEquals(allTrain.get(i).getTitle(), trainSnapshot.get(i).getTitle());
+            assertEquals(allTrain.get(i).getFilePath(), trainSnapshot.get(i).getFilePath());
+        }
+        
+        List<Document> allTest = ps.getAllTestDocs();
+        List<Document> testSnapshot = ps.getTestDocsSnapshot();
+        assertEquals(allTest.size(), testSnapshot.size());
+        for (int i = 0; i < allTest.size(); i++){
+            assertEquals(allTest.get(i).getAuthor(), testSnapshot.get(i).getAuthor());
+            assertEquals(allTest.get(i).getTitle(), testSnapshot.get(i).getTitle());
+        }
+        
+        try {
+            trainSnapshot.remove(0);
+            fail("snapshot should be read-only");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+    
 }
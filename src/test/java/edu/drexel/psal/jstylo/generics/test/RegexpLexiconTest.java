@@ -0,0 +1,112 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.drexel.psal.jstylo.eventDrivers.RegexpLexicon;
+
+public class RegexpLexiconTest {
+
+    private File lexiconFile;
+
+    @Before
+    public void setUp() throws IOException {
+        lexiconFile = File.createTempFile("lexicon", ".txt");
+    }
+
+    @After
+    public void tearDown() {
+        lexiconFile.delete();
+    }
+
+    private RegexpLexicon lexicon(String... entries) throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (String entry : entries)
+            content.append(entry).append('\n');
+        Files.write(lexiconFile.toPath(), content.toString().getBytes());
+        return RegexpLexicon.forFile(lexiconFile.getPath());
+    }
+
+    /**
+     * Searches for every entry on its own, as ListRegexpEventDriver did before the lexicon was compiled.
+     */
+    private static Map<String,Integer> countEachEntry(String text, String... entries) {
+        Map<String,Integer> appearances = new HashMap<String,Integer>();
+        for (String entry : entries) {
+            Matcher matcher = Pattern.compile("\\s" + entry + "\\s").matcher(text);
+            while (matcher.find()) {
+                Integer count = appearances.get(matcher.group());
+                appearances.put(matcher.group(), count == null ? 1 : count+1);
+            }
+        }
+        return appearances;
+    }
+
+    @Test
+    public void countMatches_OverlappingEntries_AllCounted() throws IOException {
+        // Setup
+        String text = " I like a lot of tea ";
+        Map<String,Integer> expected = new HashMap<String,Integer>();
+        expected.put(" a ", 1);
+        expected.put(" a lot ", 1);
+        expected.put(" of ", 1);
+
+        // Execution
+        Map<String,Integer> appearances = lexicon("a", "a lot", "of").countMatches(text);
+
+        // Verification
+        assertEquals(expected, appearances);
+    }
+
+    @Test
+    public void countMatches_AdjacentWords_SameAsEachEntry() throws IOException {
+        // Setup
+        String[] entries = {"the", "a", "a lot", "lot", "th\\w+"};
+        String text = " the the the\nthe a a lot lot\tof a lot ";
+
+        // Execution
+        Map<String,Integer> appearances = lexicon(entries).countMatches(text);
+
+        // Verification
+        assertEquals(countEachEntry(text, entries), appearances);
+        // the whitespace between adjacent matches of an entry belongs to the first of them
+        assertEquals(Integer.valueOf(2), appearances.get(" the "));
+    }
+
+    @Test
+    public void countMatches_Alternatives_SameAsEachEntry() throws IOException {
+        // Setup
+        String[] entries = {"x|the", "of", "e\\s?x"};
+        String text = "the x of xthe x ex e x";
+
+        // Execution
+        Map<String,Integer> appearances = lexicon(entries).countMatches(text);
+
+        // Verification
+        assertEquals(countEachEntry(text, entries), appearances);
+    }
+
+    @Test
+    public void forFile_SameFile_SharedLexicon() throws IOException {
+        // Setup
+        RegexpLexicon first = lexicon("a", "of");
+
+        // Execution
+        RegexpLexicon second = RegexpLexicon.forFile(lexiconFile.getPath());
+
+        // Verification
+        assertSame(first, second);
+        assertEquals(2, second.size());
+    }
+}
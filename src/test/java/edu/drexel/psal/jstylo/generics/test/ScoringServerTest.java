@@ -0,0 +1,137 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import edu.drexel.psal.jstylo.eventDrivers.LetterNGramEventDriver;
+import edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.FeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.ProblemSet;
+import edu.drexel.psal.jstylo.featureProcessing.StringDocument;
+import edu.drexel.psal.jstylo.generics.FullAPI;
+import edu.drexel.psal.jstylo.generics.ModelBundle;
+import edu.drexel.psal.jstylo.generics.ScoringServer;
+import edu.drexel.psal.jstylo.machineLearning.weka.WekaAnalyzer;
+import weka.classifiers.bayes.NaiveBayes;
+
+public class ScoringServerTest {
+
+    private static final String TEXT = "abc abd bca cab abc";
+
+    private ModelBundle bundle;
+    private ScoringServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        ProblemSet ps = new ProblemSet();
+        String[] texts = {"abc abc cab bca abb", "xyz zyx yzx xxy zzy", "aab cba abc bac cca", "yxz xyz zzx yyx xzy"};
+        for (int d = 0; d < texts.length; d++) {
+            String author = d % 2 == 0 ? "AuthorA" : "AuthorX";
+            ps.addTrainDoc(author, new StringDocument(texts[d], author, "train" + d));
+        }
+
+        LetterNGramEventDriver letters = new LetterNGramEventDriver();
+        letters.setParameter("N", "1");
+        CumulativeFeatureDriver cfd = new CumulativeFeatureDriver();
+        cfd.setName("server");
+        cfd.addFeatureDriver(new FeatureDriver("Letters", true, letters));
+
+        FullAPI api = new FullAPI.Builder().ps(ps).cfd(cfd).setAnalyzer(new WekaAnalyzer(new NaiveBayes()))
+                .analysisType(FullAPI.analysisType.TRAIN_TEST_UNKNOWN).numThreads(1).useCache(false).build();
+        api.prepareInstances();
+        bundle = api.buildModelBundle();
+
+        server = new ScoringServer(bundle, 2);
+        server.start(0);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    private HttpURLConnection connect(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://127.0.0.1:" + server.getPort() + path).openConnection();
+    }
+
+    private static JsonElement readJson(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        try {
+            while ((read = in.read(buffer)) != -1)
+                bytes.write(buffer, 0, read);
+        } finally {
+            in.close();
+        }
+        return new JsonParser().parse(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void authors_ListsBundleAuthors_Success() throws IOException {
+        // Execution
+        HttpURLConnection connection = connect("/authors");
+        JsonArray authors = readJson(connection.getInputStream()).getAsJsonArray();
+
+        // Verification
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(bundle.getAuthors().size(), authors.size());
+        for (int i = 0; i < authors.size(); i++)
+            assertEquals(bundle.getAuthors().get(i), authors.get(i).getAsJsonObject().get("Author").getAsString());
+    }
+
+    @Test
+    public void score_MatchesBundle_Success() throws Exception {
+        // Setup
+        Map<String,Double> expected = bundle.score(new StringDocument(TEXT, null, "my doc")).getProbabilities();
+
+        // Execution
+        HttpURLConnection connection = connect("/score?title=my%20doc");
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(TEXT.getBytes(StandardCharsets.UTF_8));
+        }
+        JsonObject result = readJson(connection.getInputStream()).getAsJsonObject();
+
+        // Verification
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("my doc", result.get("title").getAsString());
+        assertTrue(result.has("millis"));
+        Map<String,Double> probabilities = new HashMap<String,Double>();
+        for (JsonElement probability : result.getAsJsonArray("probabilityMap")) {
+            JsonObject json = probability.getAsJsonObject();
+            probabilities.put(json.get("Author").getAsString(), json.get("Probability").getAsDouble());
+        }
+        assertEquals(expected.keySet(), probabilities.keySet());
+        for (String author : expected.keySet())
+            assertEquals(expected.get(author), probabilities.get(author), 1e-9);
+    }
+
+    @Test
+    public void score_Get_MethodNotAllowed() throws IOException {
+        // Execution
+        HttpURLConnection connection = connect("/score");
+
+        // Verification
+        assertEquals(405, connection.getResponseCode());
+    }
+}
@@ -0,0 +1,193 @@
+package edu.drexel.psal.jstylo.generics.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.jgaap.generics.Event;
+import com.jgaap.generics.EventCuller;
+import com.jgaap.generics.EventSet;
+
+import edu.drexel.psal.jstylo.eventCullers.MinAppearances;
+import edu.drexel.psal.jstylo.eventCullers.MostCommonEventsExtended;
+import edu.drexel.psal.jstylo.eventDrivers.LetterNGramEventDriver;
+import edu.drexel.psal.jstylo.featureProcessing.CumulativeFeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.FeatureDriver;
+import edu.drexel.psal.jstylo.featureProcessing.ProblemSet;
+import edu.drexel.psal.jstylo.featureProcessing.StringDocument;
+import edu.drexel.psal.jstylo.generics.DataMap;
+import edu.drexel.psal.jstylo.generics.DocumentData;
+import edu.drexel.psal.jstylo.generics.FullAPI;
+import edu.drexel.psal.jstylo.machineLearning.weka.WekaAnalyzer;
+import weka.classifiers.bayes.NaiveBayes;
+
+public class StreamingPrepareInstancesTest {
+
+    /**
+     * A culler that does not look at the number of appearances of the events, so the streaming mode has to keep its
+     * event sets: drops every event with the letter e.
+     */
+    public static class NoLetterECuller extends EventCuller {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public List<EventSet> cull(List<EventSet> eventSets) {
+            List<EventSet> culled = new ArrayList<EventSet>(eventSets.size());
+            for (EventSet es : eventSets) {
+                EventSet kept = new EventSet();
+                for (Event e : es) {
+                    if (e.getEvent().indexOf('e', e.getEvent().indexOf('{')) == -1)
+                        kept.addEvent(e);
+                }
+                culled.add(kept);
+            }
+            return culled;
+        }
+
+        @Override
+        public String displayName() {
+            return "No letter e";
+        }
+
+        @Override
+        public String tooltipText() {
+            return displayName();
+        }
+
+        @Override
+        public boolean showInGUI() {
+            return false;
+        }
+    }
+
+    private ProblemSet ps;
+
+    private static FeatureDriver letterNGrams(String name, int n, EventCuller... cullers) {
+        LetterNGramEventDriver ed = new LetterNGramEventDriver();
+        ed.setParameter("N", "" + n);
+        FeatureDriver fd = new FeatureDriver(name, true, ed);
+        for (EventCuller ec : cullers)
+            fd.addEventCuller(ec);
+        return fd;
+    }
+
+    private static EventCuller culler(EventCuller ec, int n) {
+        ec.setParameter("N", n);
+        return ec;
+    }
+
+    /**
+     * A text of random letters, with every author favoring a different part of the alphabet.
+     */
+    private static String text(Random random, int author) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            int letter = random.nextInt(3) == 0 ? 6 * author + random.nextInt(6) : random.nextInt(26);
+            text.append((char) ('a' + letter));
+            if (random.nextInt(5) == 0)
+                text.append(' ');
+        }
+        return text.toString();
+    }
+
+    @Before
+    public void setUp() {
+        ps = new ProblemSet();
+        Random random = new Random(11);
+        for (int d = 0; d < 12; d++) {
+            int author = d % 3;
+            if (d >= 9)
+                ps.addTestDoc(ProblemSet.getDummyAuthor(),
+                        new StringDocument(text(random, author), ProblemSet.getDummyAuthor(), "test" + d));
+            else
+                ps.addTrainDoc("Author" + author, new StringDocument(text(random, author), "Author" + author, "train" + d));
+        }
+    }
+
+    private static CumulativeFeatureDriver culledDriver() {
+        CumulativeFeatureDriver cfd = new CumulativeFeatureDriver();
+        cfd.setName("streaming");
+        // culled by the number of appearances only
+        cfd.addFeatureDriver(letterNGrams("Letters", 1, culler(new MinAppearances(), 40),
+                culler(new MostCommonEventsExtended(), 12)));
+        // culled by a culler that needs the event sets
+        cfd.addFeatureDriver(letterNGrams("Letter Bigrams", 2, culler(new MostCommonEventsExtended(), 60),
+                new NoLetterECuller()));
+        cfd.addFeatureDriver(letterNGrams("Letter Trigrams", 3));
+        return cfd;
+    }
+
+    private FullAPI prepare(boolean streaming, int numThreads) {
+        FullAPI api = new FullAPI.Builder().ps(ps).cfd(culledDriver()).setAnalyzer(new WekaAnalyzer(new NaiveBayes()))
+                .analysisType(FullAPI.analysisType.TRAIN_TEST_UNKNOWN).numThreads(numThreads).useCache(false)
+                .streaming(streaming).build();
+        api.prepareInstances();
+        return api;
+    }
+
+    private static void assertSameDataMap(DataMap expected, DataMap actual) {
+        assertEquals(expected.getFeatures(), actual.getFeatures());
+        assertEquals(expected.getDataMap().keySet(), actual.getDataMap().keySet());
+        for (String author : expected.getDataMap().keySet()) {
+            Map<String,DocumentData> expectedDocs = expected.getDataMap().get(author);
+            Map<String,DocumentData> actualDocs = actual.getDataMap().get(author);
+            assertEquals(expectedDocs.keySet(), actualDocs.keySet());
+            for (String title : expectedDocs.keySet()) {
+                DocumentData expectedDoc = expectedDocs.get(title);
+                DocumentData actualDoc = actualDocs.get(title);
+                assertEquals(expectedDoc.getNormalizationValues(), actualDoc.getNormalizationValues());
+                assertArrayEquals(expectedDoc.getIndices(), actualDoc.getIndices());
+                assertArrayEquals(expectedDoc.getCounts(), actualDoc.getCounts());
+                assertArrayEquals(expectedDoc.getValues(), actualDoc.getValues(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void prepareInstances_CulledFeatures_SameAsNonStreaming() {
+        // Setup
+        FullAPI nonStreaming = prepare(false, 1);
+
+        // Execution
+        FullAPI streaming = prepare(true, 3);
+
+        // Verification
+        DataMap training = nonStreaming.getTrainingDataMap();
+        // the cullers kept some but not all of the events
+        int letters = 0;
+        int bigrams = 0;
+        for (String feature : training.getFeatures().values()) {
+            if (feature.startsWith("Letters{"))
+                letters++;
+            if (feature.startsWith("Letter-Bigrams{")) {
+                bigrams++;
+                assertFalse(feature, feature.substring(feature.indexOf('{')).contains("e"));
+            }
+        }
+        assertEquals(12, letters);
+        assertTrue(bigrams > 0);
+        assertSameDataMap(training, streaming.getTrainingDataMap());
+        assertSameDataMap(nonStreaming.getTestingDataMap(), streaming.getTestingDataMap());
+    }
+
+    @Test
+    public void getRelevantEventsStreaming_NoDocuments_Empty() throws Exception {
+        // Setup
+        ps = new ProblemSet();
+        FullAPI api = new FullAPI.Builder().ps(ps).cfd(culledDriver()).setAnalyzer(new WekaAnalyzer(new NaiveBayes()))
+                .numThreads(2).useCache(false).streaming(true).build();
+
+        // Execution
+        List<EventSet> relevantEvents = api.getUnderlyingInstancesBuilder().getRelevantEventsStreaming(api.getCFD());
+
+        // Verification
+        assertTrue(relevantEvents.isEmpty());
+        api.getUnderlyingInstancesBuilder().killThreads();
+    }
+}
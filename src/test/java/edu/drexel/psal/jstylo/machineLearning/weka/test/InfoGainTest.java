@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.junit.Before;
@@ -107,4 +108,42 @@ public class InfoGainTest {
 			
 			assertArrayEquals(expectedFeature,InfoGain.applyInfoGain(sortedFeature, testDataMap, 2));	
 		}
+		
+		@Test
+		public void calcInfoGain_MatchesWeka_Success() throws Exception{
+			List<String> featuresName = new ArrayList<>();
+			for (int i = 0; i < 6; i++)
+				featuresName.add("feature" + i);
+			DataMap dataMap = new DataMap("infoGainDataMap", featuresName);
+			
+			// features 0 and 2 separate the authors, the others do not
+			Random random = new Random(42);
+			for (int a = 0; a < 3; a++) {
+				dataMap.initAuthor("Author" + a);
+				for (int d = 0; d < 8; d++) {
+					ConcurrentHashMap<Integer,FeatureData> values = new ConcurrentHashMap<>();
+					for (int f = 0; f < 6; f++) {
+						double value = f == 0 ? a * 4 + random.nextInt(2) : f == 2 ? a - 1 : random.nextInt(3);
+						if (value != 0) {
+							FeatureData featureData = new FeatureData("feature" + f, "None", 1);
+							featureData.setValue(value);
+							values.put(f, featureData);
+						}
+					}
+					dataMap.addDocumentData("Author" + a, "doc" + a + "_" + d,
+							new DocumentData(new HashMap<String,Integer>(), values));
+				}
+			}
+			
+			double[][] expected = InfoGain.calcInfoGainWeka(dataMap);
+			double[][] actual = InfoGain.calcInfoGain(dataMap, 2);
+			
+			// Verify
+			assertTrue(expected[0][0] > 0);
+			assertEquals(expected.length, actual.length);
+			for (int i = 0; i < expected.length; i++) {
+				assertEquals(expected[i][0], actual[i][0], 1e-9);
+				assertEquals(expected[i][1], actual[i][1], 0.0);
+			}
+		}
 }
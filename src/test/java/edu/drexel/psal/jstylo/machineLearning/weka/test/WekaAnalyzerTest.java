@@ -1,11 +1,13 @@
 package edu.drexel.psal.jstylo.machineLearning.weka.test;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.junit.Before;
@@ -21,6 +23,7 @@ import edu.drexel.psal.jstylo.generics.ExperimentResults;
 import edu.drexel.psal.jstylo.generics.FeatureData;
 import edu.drexel.psal.jstylo.machineLearning.weka.WekaAnalyzer;
 import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayes;
 
 public class WekaAnalyzerTest {
 
@@ -329,4 +332,59 @@ public class WekaAnalyzerTest {
 
 		System.out.println(testWekaAnalyzer.getExperimentMetrics());
 	}
+
+	/**
+	 * A DataMap of documents with random values of three features, every author favoring a different feature.
+	 */
+	private static DataMap randomDataMap() {
+		List<String> featuresName = new ArrayList<>();
+		featuresName.add("feature1");
+		featuresName.add("feature2");
+		featuresName.add("feature3");
+		DataMap dataMap = new DataMap("testDataMap", featuresName);
+
+		Random random = new Random(3);
+		Map<String, Integer> normalizationValue = new HashMap<>();
+		for (int d = 0; d < 30; d++) {
+			String author = "Author" + (d % 3);
+			if (!dataMap.getDataMap().containsKey(author))
+				dataMap.initAuthor(author);
+			ConcurrentHashMap<Integer, FeatureData> values = new ConcurrentHashMap<>();
+			for (int f = 0; f < 3; f++) {
+				FeatureData featureData = new FeatureData("feature" + (f + 1), "none", 1);
+				featureData.setValue(random.nextDouble() + (f == d % 3 ? 0.5 : 0));
+				values.put(f, featureData);
+			}
+			dataMap.addDocumentData(author, "doc" + d, new DocumentData(normalizationValue, values));
+		}
+		return dataMap;
+	}
+
+	@Test
+	public void runCrossValidation_MultipleThreads_SameAsSingleThread() {
+		// setup
+		DataMap dataMap = randomDataMap();
+		WekaAnalyzer singleThread = new WekaAnalyzer(new NaiveBayes());
+		singleThread.setNumThreads(1);
+		WekaAnalyzer multipleThreads = new WekaAnalyzer(new NaiveBayes());
+		multipleThreads.setNumThreads(4);
+
+		// execution
+		ExperimentResults expected = singleThread.runCrossValidation(dataMap, 5, 7);
+		ExperimentResults actual = multipleThreads.runCrossValidation(dataMap, 5, 7);
+
+		// verify
+		List<DocResult> expectedResults = expected.getExperimentContents();
+		List<DocResult> actualResults = actual.getExperimentContents();
+		assertEquals(30, expectedResults.size());
+		assertEquals(expectedResults.size(), actualResults.size());
+		for (int i = 0; i < expectedResults.size(); i++) {
+			assertEquals(expectedResults.get(i).getTitle(), actualResults.get(i).getTitle());
+			assertEquals(expectedResults.get(i).getActualAuthor(), actualResults.get(i).getActualAuthor());
+			assertEquals(expectedResults.get(i).getSuspectedAuthor(), actualResults.get(i).getSuspectedAuthor());
+			assertEquals(expectedResults.get(i).getProbabilities(), actualResults.get(i).getProbabilities());
+		}
+		assertEquals(expected.getStatisticsString(), actual.getStatisticsString());
+		assertEquals(singleThread.getExperimentMetrics(), multipleThreads.getExperimentMetrics());
+	}
 }